@@ -0,0 +1,401 @@
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * Shared structure for the primitive-keyed AVL tree maps ({@link IntTreeMap}, {@link DoubleTreeMap}).
+ * Instead of one heap object per node, nodes are slots in parallel arrays: child and parent links are slot
+ * numbers, and each subclass keeps its keys in a primitive array indexed by the same slot. Slots are allocated
+ * densely, so the arrays hold no gaps. Once a weigher is set, a further array holds the total weight of each
+ * subtree's values, for the {@link WeightedTreeMap} operations.
+ *
+ * @param <V> the type of values maintained by this map.
+ */
+abstract class ArrayTreeMap<V> {
+
+    static final int NIL = -1;
+
+    int root = NIL;
+    int size;
+    int[] left = new int[0];
+    int[] right = new int[0];
+    int[] parent = new int[0];
+    byte[] height = new byte[0];
+    Object[] values = new Object[0];
+    // Null until weighBy() is called.
+    ToIntFunction<? super V> weigher;
+    int[] total;
+
+    /**
+     * Grows the subclass key array to the specified capacity, keeping existing keys.
+     *
+     * @param capacity the new number of slots.
+     */
+    abstract void resizeKeys(int capacity);
+
+    /**
+     * Copies the subclass key in one slot to another slot.
+     *
+     * @param from the slot to copy from.
+     * @param to the slot to copy to.
+     */
+    abstract void moveKey(int from, int to);
+
+    /**
+     * Retrieves the number of key/value pair elements managed by the map.
+     *
+     * @return the number of elements in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Clears the existing tree, removing any and all existing key/value pairs.
+     */
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        root = NIL;
+        size = 0;
+    }
+
+    /**
+     * Retrieves an array of value data from the map, in key order.
+     *
+     * @param array the array to fill in. If smaller than the map's size, a new array will be created. If larger than the
+     *              map's size, data will be filled in from index 0, with a {@code null} reference just after the copied-in data.
+     *              This parameter must not be {@code null}.
+     * @return a reference to the filled-in array; may be a different array than the one passed in.
+     * @throws IllegalArgumentException if the array is {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public V[] toValueArray(V[] array) {
+        if (array == null) {
+            throw new IllegalArgumentException("Array cannot be null.");
+        }
+        if (array.length < size) {
+            array = (V[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(),
+                    size);
+        }
+        int index = 0;
+        for (int node = first(); node != NIL; node = successor(node)) {
+            array[index++] = (V) values[node];
+        }
+        if (array.length > size) {
+            array[size] = null;
+        }
+        return array;
+    }
+
+    @SuppressWarnings("unchecked")
+    V value(int node) {
+        return (V) values[node];
+    }
+
+    /**
+     * Allocates a slot for a new leaf and links it under the specified parent.
+     * The caller stores the key in the returned slot and then calls {@link #retrace(int)} on the parent.
+     *
+     * @param parentNode the parent slot, or {@link #NIL} for the root.
+     * @param goLeft {@code true} to link the leaf as the left child of the parent.
+     * @param value the value of the new pair.
+     * @return the slot of the new node.
+     */
+    int addNode(int parentNode, boolean goLeft, V value) {
+        if (size == left.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            height = Arrays.copyOf(height, capacity);
+            values = Arrays.copyOf(values, capacity);
+            if (total != null) {
+                total = Arrays.copyOf(total, capacity);
+            }
+            resizeKeys(capacity);
+        }
+        int node = size++;
+        left[node] = NIL;
+        right[node] = NIL;
+        parent[node] = parentNode;
+        height[node] = 1;
+        values[node] = value;
+        if (parentNode == NIL) {
+            root = node;
+        } else if (goLeft) {
+            left[parentNode] = node;
+        } else {
+            right[parentNode] = node;
+        }
+        if (weigher != null) {
+            int weight = weigher.applyAsInt(value);
+            total[node] = weight;
+            for (int ancestor = parentNode; ancestor != NIL; ancestor = parent[ancestor]) {
+                total[ancestor] += weight;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Replaces the value of an existing pair.
+     *
+     * @param node the slot of the pair.
+     * @param value the new value.
+     */
+    void replaceValue(int node, V value) {
+        values[node] = value;
+        if (weigher != null) {
+            reweighPath(node);
+        }
+    }
+
+    /**
+     * Unlinks the specified node and rebalances, then moves the pair in the last slot into the freed slot so that
+     * slots stay dense.
+     *
+     * @param node the slot of the pair to remove.
+     * @return the value of the removed pair.
+     */
+    V removeNode(int node) {
+        V removed = value(node);
+        if (left[node] != NIL && right[node] != NIL) {
+            // The successor has no left child, so it is unlinked instead once its pair has moved up.
+            int next = successor(node);
+            moveKey(next, node);
+            values[node] = values[next];
+            node = next;
+        }
+        int parentNode = parent[node];
+        replaceChild(node, left[node] != NIL ? left[node] : right[node]);
+        // The slot that took the successor's pair, if any, is on this path too.
+        if (weigher != null) {
+            reweighPath(parentNode);
+        }
+        retrace(parentNode);
+
+        int last = --size;
+        if (node != last) {
+            moveKey(last, node);
+            values[node] = values[last];
+            left[node] = left[last];
+            right[node] = right[last];
+            parent[node] = parent[last];
+            height[node] = height[last];
+            if (total != null) {
+                total[node] = total[last];
+            }
+            replaceChild(last, node);
+            if (left[node] != NIL) {
+                parent[left[node]] = node;
+            }
+            if (right[node] != NIL) {
+                parent[right[node]] = node;
+            }
+        }
+        values[last] = null;
+        return removed;
+    }
+
+    /**
+     * Walks from the specified node towards the root, updating heights and rebalancing, until a subtree is found
+     * whose height did not change.
+     *
+     * @param node the lowest node whose subtree changed.
+     */
+    void retrace(int node) {
+        while (node != NIL) {
+            int oldHeight = height[node];
+            node = balance(node);
+            if (height[node] == oldHeight) {
+                return;
+            }
+            node = parent[node];
+        }
+    }
+
+    private int height(int node) {
+        return node == NIL ? 0 : height[node];
+    }
+
+    /**
+     * Recomputes the height and, if the map is weighted, the subtree total of a node from its children.
+     */
+    private void update(int node) {
+        height[node] = (byte) (1 + Math.max(height(left[node]), height(right[node])));
+        if (weigher != null) {
+            total[node] = weigher.applyAsInt(value(node)) + total(left[node]) + total(right[node]);
+        }
+    }
+
+    int total(int node) {
+        return node == NIL ? 0 : total[node];
+    }
+
+    /**
+     * Recomputes the subtree totals of a node and of every node above it.
+     */
+    void reweighPath(int node) {
+        for (; node != NIL; node = parent[node]) {
+            total[node] = weigher.applyAsInt(value(node)) + total(left[node]) + total(right[node]);
+        }
+    }
+
+    /**
+     * Recomputes the subtree totals below and including a node, children first. Recursion depth is the tree height.
+     */
+    private void reweighAll(int node) {
+        if (node != NIL) {
+            reweighAll(left[node]);
+            reweighAll(right[node]);
+            total[node] = weigher.applyAsInt(value(node)) + total(left[node]) + total(right[node]);
+        }
+    }
+
+    /**
+     * Sets the function that weighs values and recomputes every subtree total, in time linear in the size of the map.
+     *
+     * @param weigher the weight of a value; must not be negative.
+     * @throws IllegalArgumentException if the weigher is {@code null}.
+     */
+    public void weighBy(ToIntFunction<? super V> weigher) {
+        if (weigher == null) {
+            throw new IllegalArgumentException("Weigher cannot be null.");
+        }
+        this.weigher = weigher;
+        total = new int[left.length];
+        reweighAll(root);
+    }
+
+    /**
+     * Retrieves the total weight of all values in the map.
+     *
+     * @return the sum of the weights.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    public int totalWeight() {
+        checkWeighed();
+        return total(root);
+    }
+
+    void checkWeighed() {
+        if (weigher == null) {
+            throw new IllegalStateException("Map has no weigher.");
+        }
+    }
+
+    /**
+     * Finds the slot whose value covers the specified position when every value is repeated as many times as it
+     * weighs, in key order.
+     *
+     * @param position the zero-based position.
+     * @return the slot covering the position.
+     * @throws IndexOutOfBoundsException if the position is negative or not less than {@link #totalWeight()}.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    int selectWeightedNode(int position) {
+        int all = totalWeight();
+        if (position < 0 || position >= all) {
+            throw new IndexOutOfBoundsException("Index " + position + " out of bounds for size " + all);
+        }
+        int node = root;
+        while (true) {
+            int leftTotal = total(left[node]);
+            if (position < leftTotal) {
+                node = left[node];
+                continue;
+            }
+            position -= leftTotal;
+            int weight = total[node] - leftTotal - total(right[node]);
+            if (position < weight) {
+                return node;
+            }
+            position -= weight;
+            node = right[node];
+        }
+    }
+
+    private int balance(int node) {
+        update(node);
+        int factor = height(left[node]) - height(right[node]);
+        if (factor > 1) {
+            if (height(left[left[node]]) < height(right[left[node]])) {
+                rotateLeft(left[node]);
+            }
+            return rotateRight(node);
+        } else if (factor < -1) {
+            if (height(right[right[node]]) < height(left[right[node]])) {
+                rotateRight(right[node]);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private int rotateLeft(int node) {
+        int pivot = right[node];
+        right[node] = left[pivot];
+        if (left[pivot] != NIL) {
+            parent[left[pivot]] = node;
+        }
+        replaceChild(node, pivot);
+        left[pivot] = node;
+        parent[node] = pivot;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private int rotateRight(int node) {
+        int pivot = left[node];
+        left[node] = right[pivot];
+        if (right[pivot] != NIL) {
+            parent[right[pivot]] = node;
+        }
+        replaceChild(node, pivot);
+        right[pivot] = node;
+        parent[node] = pivot;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private void replaceChild(int node, int replacement) {
+        int parentNode = parent[node];
+        if (parentNode == NIL) {
+            root = replacement;
+        } else if (left[parentNode] == node) {
+            left[parentNode] = replacement;
+        } else {
+            right[parentNode] = replacement;
+        }
+        if (replacement != NIL) {
+            parent[replacement] = parentNode;
+        }
+    }
+
+    int first() {
+        int node = root;
+        if (node != NIL) {
+            while (left[node] != NIL) {
+                node = left[node];
+            }
+        }
+        return node;
+    }
+
+    int successor(int node) {
+        if (right[node] != NIL) {
+            node = right[node];
+            while (left[node] != NIL) {
+                node = left[node];
+            }
+            return node;
+        }
+        int parentNode = parent[node];
+        while (parentNode != NIL && node == right[parentNode]) {
+            node = parentNode;
+            parentNode = parent[parentNode];
+        }
+        return parentNode;
+    }
+}
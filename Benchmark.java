@@ -0,0 +1,643 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks for the tree maps, the data file loader and the index builds, with {@link java.util.TreeMap} and
+ * {@link HashMap} as baselines, and with the code each optimization replaced: the recursive AVL tree, the
+ * {@link Scanner}-based loader and a scan of every book for keyword search.
+ * <p>
+ * Each benchmark is run for a number of warm-up iterations, whose results are discarded, and then for a number of
+ * measured iterations. An iteration repeats the operation until at least {@value #ITERATION_MILLIS} ms have passed.
+ * Results are the mean and standard deviation of the measured iterations, in nanoseconds per key or per book. Every
+ * result is also reported with the heap allocated per key or book, and with the number of garbage collections and
+ * the collection time per iteration. Allocation is summed over all live threads, which covers the parallel loader's
+ * fork-join workers. Every operation's result is stored in a volatile field so the JIT cannot discard the work.
+ * <p>
+ * Footprint rows report no timing; their B/op column is the heap a built structure retains per key, measured as the
+ * change in used heap across a forced collection while the structure is held.
+ * <p>
+ * Usage: {@code java -Xmx8g Benchmark [maps] [load] [indexes] [--sizes=10000,1000000,10000000] [--copies=1,10,100]
+ * [--warmup=3] [--iterations=5] [--file=BooksDataFile.txt]}. Without suite names, every suite runs.
+ * <ul>
+ *     <li>{@code maps}: put, get, containsKey (half of the keys absent) and toKeyArray on integer keys inserted in
+ *     random, sorted and reverse-sorted order, for each size. Besides the baselines, put, get, containsKey and
+ *     toKeyArray are also run on the recursive AVL tree the iterative {@link TreeMap} replaced, and get and
+ *     containsKey on a {@link FrozenTreeMap} of the same keys; the footprints of both {@link TreeMap} and
+ *     {@link FrozenTreeMap} are reported.</li>
+ *     <li>{@code load}: {@link BookFileLoader#load(Path)}, which is what the browser's {@code readBooks} runs, and
+ *     the {@link Scanner} and {@code split} parse it replaced, on the data file and on copies of it scaled by each
+ *     factor, with ISBNs made unique per copy.</li>
+ *     <li>{@code indexes}: the ISBN index, {@link CatalogStore}, {@link PrefixIndex} and {@link FullTextIndex}
+ *     built from the books of each scaled copy, and a title index keyed by plain strings and by {@link SortKey}s,
+ *     with the cost of creating the sort keys and of looking every title up. A two-word {@link FullTextIndex}
+ *     query is timed against a scan that tokenizes every book; these rows are per query, not per book.</li>
+ * </ul>
+ */
+public final class Benchmark {
+
+    private static final long ITERATION_MILLIS = 500;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+
+    @SuppressWarnings("unused")
+    private static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+
+    /**
+     * The order in which keys are inserted.
+     */
+    private enum KeyOrder {
+        RANDOM, SORTED, REVERSE;
+
+        Integer[] keys(int size) {
+            Integer[] keys = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = this == REVERSE ? size - 1 - i : i;
+            }
+            if (this == RANDOM) {
+                Collections.shuffle(Arrays.asList(keys), new Random(42));
+            }
+            return keys;
+        }
+    }
+
+    private Benchmark(int warmupIterations, int measurementIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+    }
+
+    /**
+     * Runs the selected benchmark suites and prints one line per result.
+     *
+     * @param args suite names and options; see the class description.
+     * @throws IOException if the data file cannot be read or a scaled copy cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> suites = new ArrayList<>();
+        int[] sizes = {10_000, 1_000_000, 10_000_000};
+        int[] copies = {1, 10, 100};
+        int warmup = 3;
+        int iterations = 5;
+        Path file = Path.of("BooksDataFile.txt");
+        for (String arg : args) {
+            if (arg.startsWith("--sizes=")) {
+                sizes = parseInts(arg.substring("--sizes=".length()));
+            } else if (arg.startsWith("--copies=")) {
+                copies = parseInts(arg.substring("--copies=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            } else if (arg.startsWith("--file=")) {
+                file = Path.of(arg.substring("--file=".length()));
+            } else {
+                suites.add(arg);
+            }
+        }
+        if (suites.isEmpty()) {
+            suites = List.of("maps", "load", "indexes");
+        }
+
+        Benchmark benchmark = new Benchmark(warmup, iterations);
+        System.out.printf("%-12s %-18s %-8s %10s %12s %10s %12s %9s %9s%n",
+                "Benchmark", "Impl", "Input", "Size", "ns/op", "stdev", "B/op", "gc/iter", "gc ms");
+        if (suites.contains("maps")) {
+            for (int size : sizes) {
+                for (KeyOrder order : KeyOrder.values()) {
+                    benchmark.maps(order, size);
+                }
+            }
+        }
+        if (suites.contains("load") || suites.contains("indexes")) {
+            for (int copy : copies) {
+                Path input = copy == 1 ? file : scaledCopy(file, copy);
+                try {
+                    benchmark.data(input, copy + "x", suites.contains("load"), suites.contains("indexes"));
+                } finally {
+                    if (input != file) {
+                        Files.delete(input);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] parseInts(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private void maps(KeyOrder order, int size) {
+        Integer[] keys = order.keys(size);
+        // Every other probe is absent, so containsKey pays for both outcomes.
+        Integer[] probes = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            probes[i] = i % 2 == 0 ? keys[i] : keys[i] + size;
+        }
+        String input = order.name().toLowerCase();
+
+        measure("put", "TreeMap", input, size, () -> {
+            TreeMap<Integer, Integer> map = new TreeMap<>();
+            for (Integer key : keys) {
+                map.put(key, key);
+            }
+            return map;
+        });
+        measure("put", "java.util.TreeMap", input, size, () -> fill(new java.util.TreeMap<>(), keys));
+        measure("put", "HashMap", input, size, () -> fill(new HashMap<>(), keys));
+
+        TreeMap<Integer, Integer> tree = new TreeMap<>();
+        for (Integer key : keys) {
+            tree.put(key, key);
+        }
+        measure("get", "TreeMap", input, size, () -> {
+            long sum = 0;
+            for (Integer key : keys) {
+                sum += tree.get(key);
+            }
+            return sum;
+        });
+        measure("containsKey", "TreeMap", input, size, () -> {
+            int found = 0;
+            for (Integer probe : probes) {
+                found += tree.containsKey(probe) ? 1 : 0;
+            }
+            return found;
+        });
+        measure("toKeyArray", "TreeMap", input, size, () -> tree.toKeyArray(new Integer[size]));
+
+        measure("put", "recursive", input, size, () -> {
+            RecursiveTreeMap<Integer, Integer> map = new RecursiveTreeMap<>();
+            for (Integer key : keys) {
+                map.put(key, key);
+            }
+            return map;
+        });
+        RecursiveTreeMap<Integer, Integer> recursive = new RecursiveTreeMap<>();
+        for (Integer key : keys) {
+            recursive.put(key, key);
+        }
+        measure("get", "recursive", input, size, () -> {
+            long sum = 0;
+            for (Integer key : keys) {
+                sum += recursive.get(key);
+            }
+            return sum;
+        });
+        measure("containsKey", "recursive", input, size, () -> {
+            int found = 0;
+            for (Integer probe : probes) {
+                found += recursive.containsKey(probe) ? 1 : 0;
+            }
+            return found;
+        });
+        measure("toKeyArray", "recursive", input, size, () -> recursive.toKeyArray(new Integer[size]));
+
+        FrozenTreeMap<Integer, Integer> frozen = FrozenTreeMap.from(tree);
+        measure("get", "FrozenTreeMap", input, size, () -> {
+            long sum = 0;
+            for (Integer key : keys) {
+                sum += frozen.get(key);
+            }
+            return sum;
+        });
+        measure("containsKey", "FrozenTreeMap", input, size, () -> {
+            int found = 0;
+            for (Integer probe : probes) {
+                found += frozen.containsKey(probe) ? 1 : 0;
+            }
+            return found;
+        });
+        footprint("TreeMap", input, size, () -> {
+            TreeMap<Integer, Integer> map = new TreeMap<>();
+            for (Integer key : keys) {
+                map.put(key, key);
+            }
+            return map;
+        });
+        footprint("FrozenTreeMap", input, size, () -> FrozenTreeMap.from(tree));
+
+        for (Map<Integer, Integer> map : List.<Map<Integer, Integer>>of(fill(new java.util.TreeMap<>(), keys),
+                fill(new HashMap<>(), keys))) {
+            String impl = map instanceof HashMap ? "HashMap" : "java.util.TreeMap";
+            measure("get", impl, input, size, () -> {
+                long sum = 0;
+                for (Integer key : keys) {
+                    sum += map.get(key);
+                }
+                return sum;
+            });
+            measure("containsKey", impl, input, size, () -> {
+                int found = 0;
+                for (Integer probe : probes) {
+                    found += map.containsKey(probe) ? 1 : 0;
+                }
+                return found;
+            });
+            // HashMap's keys come out in hash order; it is timed only as the cost of copying them.
+            measure("toKeyArray", impl, input, size, () -> map.keySet().toArray(new Integer[size]));
+        }
+    }
+
+    private static Map<Integer, Integer> fill(Map<Integer, Integer> map, Integer[] keys) {
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    private void data(Path file, String input, boolean load, boolean indexes) throws IOException {
+        Book[] books = BookFileLoader.load(file).books().toArray(new Book[0]);
+        if (load) {
+            measure("readBooks", "BookFileLoader", input, books.length, () -> {
+                try {
+                    return BookFileLoader.load(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            measure("readBooks", "Scanner", input, books.length, () -> scannerLoad(file));
+        }
+        if (!indexes) {
+            return;
+        }
+        String[] isbns = new String[books.length];
+        Integer[] ids = new Integer[books.length];
+        for (int i = 0; i < books.length; i++) {
+            isbns[i] = books[i].isbn();
+            ids[i] = i;
+        }
+        measure("isbnIndex", "TreeMap", input, books.length, () -> TreeMap.fromArrays(isbns, ids));
+        measure("isbnIndex", "java.util.TreeMap", input, books.length, () -> {
+            java.util.TreeMap<String, Integer> map = new java.util.TreeMap<>();
+            for (int i = 0; i < isbns.length; i++) {
+                map.put(isbns[i], ids[i]);
+            }
+            return map;
+        });
+        measure("isbnIndex", "HashMap", input, books.length, () -> {
+            HashMap<String, Integer> map = new HashMap<>();
+            for (int i = 0; i < isbns.length; i++) {
+                map.put(isbns[i], ids[i]);
+            }
+            return map;
+        });
+        measure("catalog", "CatalogStore", input, books.length, () -> CatalogStore.of(books));
+        measure("prefix", "PrefixIndex", input, books.length, () -> PrefixIndex.build(books));
+        measure("fullText", "FullTextIndex", input, books.length, () -> FullTextIndex.build(books));
+
+        // Two words of the first title, so the query has hits at every scale.
+        String[] titleTokens = FullTextIndex.tokenize(books[0].title());
+        String query = String.join(" ", Arrays.copyOf(titleTokens, Math.min(2, titleTokens.length)));
+        FullTextIndex fullText = FullTextIndex.build(books);
+        measure("search", "FullTextIndex", input, 1, () -> fullText.search(query, 10, 0));
+        measure("search", "scan", input, 1, () -> scanSearch(books, FullTextIndex.tokenize(query)));
+
+        String[] titles = new String[books.length];
+        for (int i = 0; i < books.length; i++) {
+            titles[i] = books[i].title();
+        }
+        Function<String, SortKey> sortKey = SortKey.forLocale(Locale.ENGLISH);
+        SortKey[] titleKeys = Arrays.stream(titles).map(sortKey).toArray(SortKey[]::new);
+        measure("sortKeys", "SortKey", input, books.length,
+                () -> Arrays.stream(titles).map(sortKey).toArray(SortKey[]::new));
+        measure("titleIndex", "String", input, books.length, () -> PostingIndex.build(titles));
+        measure("titleIndex", "SortKey", input, books.length, () -> PostingIndex.build(titleKeys));
+        PostingIndex<String> byTitle = PostingIndex.build(titles);
+        PostingIndex<SortKey> byTitleKey = PostingIndex.build(titleKeys);
+        measure("titleGet", "String", input, books.length, () -> {
+            int found = 0;
+            for (String title : titles) {
+                found += byTitle.get(title).size();
+            }
+            return found;
+        });
+        measure("titleGet", "SortKey", input, books.length, () -> {
+            int found = 0;
+            for (SortKey title : titleKeys) {
+                found += byTitleKey.get(title).size();
+            }
+            return found;
+        });
+    }
+
+    /**
+     * Reads the data file the way the browser did before {@link BookFileLoader}: a {@link Scanner} over the file,
+     * with each line split on the delimiter. The file is decoded as UTF-8, as the loader does, rather than in the
+     * platform charset.
+     */
+    private static List<Book> scannerLoad(Path file) {
+        List<Book> books = new ArrayList<>();
+        try (Scanner scan = new Scanner(file, StandardCharsets.UTF_8)) {
+            scan.nextLine();
+            while (scan.hasNextLine()) {
+                String[] fields = scan.nextLine().split("~");
+                books.add(new Book(fields[2], fields[3], Integer.parseInt(fields[4]), fields[5], fields[6],
+                        Double.parseDouble(fields[7])));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return books;
+    }
+
+    /**
+     * Finds the books whose title, original title or authors contain every query token, by tokenizing every book.
+     */
+    private static int[] scanSearch(Book[] books, String[] tokens) {
+        int[] ids = new int[books.length];
+        int count = 0;
+        for (int id = 0; id < books.length; id++) {
+            Book book = books[id];
+            List<String> text = Arrays.asList(FullTextIndex.tokenize(
+                    book.title() + " " + book.originalTitle() + " " + book.authors()));
+            if (text.containsAll(Arrays.asList(tokens))) {
+                ids[count++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Writes a copy of the data file with every row repeated the specified number of times. Each repetition gets its
+     * own ISBN prefix, so the copies are distinct books.
+     *
+     * @return the path of the temporary copy.
+     */
+    private static Path scaledCopy(Path file, int copies) throws IOException {
+        List<String> rows = new ArrayList<>();
+        String header;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            header = reader.readLine();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                rows.add(line);
+            }
+        }
+        Path copy = Files.createTempFile("books-" + copies + "x-", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(copy, StandardCharsets.UTF_8)) {
+            writer.write(header);
+            writer.newLine();
+            for (int c = 0; c < copies; c++) {
+                for (String row : rows) {
+                    // The ISBN is the third field.
+                    int start = row.indexOf('~', row.indexOf('~') + 1) + 1;
+                    writer.write(row, 0, start);
+                    writer.write(c + "-");
+                    writer.write(row, start, row.length() - start);
+                    writer.newLine();
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Runs one benchmark and prints its result.
+     *
+     * @param name the operation being measured.
+     * @param impl the implementation measured.
+     * @param input a description of the input.
+     * @param ops the number of keys or books one call of the operation handles.
+     * @param operation the operation; its result is kept alive until the next call.
+     */
+    private void measure(String name, String impl, String input, int ops, Supplier<Object> operation) {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(ops, operation);
+        }
+        double[] scores = new double[measurementIterations];
+        double allocated = 0;
+        double collections = 0;
+        double collectionMillis = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            double[] result = iteration(ops, operation);
+            scores[i] = result[0];
+            allocated += result[1] / measurementIterations;
+            collections += result[2] / measurementIterations;
+            collectionMillis += result[3] / measurementIterations;
+        }
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double variance = Arrays.stream(scores).map(s -> (s - mean) * (s - mean)).sum()
+                / Math.max(1, scores.length - 1);
+        System.out.printf("%-12s %-18s %-8s %10d %12.1f %10.1f %12.1f %9.1f %9.1f%n",
+                name, impl, input, ops, mean, Math.sqrt(variance), allocated, collections, collectionMillis);
+        sink = null;
+    }
+
+    /**
+     * Builds a structure and prints the heap it retains per key. The heap is measured across forced collections, so
+     * the result is approximate and best read for large sizes.
+     *
+     * @param impl the implementation measured.
+     * @param input a description of the input.
+     * @param ops the number of keys the structure holds.
+     * @param build builds the structure; anything it shares with the caller, such as the keys, is not counted.
+     */
+    private void footprint(String impl, String input, int ops, Supplier<Object> build) {
+        sink = null;
+        long before = usedHeap();
+        sink = build.get();
+        long retained = usedHeap() - before;
+        System.out.printf("%-12s %-18s %-8s %10d %12s %10s %12.1f %9s %9s%n",
+                "footprint", impl, input, ops, "-", "-", (double) retained / ops, "-", "-");
+        sink = null;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Calls the operation repeatedly for at least {@link #ITERATION_MILLIS}.
+     *
+     * @return nanoseconds per op, bytes allocated per op, and the collections and collection time in the iteration.
+     */
+    private static double[] iteration(int ops, Supplier<Object> operation) {
+        sink = null;
+        long bytesBefore = allocatedBytes();
+        long collectionsBefore = 0;
+        long collectionMillisBefore = 0;
+        for (GarbageCollectorMXBean collector : COLLECTORS) {
+            collectionsBefore += collector.getCollectionCount();
+            collectionMillisBefore += collector.getCollectionTime();
+        }
+        long calls = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink = operation.get();
+            calls++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_MILLIS * 1_000_000);
+        long bytes = allocatedBytes() - bytesBefore;
+        long collections = -collectionsBefore;
+        long collectionMillis = -collectionMillisBefore;
+        for (GarbageCollectorMXBean collector : COLLECTORS) {
+            collections += collector.getCollectionCount();
+            collectionMillis += collector.getCollectionTime();
+        }
+        double totalOps = (double) calls * ops;
+        return new double[]{elapsed / totalOps, bytes / totalOps, collections, collectionMillis};
+    }
+
+    /**
+     * Retrieves the bytes allocated so far by all live threads, or 0 if the JVM cannot report it.
+     */
+    private static long allocatedBytes() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemoryEnabled()) {
+            return 0;
+        }
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    /**
+     * The AVL tree as it was before {@link TreeMap} became iterative: lookups, inserts and the in-order export all
+     * recurse down the tree, and nodes keep no parent link or subtree size.
+     */
+    private static final class RecursiveTreeMap<K extends Comparable<K>, V> {
+        private Node<K, V> root;
+        private int size;
+
+        private static final class Node<K, V> {
+            final K key;
+            V value;
+            Node<K, V> left;
+            Node<K, V> right;
+            int height = 1;
+
+            Node(K key, V value) {
+                this.key = key;
+                this.value = value;
+            }
+        }
+
+        V get(K key) {
+            Node<K, V> node = get(root, key);
+            return node != null ? node.value : null;
+        }
+
+        boolean containsKey(K key) {
+            return get(root, key) != null;
+        }
+
+        private Node<K, V> get(Node<K, V> node, K key) {
+            if (node == null) {
+                return null;
+            }
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                return get(node.left, key);
+            } else if (cmp > 0) {
+                return get(node.right, key);
+            }
+            return node;
+        }
+
+        void put(K key, V value) {
+            root = put(root, key, value);
+        }
+
+        private Node<K, V> put(Node<K, V> node, K key, V value) {
+            if (node == null) {
+                size++;
+                return new Node<>(key, value);
+            }
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node.left = put(node.left, key, value);
+            } else if (cmp > 0) {
+                node.right = put(node.right, key, value);
+            } else {
+                node.value = value;
+                return node;
+            }
+            return balance(node);
+        }
+
+        K[] toKeyArray(K[] array) {
+            fillKeys(root, array, 0);
+            return array;
+        }
+
+        private int fillKeys(Node<K, V> node, K[] array, int index) {
+            if (node == null) {
+                return index;
+            }
+            index = fillKeys(node.left, array, index);
+            array[index++] = node.key;
+            return fillKeys(node.right, array, index);
+        }
+
+        private static int height(Node<?, ?> node) {
+            return node == null ? 0 : node.height;
+        }
+
+        private static void updateHeight(Node<?, ?> node) {
+            node.height = 1 + Math.max(height(node.left), height(node.right));
+        }
+
+        private Node<K, V> balance(Node<K, V> node) {
+            updateHeight(node);
+            int factor = height(node.left) - height(node.right);
+            if (factor > 1) {
+                if (height(node.left.left) < height(node.left.right)) {
+                    node.left = rotateLeft(node.left);
+                }
+                return rotateRight(node);
+            } else if (factor < -1) {
+                if (height(node.right.right) < height(node.right.left)) {
+                    node.right = rotateRight(node.right);
+                }
+                return rotateLeft(node);
+            }
+            return node;
+        }
+
+        private Node<K, V> rotateLeft(Node<K, V> node) {
+            Node<K, V> pivot = node.right;
+            node.right = pivot.left;
+            pivot.left = node;
+            updateHeight(node);
+            updateHeight(pivot);
+            return pivot;
+        }
+
+        private Node<K, V> rotateRight(Node<K, V> node) {
+            Node<K, V> pivot = node.left;
+            node.left = pivot.right;
+            pivot.right = node;
+            updateHeight(node);
+            updateHeight(pivot);
+            return pivot;
+        }
+    }
+}
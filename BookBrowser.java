@@ -1,37 +1,84 @@
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Scanner;
-import java.io.FileNotFoundException;
-import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.io.IOException;
 
 public class BookBrowser extends JFrame {
-    private final TreeMap<String, Book> isbnTreeMap;
-    private final TreeMap<String, Book> authorsTreeMap;
-    private final TreeMap<Integer, Book> pubYearTreeMap;
-    private final TreeMap<String, Book> originalTitleTreeMap;
-    private final TreeMap<String, Book> titleTreeMap;
-    private final TreeMap<Double, Book> averageRatingTreeMap;
-
-    private final HashMap<String, TreeMap<?, Book>> bookMaps;
-
-    private final JTextField isbnField;
-    private final JTextField authorsField;
-    private final JTextField yearField;
-    private final JTextField originalTitleField;
-    private final JTextField titleField;
-    private final JTextField avgRatingField;
-
-    private Object[] isbnKeys;
+    // Covers this many books ahead of and behind the current one are fetched in the background.
+    private static final int PREFETCH_DISTANCE = 3;
+    private static final int COVER_THREADS = 4;
+    private static final int SEARCH_RESULTS = 10;
+    // Keyword matches gain this much score per star of average rating.
+    private static final double RATING_BOOST = 0.5;
+    // Covers are scaled once to the panel size; 300x400 covers take about 480 KB each in memory.
+    private static final Dimension COVER_SIZE = new Dimension(300, 400);
+    // Over a hundred scaled covers in memory, and a few thousand full-size ones on disk.
+    private static final long COVER_MEMORY_BYTES = 64L << 20;
+    private static final long COVER_DISK_BYTES = 128L << 20;
+    private static final Duration COVER_MAX_AGE = Duration.ofDays(30);
+    private static final Path COVER_CACHE_DIRECTORY = Path.of(System.getProperty("user.home"), ".book-browser",
+            "covers");
+    private static final Duration METRICS_LOG_INTERVAL = Duration.ofSeconds(Long.getLong("bookbrowser.metrics.interval",
+            60));
+    // The nightly export is written in several steps; the file is reloaded once it has been left alone this long.
+    private static final Duration RELOAD_QUIET_PERIOD = Duration.ofSeconds(2);
+    // With -Dbookbrowser.collation=<language tag>, such as fr or en-GB, titles and authors are ordered as readers of
+    // that locale expect instead of by character code; "default" picks the system locale.
+    private static final Locale COLLATION_LOCALE = collationLocale(System.getProperty("bookbrowser.collation"));
+
+    // Replaced on the event dispatch thread when the data file is reloaded; read by background index builds.
+    private volatile CatalogStore catalog;
+    private final TreeMap<String, Integer> isbnTreeMap;
+    private final Ordering isbnOrdering;
+    // Most sessions only browse in ISBN order, so every other index is built the first time it is needed.
+    // Text indexes are keyed by String, or by SortKey when ordering by locale.
+    private final LazyIndex<? extends PostingIndex<?>> authorsIndex;
+    private final LazyIndex<PostingIndex<Integer>> pubYearIndex;
+    private final LazyIndex<? extends PostingIndex<?>> originalTitleIndex;
+    private final LazyIndex<? extends PostingIndex<?>> titleIndex;
+    private final LazyIndex<PostingIndex<Double>> averageRatingIndex;
+    private final LazyIndex<PrefixIndex> searchIndex;
+    private final LazyIndex<FullTextIndex> fullTextIndex;
+    private CompletableFuture<BookFilter> bookFilter;
+
+    private final HashMap<String, LazyIndex<? extends PostingIndex<?>>> secondaryIndexes;
+    // Bring each secondary index up to date after a reload.
+    private final List<Consumer<CatalogDelta>> indexPatches = new ArrayList<>();
+
+    private final BookTableModel tableModel;
+    private final JTable table;
+
     private int currentIndex = 0;
     private JComboBox<String> comboBox;
+    private JProgressBar progress;
+    private int pendingBuilds;
+    // Counts catalog reloads, so that indexes built for an older catalog are not shown.
+    private int generation;
     private final CoverPanel coverPanel;
 
     public static void main(String[] args) {
@@ -43,19 +90,47 @@ public class BookBrowser extends JFrame {
         setSize(1200, 600);
         setResizable(false);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
+        if (Metrics.ENABLED) {
+            Metrics.startLogging(METRICS_LOG_INTERVAL, System.err);
+        }
 
-        isbnTreeMap = new TreeMap<>();
-        authorsTreeMap = new TreeMap<>();
-        pubYearTreeMap = new TreeMap<>();
-        originalTitleTreeMap = new TreeMap<>();
-        titleTreeMap = new TreeMap<>();
-        averageRatingTreeMap = new TreeMap<>();
-        bookMaps = new HashMap<>();
-
-        File bookData = new File("BooksDataFile.txt");
-        readBooks(bookData);
-
-        isbnKeys = isbnTreeMap.toKeyArray(new String[0]);
+        Path bookData = Path.of("BooksDataFile.txt");
+        Path snapshotFile = CatalogSnapshot.pathFor(bookData);
+        CatalogSnapshot.Contents snapshot = timed("snapshot", () -> CatalogSnapshot.open(snapshotFile, bookData));
+        BookFileLoader.Result loaded = snapshot != null ? null : timed("read", () -> readBooks(bookData.toFile()));
+        Book[] books = snapshot != null ? snapshot.books() : loaded.books().toArray(new Book[0]);
+        // The Book objects are only needed while the indexes are built; the browser keeps the compact copy.
+        catalog = timed("catalog", () -> CatalogStore.of(books));
+        // A snapshot carries its orderings pre-sorted, so the indexes below are built from them without sorting.
+        Map<String, int[]> orders = snapshot != null ? snapshot.orders() : Map.of();
+
+        isbnTreeMap = timed("index.isbn", () -> buildIndex(books, Book::isbn, orders.get("ISBN")));
+        isbnOrdering = ordering(isbnTreeMap);
+        if (Metrics.ENABLED) {
+            isbnTreeMap.instrument("isbn");
+        }
+        authorsIndex = textIndex("authors", CatalogStore::authors, orders.get("Authors"));
+        pubYearIndex = lazyIndex("year", CatalogStore::publicationYear, orders.get("Year"), IntTreeMap::new);
+        originalTitleIndex = textIndex("originalTitle", CatalogStore::originalTitle, orders.get("Orig. Title"));
+        titleIndex = textIndex("title", CatalogStore::title, orders.get("Title"));
+        averageRatingIndex = lazyIndex("rating", CatalogStore::averageRating, orders.get("Avg. Rating"),
+                DoubleTreeMap::new);
+        // The search indexes need whole books; they are assembled again from the catalog when first needed.
+        searchIndex = new LazyIndex<>(() -> timed("index.prefix", () -> PrefixIndex.build(catalog.toArray())),
+                ForkJoinPool.commonPool());
+        fullTextIndex = new LazyIndex<>(() -> timed("index.fullText", () -> FullTextIndex.build(catalog.toArray())),
+                ForkJoinPool.commonPool());
+
+        secondaryIndexes = new HashMap<>();
+        secondaryIndexes.put("Authors", authorsIndex);
+        secondaryIndexes.put("Year", pubYearIndex);
+        secondaryIndexes.put("Orig. Title", originalTitleIndex);
+        secondaryIndexes.put("Title", titleIndex);
+        secondaryIndexes.put("Avg. Rating", averageRatingIndex);
+
+        if (snapshot == null) {
+            CompletableFuture.runAsync(() -> saveSnapshot(snapshotFile, bookData, loaded, books));
+        }
 
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new GridBagLayout());
@@ -71,24 +146,37 @@ public class BookBrowser extends JFrame {
         mainPanel.add(createOrderPanel(), gbc);
 
         gbc.gridy++;
-        mainPanel.add(createLabeledField("ISBN:", isbnField = new JTextField(20)), gbc);
-
-        gbc.gridy++;
-        mainPanel.add(createLabeledField("Authors:", authorsField = new JTextField(20)), gbc);
-
-        gbc.gridy++;
-        mainPanel.add(createLabeledField("Year:", yearField = new JTextField(20)), gbc);
-
-        gbc.gridy++;
-        mainPanel.add(createLabeledField("Orig. Title:", originalTitleField =
-                new JTextField(20)), gbc);
-
-        gbc.gridy++;
-        mainPanel.add(createLabeledField("Title:", titleField = new JTextField(20)), gbc);
+        mainPanel.add(createFilterPanel(), gbc);
+
+        // The table asks its model only for the rows in view, so it scrolls the same over any catalog size.
+        tableModel = new BookTableModel(isbnOrdering);
+        table = new JTable(tableModel);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(90);
+        table.getColumnModel().getColumn(1).setPreferredWidth(180);
+        table.getColumnModel().getColumn(2).setPreferredWidth(40);
+        table.getColumnModel().getColumn(3).setPreferredWidth(200);
+        table.getColumnModel().getColumn(4).setPreferredWidth(200);
+        table.getColumnModel().getColumn(5).setPreferredWidth(60);
+        table.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                if (!e.getValueIsAdjusting() && table.getSelectedRow() >= 0) {
+                    showCover(table.getSelectedRow());
+                }
+            }
+        });
 
         gbc.gridy++;
-        mainPanel.add(createLabeledField("Avg. Rating:", avgRatingField = new JTextField(20)),
-                gbc);
+        gbc.weightx = 1;
+        gbc.weighty = 1;
+        gbc.fill = GridBagConstraints.BOTH;
+        JScrollPane tablePane = new JScrollPane(table);
+        tablePane.setPreferredSize(new Dimension(840, 400));
+        mainPanel.add(tablePane, gbc);
+        gbc.weightx = 0;
+        gbc.weighty = 0;
 
         gbc.gridy++;
         gbc.gridwidth = GridBagConstraints.REMAINDER;
@@ -104,13 +192,23 @@ public class BookBrowser extends JFrame {
         gbc.gridx = 1;
         gbc.gridy = 0;
         gbc.gridheight = GridBagConstraints.RELATIVE;
-        gbc.fill = GridBagConstraints.BOTH;
-        coverPanel = new CoverPanel();
-        coverPanel.setPreferredSize(new Dimension(300, 400));
+        // Not stretched to fill its cell, so it stays at the size covers are scaled to.
+        gbc.fill = GridBagConstraints.NONE;
+        gbc.anchor = GridBagConstraints.NORTH;
+        CoverCache coverCache = new CoverCache(COVER_MEMORY_BYTES, COVER_CACHE_DIRECTORY, COVER_DISK_BYTES,
+                COVER_MAX_AGE);
+        coverPanel = new CoverPanel(new CoverLoader(CoverSource.openLibrary(), coverCache, COVER_THREADS,
+                COVER_SIZE));
+        coverPanel.setPreferredSize(COVER_SIZE);
+        coverPanel.setMinimumSize(COVER_SIZE);
         mainPanel.add(coverPanel, gbc);
 
-        if (isbnKeys.length > 0) {
-            updateFields(isbnTreeMap.get((String) isbnKeys[0]));
+        showBookAt(0);
+
+        try {
+            CatalogWatcher.start(bookData, RELOAD_QUIET_PERIOD, result -> reload(bookData, result));
+        } catch (IOException e) {
+            System.err.println("Not watching " + bookData + " for changes: " + e);
         }
 
         setVisible(true);
@@ -129,44 +227,165 @@ public class BookBrowser extends JFrame {
         comboBox.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                String selected = (String) comboBox.getSelectedItem();
-                TreeMap<?, Book> selectedMap = bookMaps.get(selected);
-                if (selectedMap != null) {
-                    currentIndex = 0;
-                    if (selected.equals("Year")) {
-                        isbnKeys = ((TreeMap<Integer, Book>) selectedMap).toKeyArray
-                                (new Integer[0]);
-                    } else if (selected.equals("Avg. Rating")) {
-                        isbnKeys = ((TreeMap<Double, Book>) selectedMap).toKeyArray(new Double[0]);
-                    } else {
-                        isbnKeys = ((TreeMap<String, Book>) selectedMap).toKeyArray(new String[0]);
-                    }
-                    updateFields(getBookFromMap(selectedMap, isbnKeys[currentIndex]));
-                }
+                showSelectedOrdering();
             }
         });
 
+        // Shown while an index is built in the background.
+        progress = new JProgressBar();
+        progress.setIndeterminate(true);
+        progress.setStringPainted(true);
+        progress.setVisible(false);
+
         panel.add(label);
         panel.add(comboBox);
+        panel.add(createLabel("Search:"));
+        panel.add(createSearchField());
+        panel.add(progress);
 
         return panel;
     }
 
-    private JPanel createLabeledField(String labelText, JTextField textField) {
+    /**
+     * Creates a search box over titles and authors. Each keystroke refines a prefix search, and the best rated
+     * matches are offered in a popup; pressing Enter instead runs a ranked keyword search for every word typed.
+     * Choosing a match shows that book in ISBN order.
+     */
+    private JTextField createSearchField() {
+        JTextField field = new JTextField(20);
+        JPopupMenu popup = new JPopupMenu();
+        popup.setFocusable(false);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            private PrefixIndex searched;
+            private PrefixIndex.Search search;
+
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                update();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                update();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                update();
+            }
+
+            private void update() {
+                if (field.getText().isBlank()) {
+                    showSearchResults(popup, field, new int[0]);
+                    return;
+                }
+                whenBuilt("search", searchIndex.get(), index -> {
+                    // The index is built again after the catalog is reloaded.
+                    if (index != searched) {
+                        searched = index;
+                        search = index.newSearch();
+                    }
+                    // Keystrokes typed while the index was built each land here; all of them show the latest text.
+                    if (!field.getText().isBlank()) {
+                        search.update(field.getText());
+                        showSearchResults(popup, field, search.top(SEARCH_RESULTS));
+                    }
+                });
+            }
+        });
+        field.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                whenBuilt("keyword", fullTextIndex.get(), index -> showSearchResults(popup, field,
+                        index.search(field.getText(), SEARCH_RESULTS, RATING_BOOST).stream()
+                                .mapToInt(FullTextIndex.Hit::id).toArray()));
+            }
+        });
+        return field;
+    }
+
+    private void showSearchResults(JPopupMenu popup, JTextField field, int[] ids) {
+        popup.setVisible(false);
+        popup.removeAll();
+        for (int id : ids) {
+            Book book = catalog.book(id);
+            JMenuItem item = new JMenuItem(book.title() + " \u2014 " + book.authors());
+            item.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    comboBox.setSelectedItem("ISBN");
+                    showBookAt(isbnTreeMap.rank(book.isbn()));
+                }
+            });
+            popup.add(item);
+        }
+        if (popup.getComponentCount() > 0) {
+            popup.show(field, 0, field.getHeight());
+        }
+    }
+
+    /**
+     * Creates the filter controls. Applying a filter shows the matching books in catalog order; clearing it, or
+     * picking another order, shows the whole catalog again.
+     */
+    private JPanel createFilterPanel() {
         JPanel panel = new JPanel();
         panel.setLayout(new FlowLayout(FlowLayout.LEFT));
         panel.setBackground(Color.GRAY);
 
-        JLabel label = createLabel(labelText);
-        textField.setMaximumSize(new Dimension(400, 30));
-        textField.setEditable(false);
-
-        panel.add(label);
-        panel.add(textField);
+        JTextField minYear = new JTextField(4);
+        JTextField maxYear = new JTextField(4);
+        JTextField minRating = new JTextField(3);
+        JTextField author = new JTextField(12);
+        JButton apply = new JButton("Filter");
+        JButton clear = new JButton("Clear");
+        apply.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                BookFilter.Criteria criteria;
+                try {
+                    criteria = new BookFilter.Criteria(parseYear(minYear.getText()), parseYear(maxYear.getText()),
+                            minRating.getText().isBlank() ? null : Double.valueOf(minRating.getText().strip()),
+                            null, author.getText());
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(BookBrowser.this, "Years and ratings must be numbers.",
+                            "Filter", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+                whenBuilt("filter", bookFilter(), filter -> {
+                    tableModel.setOrdering(ordering(filter.apply(criteria)));
+                    showBookAt(0);
+                });
+            }
+        });
+        clear.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                minYear.setText("");
+                maxYear.setText("");
+                minRating.setText("");
+                author.setText("");
+                showSelectedOrdering();
+            }
+        });
 
+        panel.add(createLabel("Year:"));
+        panel.add(minYear);
+        panel.add(createLabel("-"));
+        panel.add(maxYear);
+        panel.add(createLabel("Rating \u2265"));
+        panel.add(minRating);
+        panel.add(createLabel("Author:"));
+        panel.add(author);
+        panel.add(apply);
+        panel.add(clear);
         return panel;
     }
 
+    private static Integer parseYear(String text) {
+        return text.isBlank() ? null : Integer.valueOf(text.strip());
+    }
+
     private JLabel createLabel(String text) {
         JLabel label = new JLabel(text);
         label.setFont(new Font("Arial", Font.BOLD, 18));
@@ -182,31 +401,16 @@ public class BookBrowser extends JFrame {
             public void actionPerformed(ActionEvent e) {
                 switch (text) {
                     case "|<-":
-                        if (isbnKeys.length > 0) {
-                            currentIndex = 0;
-                            updateFields(getBookFromMap(bookMaps.get(comboBox.getSelectedItem()),
-                                    isbnKeys[currentIndex]));
-                        }
+                        showBookAt(0);
                         break;
                     case "< Prev":
-                        if (currentIndex > 0) {
-                            currentIndex--;
-                            updateFields(getBookFromMap(bookMaps.get(comboBox.getSelectedItem()),
-                                    isbnKeys[currentIndex]));
-                        }
+                        showBookAt(currentIndex - 1);
+                        break;
                     case "Next >":
-                        if (currentIndex < isbnKeys.length - 1) {
-                            currentIndex++;
-                            updateFields(getBookFromMap(bookMaps.get(comboBox.getSelectedItem()),
-                                    isbnKeys[currentIndex]));
-                        }
+                        showBookAt(currentIndex + 1);
                         break;
                     case "->|":
-                        if (isbnKeys.length > 0) {
-                            currentIndex = isbnKeys.length - 1;
-                            updateFields(getBookFromMap(bookMaps.get(comboBox.getSelectedItem()),
-                                    isbnKeys[currentIndex]));
-                        }
+                        showBookAt(tableModel.getRowCount() - 1);
                         break;
                 }
             }
@@ -214,78 +418,370 @@ public class BookBrowser extends JFrame {
         return button;
     }
 
-    private void updateFields(Book book) {
-        if (book != null) {
-            isbnField.setText(book.isbn());
-            authorsField.setText(book.authors());
-            yearField.setText(String.valueOf(book.publicationYear()));
-            originalTitleField.setText(book.originalTitle());
-            titleField.setText(book.title());
-            avgRatingField.setText(String.valueOf(book.averageRating()));
+    /**
+     * Shows the whole catalog in the order picked in the combo box, building that order's index first if needed.
+     */
+    private void showSelectedOrdering() {
+        String name = (String) comboBox.getSelectedItem();
+        CompletableFuture<Ordering> ordering = name.equals("ISBN") ? CompletableFuture.completedFuture(isbnOrdering)
+                : secondaryIndexes.get(name).get().thenApply(index -> ordering(index));
+        whenBuilt(name, ordering, built -> {
+            // Another order may have been picked while this one was being built.
+            if (name.equals(comboBox.getSelectedItem())) {
+                tableModel.setOrdering(built);
+                showBookAt(0);
+            }
+        });
+    }
 
-            coverPanel.loadCoverImage(book.isbn());
+    /**
+     * Retrieves the filter, building the year, rating and author indexes it works on first if needed.
+     */
+    private CompletableFuture<BookFilter> bookFilter() {
+        if (bookFilter == null) {
+            CompletableFuture<PostingIndex<Integer>> years = pubYearIndex.get();
+            CompletableFuture<PostingIndex<Double>> ratings = averageRatingIndex.get();
+            CompletableFuture<? extends PostingIndex<?>> authors = authorsIndex.get();
+            bookFilter = CompletableFuture.allOf(years, ratings, authors)
+                    .thenApply(done -> new BookFilter(catalog, years.join(), ratings.join(), authors.join()));
         }
+        return bookFilter;
     }
 
-    private Book getBookFromMap(TreeMap<?, Book> map, Object key) {
-        if (map.size() == 0 || key == null) return null;
+    /**
+     * Runs an action on the event dispatch thread with an index, at once if it is built and otherwise once its
+     * background build finishes. Meanwhile the progress bar says what is being built. If the catalog is reloaded
+     * before the build finishes, the action is skipped.
+     */
+    private <T> void whenBuilt(String name, CompletableFuture<T> index, Consumer<T> action) {
+        if (index.isDone() && !index.isCompletedExceptionally()) {
+            action.accept(index.join());
+            return;
+        }
+        int started = generation;
+        pendingBuilds++;
+        progress.setString("Building " + name + " index\u2026");
+        progress.setVisible(true);
+        index.whenComplete((built, error) -> SwingUtilities.invokeLater(() -> {
+            if (--pendingBuilds == 0) {
+                progress.setVisible(false);
+            }
+            if (error != null) {
+                System.err.println("Could not build the " + name + " index: " + error);
+            } else if (started == generation) {
+                action.accept(built);
+            }
+        }));
+    }
 
-        if (key instanceof String) {
-            return ((TreeMap<String, Book>) map).get((String) key);
-        } else if (key instanceof Integer) {
-            return ((TreeMap<Integer, Book>) map).get((Integer) key);
-        } else if (key instanceof Double) {
-            return ((TreeMap<Double, Book>) map).get((Double) key);
-        } else {
-            return null;
+    /**
+     * Selects the book at the specified position of the selected ordering, if there is one, and scrolls it into view.
+     */
+    private void showBookAt(int index) {
+        if (index >= 0 && index < tableModel.getRowCount()) {
+            table.setRowSelectionInterval(index, index);
+            table.scrollRectToVisible(table.getCellRect(index, 0, true));
         }
     }
 
-    private void readBooks(File file) {
-        try (Scanner scan = new Scanner(file)) {
-            scan.nextLine();
-            while (scan.hasNextLine()) {
-                String line = scan.nextLine();
-                String[] fields = line.split("~");
-                String isbn = fields[2];
-                String authors = fields[3];
-                String pubYear = fields[4];
-                String originalTitle = fields[5];
-                String title = fields[6];
-                String averageRating = fields[7];
-                int publicationYear = Integer.parseInt(pubYear);
-                double avgRating = Double.parseDouble(averageRating);
-
-                Book book = new Book(isbn, authors, publicationYear, originalTitle, title,
-                        avgRating);
-                isbnTreeMap.put(isbn, book);
-                authorsTreeMap.put(authors, book);
-                pubYearTreeMap.put(publicationYear, book);
-                originalTitleTreeMap.put(originalTitle, book);
-                titleTreeMap.put(title, book);
-                averageRatingTreeMap.put(avgRating, book);
-
-                bookMaps.put("ISBN", isbnTreeMap);
-                bookMaps.put("Authors", authorsTreeMap);
-                bookMaps.put("Year", pubYearTreeMap);
-                bookMaps.put("Orig. Title", originalTitleTreeMap);
-                bookMaps.put("Title", titleTreeMap);
-                bookMaps.put("Avg. Rating", averageRatingTreeMap);
+    /**
+     * Shows the cover of the book at the specified position and prefetches the covers around it.
+     * Positions are resolved by select on the underlying index, so no key snapshot is kept.
+     */
+    private void showCover(int index) {
+        currentIndex = index;
+        coverPanel.loadCoverImage(tableModel.bookAt(index).isbn());
+
+        List<String> nearby = new ArrayList<>();
+        for (int distance = 1; distance <= PREFETCH_DISTANCE; distance++) {
+            if (index + distance < tableModel.getRowCount()) {
+                nearby.add(tableModel.bookAt(index + distance).isbn());
             }
-        } catch (FileNotFoundException e) {
+            if (index - distance >= 0) {
+                nearby.add(tableModel.bookAt(index - distance).isbn());
+            }
+        }
+        coverPanel.prefetch(nearby);
+    }
+
+    /**
+     * A browsable ordering of the catalog, addressed by position.
+     */
+    interface Ordering {
+        int size();
+
+        Book bookAt(int position);
+    }
+
+    private Ordering ordering(TreeMap<?, Integer> map) {
+        return new Ordering() {
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public Book bookAt(int position) {
+                return catalog.book(map.selectValue(position));
+            }
+        };
+    }
+
+    private Ordering ordering(IdBitmap ids) {
+        return new Ordering() {
+            @Override
+            public int size() {
+                return ids.size();
+            }
+
+            @Override
+            public Book bookAt(int position) {
+                return catalog.book(ids.select(position));
+            }
+        };
+    }
+
+    private Ordering ordering(PostingIndex<?> index) {
+        return new Ordering() {
+            @Override
+            public int size() {
+                return index.size();
+            }
+
+            @Override
+            public Book bookAt(int position) {
+                return catalog.book(index.select(position));
+            }
+        };
+    }
+
+    /**
+     * Builds a balanced index from keys to book ids in a single bulk load instead of one put per book.
+     * When several books share a key, the one read last is kept, matching what repeated puts would do.
+     *
+     * @param order the book ids sorted by (key, id), as saved in a snapshot; or {@code null} to sort here.
+     */
+    private static <K extends Comparable<K>> TreeMap<K, Integer> buildIndex(Book[] books, Function<Book, K> keyOf,
+                                                                            int[] order) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        K[] keys = (K[]) new Comparable[books.length];
+        Integer[] values = new Integer[books.length];
+        for (int i = 0; i < books.length; i++) {
+            values[i] = order != null ? order[i] : i;
+            keys[i] = keyOf.apply(books[values[i]]);
+        }
+        return TreeMap.fromArrays(keys, values);
+    }
+
+    /**
+     * Runs one phase of loading the catalog, recording its duration in the {@code Load} metrics if enabled.
+     */
+    private static <T> T timed(String phase, Supplier<T> task) {
+        if (!Metrics.ENABLED) {
+            return task.get();
+        }
+        long start = System.nanoTime();
+        T result = task.get();
+        Metrics.group("Load").histogram(phase + ".nanos").record(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Applies a reloaded data file. Called on the watcher thread, where the difference to the current catalog is
+     * worked out; the indexes are then patched and the new catalog swapped in on the event dispatch thread in one
+     * step, so the table, searches and filters see either the old catalog or the new one, never a mix.
+     */
+    private void reload(Path bookData, BookFileLoader.Result result) {
+        reportMalformedRows(bookData.getFileName().toString(), result);
+        CatalogDelta delta = timed("reload.diff",
+                () -> CatalogDelta.compute(catalog, result.books().toArray(new Book[0])));
+        if (delta.isEmpty()) {
+            return;
+        }
+        try {
+            // Waiting keeps reloads in order: the next difference is worked out against this one's catalog.
+            SwingUtilities.invokeAndWait(() -> timed("reload.apply", () -> {
+                apply(delta);
+                return null;
+            }));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Patches every index that has been built and switches to the new catalog. Indexes not built yet are built
+     * from the new catalog when first needed.
+     */
+    private void apply(CatalogDelta delta) {
+        delta.applyTo(isbnTreeMap);
+        for (Consumer<CatalogDelta> patch : indexPatches) {
+            patch.accept(delta);
+        }
+        // The search indexes are packed arrays that cannot be patched; they are built again on the next search.
+        searchIndex.update(null);
+        fullTextIndex.update(null);
+        catalog = delta.after();
+        bookFilter = null;
+        generation++;
+        showSelectedOrdering();
+    }
+
+    /**
+     * Creates a secondary index over one column of the catalog, keyed by book id, to be built on first use.
+     * Books sharing a key are all kept, in load order.
+     *
+     * @param name the name of the index in metrics.
+     * @param column reads the key of a book, such as {@code CatalogStore::authors}.
+     * @param order the book ids sorted by (key, id), as saved in a snapshot; or {@code null} to sort when built.
+     * @param map creates an empty map for the index, such as a primitive-keyed map for numeric columns; or
+     *            {@code null} for a {@link TreeMap}.
+     */
+    private <K extends Comparable<K>> LazyIndex<PostingIndex<K>> lazyIndex(
+            String name, BiFunction<CatalogStore, Integer, K> column, int[] order,
+            Supplier<WeightedTreeMap<K, PostingIndex.Postings>> map) {
+        // The snapshot order only fits the catalog it was saved with, not one reloaded since.
+        CatalogStore loaded = catalog;
+        LazyIndex<PostingIndex<K>> lazy = new LazyIndex<>(() -> timed("index." + name, () -> {
+            CatalogStore source = catalog;
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            K[] keys = (K[]) new Comparable[source.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = column.apply(source, i);
+            }
+            PostingIndex<K> index = PostingIndex.build(keys, source == loaded ? order : null,
+                    map != null ? map.get() : null);
+            if (Metrics.ENABLED) {
+                index.instrument(name);
+            }
+            return index;
+        }), ForkJoinPool.commonPool());
+        indexPatches.add(delta -> lazy.update(index -> delta.applyTo(index, column)));
+        return lazy;
+    }
+
+    /**
+     * Creates a secondary index over a text column, to be built on first use. The index is keyed by the text itself,
+     * or by its {@link SortKey} if {@link #COLLATION_LOCALE} is set. Many books share an author or a title, so
+     * sort keys are cached per distinct text: building or patching the index collates each text only once.
+     *
+     * @param order the book ids in (text, id) order, as saved in a snapshot; or {@code null} to sort when built.
+     *              Snapshots are in character code order, so this is ignored when ordering by locale.
+     */
+    private LazyIndex<? extends PostingIndex<?>> textIndex(
+            String name, BiFunction<CatalogStore, Integer, String> column, int[] order) {
+        if (COLLATION_LOCALE == null) {
+            return lazyIndex(name, column, order, null);
+        }
+        Function<String, SortKey> sortKey = SortKey.forLocale(COLLATION_LOCALE);
+        Map<String, SortKey> sortKeys = new ConcurrentHashMap<>();
+        return lazyIndex(name, (store, id) -> sortKeys.computeIfAbsent(column.apply(store, id), sortKey), null, null);
+    }
+
+    private static Locale collationLocale(String tag) {
+        if (tag == null || tag.isBlank()) {
+            return null;
+        }
+        return tag.equals("default") ? Locale.getDefault() : Locale.forLanguageTag(tag);
+    }
+
+    /**
+     * Saves the loaded catalog and its ISBN order, so the next launch can skip parsing and sorting. The other
+     * indexes are not built yet at this point; they are sorted when first needed.
+     * Failing to save only costs the next launch a full load, so errors are reported and otherwise ignored.
+     * The snapshot records the length and checksum of the bytes the catalog was parsed from, not of the file as it is
+     * when the snapshot is written.
+     */
+    private void saveSnapshot(Path snapshotFile, Path bookData, BookFileLoader.Result loaded, Book[] books) {
+        Integer[] isbnOrder = new Integer[books.length];
+        for (int i = 0; i < isbnOrder.length; i++) {
+            isbnOrder[i] = i;
+        }
+        Arrays.sort(isbnOrder, (a, b) -> books[a].isbn().compareTo(books[b].isbn()));
+
+        Map<String, int[]> orders = new LinkedHashMap<>();
+        orders.put("ISBN", Arrays.stream(isbnOrder).mapToInt(Integer::intValue).toArray());
+        try {
+            CatalogSnapshot.write(snapshotFile, bookData, loaded.length(), loaded.checksum(), books, orders);
+        } catch (IOException e) {
+            System.err.println("Could not save catalog snapshot " + snapshotFile + ": " + e);
+        }
+    }
+
+    /**
+     * Reads every book in the data file. Rows that cannot be parsed are reported on standard error and skipped.
+     *
+     * @return the books, along with the length and checksum of the bytes they were parsed from.
+     */
+    private BookFileLoader.Result readBooks(File file) {
+        BookFileLoader.Result result;
+        try {
+            result = BookFileLoader.load(file.toPath());
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        reportMalformedRows(file.getName(), result);
+        return result;
+    }
+
+    private static void reportMalformedRows(String fileName, BookFileLoader.Result result) {
+        for (BookFileLoader.MalformedRow row : result.malformedRows()) {
+            System.err.println(fileName + ":" + row.lineNumber() + ": skipped row, " + row.reason());
+        }
     }
 
+    /**
+     * Shows the cover of the current book. Covers are fetched in the background by a {@link CoverLoader}, so the
+     * event dispatch thread never waits on the network.
+     */
     public static class CoverPanel extends JPanel {
-        private Image coverImage;
+        private final CoverLoader loader;
+        private BufferedImage coverImage;
+        // The cover at exactly the panel's size, so painting never scales.
+        private BufferedImage shownImage;
+        private String requestedIsbn;
+        private boolean loading;
+        private long paintCount;
+        private long paintNanos;
+        // Null unless metrics are enabled.
+        private final Metrics.Histogram paintHistogram;
+        private final Metrics.Histogram shownHistogram;
+
+        public CoverPanel(CoverLoader loader) {
+            this.loader = loader;
+            if (Metrics.ENABLED) {
+                Metrics.Group group = Metrics.group("Covers");
+                paintHistogram = group.histogram("paint.nanos");
+                // Time from asking for a cover to showing it, including any wait for the network.
+                shownHistogram = group.histogram("shown.nanos");
+            } else {
+                paintHistogram = null;
+                shownHistogram = null;
+            }
+        }
 
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
-            if (coverImage != null) {
-                g.drawImage(coverImage, 0, 0, getWidth(), getHeight(), this);
-            } else {
+            if (coverImage != null && getWidth() > 0 && getHeight() > 0) {
+                // Covers arrive pre-scaled to the panel size. If the layout gave the panel another size, the cover
+                // is scaled to it once here and the copy drawn until the size changes again.
+                if (shownImage == null || shownImage.getWidth() != getWidth()
+                        || shownImage.getHeight() != getHeight()) {
+                    shownImage = coverImage.getWidth() == getWidth() && coverImage.getHeight() == getHeight()
+                            ? coverImage : CoverLoader.scale(coverImage, getWidth(), getHeight());
+                }
+                long start = System.nanoTime();
+                g.drawImage(shownImage, 0, 0, this);
+                long elapsed = System.nanoTime() - start;
+                paintNanos += elapsed;
+                paintCount++;
+                if (Metrics.ENABLED) {
+                    paintHistogram.record(elapsed);
+                }
+            } else if (!loading) {
 
                 Graphics2D g2d = (Graphics2D) g;
                 g2d.setColor(Color.RED);
@@ -294,28 +790,55 @@ public class BookBrowser extends JFrame {
             }
         }
 
+        /**
+         * Requests the cover of the specified book and returns immediately. The panel is repainted when the cover
+         * arrives; a cover that arrives after another book has been requested is dropped.
+         *
+         * @param isbn the ISBN of the book.
+         */
         public void loadCoverImage(String isbn) {
-            String urlString = "https://covers.openlibrary.org/b/isbn/" + isbn + "-L.jpg";
-            try {
-                URI uri = new URI(urlString);
-                URL url = uri.toURL();
-                coverImage = Toolkit.getDefaultToolkit().getImage(url);
-                waitForImageToLoad(coverImage);
-                repaint();
-            } catch (MalformedURLException | URISyntaxException e) {
-                coverImage = null;
-                repaint();
-            }
+            requestedIsbn = isbn;
+            coverImage = null;
+            shownImage = null;
+            loading = true;
+            repaint();
+            long start = Metrics.ENABLED ? System.nanoTime() : 0;
+            loader.load(isbn).whenComplete((image, error) -> SwingUtilities.invokeLater(() -> {
+                if (isbn.equals(requestedIsbn)) {
+                    if (Metrics.ENABLED) {
+                        shownHistogram.record(System.nanoTime() - start);
+                    }
+                    coverImage = image;
+                    loading = false;
+                    repaint();
+                }
+            }));
         }
 
-        private void waitForImageToLoad(Image img) {
-            MediaTracker tracker = new MediaTracker(this);
-            tracker.addImage(img, 0);
-            try {
-                tracker.waitForAll();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+        /**
+         * Starts fetching covers the user is likely to view next.
+         *
+         * @param isbns the ISBNs to fetch, most wanted first.
+         */
+        public void prefetch(List<String> isbns) {
+            loader.prefetch(isbns);
+        }
+
+        /**
+         * Retrieves the average time spent drawing a cover, over every paint of this panel that drew one.
+         *
+         * @return the average drawing time in microseconds, or 0 if no cover has been drawn.
+         */
+        public double averagePaintMicros() {
+            return paintCount == 0 ? 0 : paintNanos / 1000.0 / paintCount;
+        }
+
+        Image getCoverImage() {
+            return coverImage;
+        }
+
+        Image getShownImage() {
+            return shownImage;
         }
     }
 }
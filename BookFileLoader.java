@@ -0,0 +1,329 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Loads books from a {@code ~}-separated data file such as {@code BooksDataFile.txt}.
+ * The file is memory-mapped and scanned byte by byte for separators and line breaks, so no line strings or
+ * regular expressions are involved. Only the columns a {@link Book} needs are decoded; the image URL columns are
+ * skipped. Rows that cannot be parsed are reported in the result instead of aborting the load.
+ * Large files are split into line-aligned chunks that are parsed in parallel on the common fork-join pool; the
+ * chunk results are concatenated in file order, so the result is identical to a single-threaded parse.
+ */
+public final class BookFileLoader {
+
+    /**
+     * A row that was skipped because it could not be parsed.
+     *
+     * @param lineNumber the one-based line number of the row in the file, counting the header.
+     * @param reason a short description of the problem.
+     */
+    public record MalformedRow(int lineNumber, String reason) {
+    }
+
+    /**
+     * The outcome of a load.
+     *
+     * @param books the parsed books, in file order.
+     * @param malformedRows the rows that were skipped, in file order.
+     * @param length the length of the file as it was mapped, in bytes.
+     * @param checksum the CRC-32 of the mapped bytes the books were parsed from; the same value as
+     *                 {@link CatalogSnapshot#checksum(Path)} gives for an unchanged file.
+     */
+    public record Result(List<Book> books, List<MalformedRow> malformedRows, long length, long checksum) {
+    }
+
+    // Column layout: book_id~goodreads_book_id~isbn~authors~pub_year~original_title~title~average_rating~image_url~...
+    private static final int ISBN = 2;
+    private static final int AUTHORS = 3;
+    private static final int PUB_YEAR = 4;
+    private static final int ORIGINAL_TITLE = 5;
+    private static final int TITLE = 6;
+    private static final int AVERAGE_RATING = 7;
+    private static final int REQUIRED_FIELDS = AVERAGE_RATING + 1;
+    private static final int MAX_FIELDS = 10;
+
+    private static final byte SEPARATOR = '~';
+
+    // Chunks smaller than this are not worth a task of their own.
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private BookFileLoader() {
+    }
+
+    /**
+     * Loads every book in the specified file. The first line is treated as a header and skipped; a leading UTF-8
+     * byte order mark is ignored.
+     *
+     * @param file the data file to read.
+     * @return the parsed books and any malformed rows.
+     * @throws IOException if the file cannot be read or is too large to map.
+     */
+    public static Result load(Path file) throws IOException {
+        long length = Files.size(file);
+        int chunks = (int) Math.min(Runtime.getRuntime().availableProcessors() * 4L,
+                Math.max(1, length / MIN_CHUNK_BYTES));
+        return load(file, chunks);
+    }
+
+    /**
+     * Loads every book in the specified file, parsing it as the specified number of line-aligned chunks.
+     *
+     * @param file the data file to read.
+     * @param chunkCount the number of chunks to split the file into; at least 1.
+     * @return the parsed books and any malformed rows.
+     * @throws IOException if the file cannot be read or is too large to map.
+     */
+    static Result load(Path file, int chunkCount) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to map: " + file);
+            }
+            long mapStart = Metrics.ENABLED ? System.nanoTime() : 0;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            long parseStart = Metrics.ENABLED ? System.nanoTime() : 0;
+            int start = skipLine(buffer, bodyStart(buffer));
+            int[] bounds = chunkBounds(buffer, start, (int) length, Math.max(1, chunkCount));
+
+            // Each chunk counts its lines from zero; line numbers are fixed up once the chunk offsets are known.
+            List<RowParser> parsers = IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(i -> {
+                        RowParser parser = new RowParser(buffer.duplicate());
+                        parser.parse(bounds[i], bounds[i + 1], 0);
+                        return parser;
+                    })
+                    .toList();
+
+            List<Book> books = new ArrayList<>();
+            List<MalformedRow> malformedRows = new ArrayList<>();
+            int firstLine = 2;
+            for (RowParser parser : parsers) {
+                books.addAll(parser.books);
+                for (MalformedRow row : parser.malformedRows) {
+                    malformedRows.add(new MalformedRow(firstLine + row.lineNumber(), row.reason()));
+                }
+                firstLine += parser.lineCount;
+            }
+            if (Metrics.ENABLED) {
+                // Pages of a mapped file are read as the parser first touches them, so parsing includes the I/O.
+                Metrics.Group group = Metrics.group("Load");
+                group.histogram("map.nanos").record(parseStart - mapStart);
+                group.histogram("parse.nanos").record(System.nanoTime() - parseStart);
+            }
+            // Taken from the mapping itself, so it describes the parsed bytes even if the file changes later.
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(0));
+            return new Result(books, malformedRows, length, crc.getValue());
+        }
+    }
+
+    /**
+     * Splits {@code [start, end)} into roughly equal ranges whose boundaries all fall at the start of a line.
+     *
+     * @return the chunk boundaries, beginning with {@code start} and ending with {@code end}.
+     */
+    private static int[] chunkBounds(ByteBuffer buffer, int start, int end, int chunkCount) {
+        int[] bounds = new int[chunkCount + 1];
+        bounds[0] = start;
+        for (int i = 1; i < chunkCount; i++) {
+            int target = start + (int) ((long) (end - start) * i / chunkCount);
+            bounds[i] = target <= bounds[i - 1] ? bounds[i - 1] : skipLine(buffer, target - 1);
+        }
+        bounds[chunkCount] = end;
+        return bounds;
+    }
+
+    /**
+     * Retrieves the offset just past a UTF-8 byte order mark, if the buffer starts with one.
+     */
+    private static int bodyStart(ByteBuffer buffer) {
+        if (buffer.limit() >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB
+                && (buffer.get(2) & 0xFF) == 0xBF) {
+            return 3;
+        }
+        return 0;
+    }
+
+    /**
+     * Retrieves the offset of the first byte after the line break that ends the line containing {@code position}.
+     */
+    private static int skipLine(ByteBuffer buffer, int position) {
+        int limit = buffer.limit();
+        while (position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+        return Math.min(position + 1, limit);
+    }
+
+    /**
+     * Parses the rows in a byte range of the mapped file into books.
+     */
+    private static final class RowParser {
+        private final ByteBuffer buffer;
+        private final int[] starts = new int[MAX_FIELDS];
+        private final int[] ends = new int[MAX_FIELDS];
+        private byte[] scratch = new byte[256];
+
+        final List<Book> books = new ArrayList<>();
+        final List<MalformedRow> malformedRows = new ArrayList<>();
+        int lineCount;
+
+        RowParser(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Parses every line that starts in {@code [from, to)}.
+         *
+         * @param from the offset of the first byte of a line.
+         * @param to the offset just past the last line to parse.
+         * @param lineNumber the line number of the line at {@code from}.
+         */
+        void parse(int from, int to, int lineNumber) {
+            int lineStart = from;
+            while (lineStart < to) {
+                int fields = 0;
+                boolean tooMany = false;
+                starts[0] = lineStart;
+                int position = lineStart;
+                byte b;
+                while (position < to && (b = buffer.get(position)) != '\n') {
+                    if (b == SEPARATOR) {
+                        if (fields + 1 < MAX_FIELDS) {
+                            ends[fields] = position;
+                            starts[++fields] = position + 1;
+                        } else {
+                            tooMany = true;
+                        }
+                    }
+                    position++;
+                }
+                int lineEnd = position;
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                ends[fields] = lineEnd;
+                fields++;
+
+                if (lineEnd > lineStart) {
+                    parseRow(fields, tooMany, lineNumber);
+                }
+                lineStart = position + 1;
+                lineNumber++;
+                lineCount++;
+            }
+        }
+
+        private void parseRow(int fields, boolean tooMany, int lineNumber) {
+            if (tooMany) {
+                malformedRows.add(new MalformedRow(lineNumber, "more than " + MAX_FIELDS + " fields"));
+                return;
+            }
+            if (fields < REQUIRED_FIELDS) {
+                malformedRows.add(new MalformedRow(lineNumber, "expected at least " + REQUIRED_FIELDS
+                        + " fields but found " + fields));
+                return;
+            }
+            int publicationYear;
+            double averageRating;
+            try {
+                publicationYear = parseInt(starts[PUB_YEAR], ends[PUB_YEAR]);
+            } catch (NumberFormatException e) {
+                malformedRows.add(new MalformedRow(lineNumber, "invalid pub_year \""
+                        + decode(starts[PUB_YEAR], ends[PUB_YEAR]) + "\""));
+                return;
+            }
+            try {
+                averageRating = parseDouble(starts[AVERAGE_RATING], ends[AVERAGE_RATING]);
+            } catch (NumberFormatException e) {
+                malformedRows.add(new MalformedRow(lineNumber, "invalid average_rating \""
+                        + decode(starts[AVERAGE_RATING], ends[AVERAGE_RATING]) + "\""));
+                return;
+            }
+            books.add(new Book(decode(starts[ISBN], ends[ISBN]), decode(starts[AUTHORS], ends[AUTHORS]),
+                    publicationYear, decode(starts[ORIGINAL_TITLE], ends[ORIGINAL_TITLE]),
+                    decode(starts[TITLE], ends[TITLE]), averageRating));
+        }
+
+        private String decode(int start, int end) {
+            int length = end - start;
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private int parseInt(int start, int end) {
+            int position = start;
+            boolean negative = false;
+            if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negative = buffer.get(position) == '-';
+                position++;
+            }
+            // Nine digits always fit in an int; anything longer goes through the JDK parser for overflow checks.
+            if (position == end || end - position > 9) {
+                return Integer.parseInt(decode(start, end));
+            }
+            int value = 0;
+            for (; position < end; position++) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException();
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Parses a plain decimal such as {@code 4.34} directly from the bytes. The digits are accumulated into an
+         * exact integer and divided once by an exact power of ten, which rounds the same way as
+         * {@link Double#parseDouble(String)}. Anything else (exponents, long mantissas) goes through the JDK parser.
+         */
+        private double parseDouble(int start, int end) {
+            int position = start;
+            boolean negative = false;
+            if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negative = buffer.get(position) == '-';
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            for (; position < end; position++) {
+                byte b = buffer.get(position);
+                if (b == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else if (b >= '0' && b <= '9' && digits < 15) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                } else {
+                    return Double.parseDouble(decode(start, end));
+                }
+            }
+            if (digits == 0) {
+                throw new NumberFormatException();
+            }
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class BookFileLoaderTest {
+    private static final String HEADER = "book_id~goodreads_book_id~isbn~authors~pub_year~original_title~title"
+            + "~average_rating~image_url~small_image_url";
+
+    @TempDir
+    Path tempDir;
+
+    private Path write(String content) throws IOException {
+        Path file = tempDir.resolve("books.txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testParsesRowsAndSkipsHeaderAndBom() throws IOException {
+        Path file = write("\uFEFF" + HEADER + "\n"
+                + "2~3~0439554934~J.K. Rowling, Mary GrandPr\u00e9~1997~Harry Potter and the Philosopher's Stone"
+                + "~Harry Potter and the Sorcerer's Stone (Harry Potter, #1)~4.44~https://a/m.jpg~https://a/s.jpg\n");
+        BookFileLoader.Result result = BookFileLoader.load(file);
+        assertEquals(List.of(), result.malformedRows());
+        assertEquals(List.of(new Book("0439554934", "J.K. Rowling, Mary GrandPr\u00e9", 1997,
+                "Harry Potter and the Philosopher's Stone",
+                "Harry Potter and the Sorcerer's Stone (Harry Potter, #1)", 4.44)), result.books());
+    }
+
+    @Test
+    public void testCrLfAndMissingTrailingNewline() throws IOException {
+        Path file = write(HEADER + "\r\n"
+                + "1~1~a~A~2008~~T1~4.34~u~s\r\n"
+                + "\r\n"
+                + "2~2~b~B~-500~O~T2~3~u~s");
+        BookFileLoader.Result result = BookFileLoader.load(file);
+        assertEquals(List.of(new Book("a", "A", 2008, "", "T1", 4.34),
+                new Book("b", "B", -500, "O", "T2", 3.0)), result.books());
+        assertTrue(result.malformedRows().isEmpty());
+    }
+
+    @Test
+    public void testReportsMalformedRows() throws IOException {
+        Path file = write(HEADER + "\n"
+                + "1~1~a~A~2008~O~T~4.34~u~s\n"
+                + "2~2~b~B~20x8~O~T~4.1~u~s\n"
+                + "3~3~c~C~2001~O~T\n"
+                + "4~4~d~D~2001~O~T~abc~u~s\n"
+                + "5~5~e~E~2001~O~T~4.0~u~s~extra\n");
+        BookFileLoader.Result result = BookFileLoader.load(file);
+        assertEquals(1, result.books().size());
+        List<BookFileLoader.MalformedRow> rows = result.malformedRows();
+        assertEquals(4, rows.size());
+        assertEquals(3, rows.get(0).lineNumber());
+        assertTrue(rows.get(0).reason().contains("pub_year"));
+        assertEquals(4, rows.get(1).lineNumber());
+        assertEquals(5, rows.get(2).lineNumber());
+        assertTrue(rows.get(2).reason().contains("average_rating"));
+        assertEquals(6, rows.get(3).lineNumber());
+    }
+
+    @Test
+    public void testMatchesSplitParsingOnSampleFile() throws IOException {
+        Path file = Path.of("BooksDataFile.txt");
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        BookFileLoader.Result result = BookFileLoader.load(file);
+        assertTrue(result.malformedRows().isEmpty());
+        assertEquals(lines.size() - 1, result.books().size());
+        for (int i = 1; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split("~");
+            Book expected = new Book(fields[2], fields[3], Integer.parseInt(fields[4]), fields[5], fields[6],
+                    Double.parseDouble(fields[7]));
+            assertEquals(expected, result.books().get(i - 1));
+        }
+    }
+
+    @Test
+    public void testChunkedLoadMatchesSingleChunk() throws IOException {
+        Path file = Path.of("BooksDataFile.txt");
+        BookFileLoader.Result sequential = BookFileLoader.load(file, 1);
+        for (int chunks : new int[]{2, 7, 64}) {
+            BookFileLoader.Result chunked = BookFileLoader.load(file, chunks);
+            assertEquals(sequential.books(), chunked.books());
+            assertEquals(sequential.malformedRows(), chunked.malformedRows());
+            assertEquals(sequential.checksum(), chunked.checksum());
+        }
+        assertEquals(Files.size(file), sequential.length());
+        assertEquals(CatalogSnapshot.checksum(file), sequential.checksum());
+    }
+
+    @Test
+    public void testChunkedLoadKeepsMalformedLineNumbers() throws IOException {
+        StringBuilder content = new StringBuilder(HEADER).append('\n');
+        for (int i = 0; i < 200; i++) {
+            content.append(i).append('~').append(i).append("~isbn").append(i).append("~A~")
+                    .append(i % 17 == 0 ? "bad" : "2000").append("~O~T~4.0~u~s\n");
+        }
+        Path file = write(content.toString());
+        BookFileLoader.Result sequential = BookFileLoader.load(file, 1);
+        BookFileLoader.Result chunked = BookFileLoader.load(file, 9);
+        assertEquals(12, sequential.malformedRows().size());
+        assertEquals(2, sequential.malformedRows().get(0).lineNumber());
+        assertEquals(sequential.books(), chunked.books());
+        assertEquals(sequential.malformedRows(), chunked.malformedRows());
+    }
+}
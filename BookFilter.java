@@ -0,0 +1,146 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * Finds the books matching a combination of year, rating and author conditions.
+ * <p>
+ * Each condition produces its candidates from the matching secondary index as an {@link IdBitmap} of book ids. The
+ * conditions are applied most selective first: the range conditions are counted exactly from their index without
+ * visiting any book, and the author condition is counted once its candidates are known. Each later condition is
+ * intersected with the result so far, or, once that result is much smaller than the condition's candidates, checked
+ * directly against the remaining books instead of being materialized. An empty intermediate result ends the query.
+ */
+public class BookFilter {
+
+    // Checking a few books directly beats building a bitmap of many; this is how much smaller "a few" has to be.
+    private static final int PROBE_RATIO = 16;
+
+    private final CatalogStore catalog;
+    private final PostingIndex<Integer> years;
+    private final PostingIndex<Double> ratings;
+    private final PostingIndex<?> authors;
+
+    /**
+     * The conditions of a query. Every condition that is set must hold; an unset condition matches every book.
+     *
+     * @param minYear the earliest publication year, or {@code null} for no limit.
+     * @param maxYear the latest publication year, or {@code null} for no limit.
+     * @param minRating the lowest average rating, or {@code null} for no limit.
+     * @param maxRating the highest average rating, or {@code null} for no limit.
+     * @param author text the authors must contain, ignoring case; or {@code null} or blank for any authors.
+     */
+    public record Criteria(Integer minYear, Integer maxYear, Double minRating, Double maxRating, String author) {
+    }
+
+    /**
+     * One condition: how many books it admits, which ones, and a direct check of a single book.
+     */
+    private interface Condition {
+        int estimate();
+
+        IdBitmap candidates();
+
+        boolean test(int id);
+    }
+
+    /**
+     * Constructs a filter over the catalog and its secondary indexes.
+     *
+     * @param catalog the books, indexed by id.
+     * @param years the books' publication years.
+     * @param ratings the books' average ratings.
+     * @param authors the books' authors fields, keyed by the field or by a {@link SortKey} of it.
+     */
+    public BookFilter(CatalogStore catalog, PostingIndex<Integer> years, PostingIndex<Double> ratings,
+                      PostingIndex<?> authors) {
+        this.catalog = catalog;
+        this.years = years;
+        this.ratings = ratings;
+        this.authors = authors;
+    }
+
+    /**
+     * Finds the books matching every condition that is set.
+     *
+     * @param criteria the conditions.
+     * @return the ids of the matching books, in ascending order.
+     */
+    public IdBitmap apply(Criteria criteria) {
+        List<Condition> conditions = new ArrayList<>();
+        if (criteria.minYear() != null || criteria.maxYear() != null) {
+            conditions.add(range(years, criteria.minYear(), criteria.maxYear(), catalog::publicationYear));
+        }
+        if (criteria.minRating() != null || criteria.maxRating() != null) {
+            conditions.add(range(ratings, criteria.minRating(), criteria.maxRating(), catalog::averageRating));
+        }
+        if (criteria.author() != null && !criteria.author().isBlank()) {
+            conditions.add(author(criteria.author().strip().toLowerCase(Locale.ROOT)));
+        }
+        if (conditions.isEmpty()) {
+            int[] all = new int[catalog.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return IdBitmap.of(all);
+        }
+
+        conditions.sort(Comparator.comparingInt(Condition::estimate));
+        IdBitmap result = conditions.get(0).candidates();
+        for (int i = 1; i < conditions.size() && result.size() > 0; i++) {
+            Condition condition = conditions.get(i);
+            if ((long) result.size() * PROBE_RATIO < condition.estimate()) {
+                result = result.filter(condition::test);
+            } else {
+                result = result.and(condition.candidates());
+            }
+        }
+        return result;
+    }
+
+    private <K extends Comparable<K>> Condition range(PostingIndex<K> index, K min, K max,
+                                                      IntFunction<K> keyOf) {
+        return new Condition() {
+            @Override
+            public int estimate() {
+                return index.rangeSize(min, true, max, true);
+            }
+
+            @Override
+            public IdBitmap candidates() {
+                return IdBitmap.of(index.rangeIds(min, true, max, true));
+            }
+
+            @Override
+            public boolean test(int id) {
+                K key = keyOf.apply(id);
+                return (min == null || key.compareTo(min) >= 0) && (max == null || key.compareTo(max) <= 0);
+            }
+        };
+    }
+
+    private Condition author(String text) {
+        // Matching needs a scan of the distinct authors fields either way, so the candidates double as the count.
+        // A sort key prints as its text, so both kinds of key are matched by their string form.
+        IdBitmap matches = IdBitmap.of(authors.matchingIds(key -> key.toString().toLowerCase(Locale.ROOT)
+                .contains(text)));
+        return new Condition() {
+            @Override
+            public int estimate() {
+                return matches.size();
+            }
+
+            @Override
+            public IdBitmap candidates() {
+                return matches;
+            }
+
+            @Override
+            public boolean test(int id) {
+                return catalog.authors(id).toLowerCase(Locale.ROOT).contains(text);
+            }
+        };
+    }
+}
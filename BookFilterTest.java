@@ -0,0 +1,48 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class BookFilterTest {
+
+    @Test
+    public void testMatchesScan() {
+        Random random = new Random(18);
+        String[] authors = {"J.K. Rowling", "Harper Lee", "J.K. Rowling, Mary GrandPre", "Thomas Harris", "Lee Child"};
+        Book[] books = new Book[20_000];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new Book(String.valueOf(i), authors[random.nextInt(authors.length)], 1900 + random.nextInt(120),
+                    "t", "t", Math.round(random.nextDouble() * 500) / 100.0);
+        }
+        BookFilter filter = new BookFilter(CatalogStore.of(books),
+                PostingIndex.build(IntStream.range(0, books.length).mapToObj(i -> books[i].publicationYear())
+                        .toArray(Integer[]::new), new IntTreeMap<>()),
+                PostingIndex.build(IntStream.range(0, books.length).mapToObj(i -> books[i].averageRating())
+                        .toArray(Double[]::new), new DoubleTreeMap<>()),
+                PostingIndex.build(IntStream.range(0, books.length).mapToObj(i -> books[i].authors())
+                        .toArray(String[]::new)));
+
+        BookFilter.Criteria[] queries = {
+                new BookFilter.Criteria(1990, 2005, 4.2, null, "rowling"),
+                new BookFilter.Criteria(2000, 2000, null, null, null),
+                new BookFilter.Criteria(null, null, 4.99, null, "LEE"),
+                new BookFilter.Criteria(1950, 1949, null, null, null),
+                new BookFilter.Criteria(null, null, null, null, "nobody"),
+                new BookFilter.Criteria(null, 1910, 1.0, 4.0, " harris "),
+                new BookFilter.Criteria(null, null, null, null, ""),
+        };
+        for (BookFilter.Criteria criteria : queries) {
+            int[] expected = IntStream.range(0, books.length).filter(i -> matches(books[i], criteria)).toArray();
+            assertArrayEquals(expected, filter.apply(criteria).toArray(), criteria.toString());
+        }
+    }
+
+    private static boolean matches(Book book, BookFilter.Criteria c) {
+        return (c.minYear() == null || book.publicationYear() >= c.minYear())
+                && (c.maxYear() == null || book.publicationYear() <= c.maxYear())
+                && (c.minRating() == null || book.averageRating() >= c.minRating())
+                && (c.maxRating() == null || book.averageRating() <= c.maxRating())
+                && (c.author() == null || book.authors().toLowerCase().contains(c.author().strip().toLowerCase()));
+    }
+}
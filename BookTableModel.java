@@ -0,0 +1,96 @@
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * A table model that shows an ordering of the catalog one book per row.
+ * Rows are read on demand from the ordering by position, so the model holds no copy of the catalog and a table only
+ * ever asks for the rows it is about to paint. The book of the last row read is remembered, since a table reads
+ * every column of a row in turn.
+ */
+public class BookTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"ISBN", "Authors", "Year", "Orig. Title", "Title", "Avg. Rating"};
+
+    private BookBrowser.Ordering ordering;
+    private int lastRow = -1;
+    private Book lastBook;
+
+    /**
+     * Constructs a model showing the specified ordering.
+     *
+     * @param ordering the ordering to show, or {@code null} for an empty table.
+     */
+    public BookTableModel(BookBrowser.Ordering ordering) {
+        this.ordering = ordering;
+    }
+
+    /**
+     * Switches the table to another ordering of the catalog.
+     *
+     * @param ordering the ordering to show, or {@code null} for an empty table.
+     */
+    public void setOrdering(BookBrowser.Ordering ordering) {
+        this.ordering = ordering;
+        lastRow = -1;
+        lastBook = null;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Retrieves the book shown in the specified row.
+     *
+     * @param row the row index.
+     * @return the book at that position of the ordering.
+     * @throws IndexOutOfBoundsException if the row is out of bounds.
+     */
+    public Book bookAt(int row) {
+        if (row < 0 || row >= getRowCount()) {
+            throw new IndexOutOfBoundsException("Index " + row + " out of bounds for size " + getRowCount());
+        }
+        if (row != lastRow) {
+            lastBook = ordering.bookAt(row);
+            lastRow = row;
+        }
+        return lastBook;
+    }
+
+    @Override
+    public int getRowCount() {
+        return ordering != null ? ordering.size() : 0;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return switch (column) {
+            case 2 -> Integer.class;
+            case 5 -> Double.class;
+            default -> String.class;
+        };
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Book book = bookAt(row);
+        return switch (column) {
+            case 0 -> book.isbn();
+            case 1 -> book.authors();
+            case 2 -> book.publicationYear();
+            case 3 -> book.originalTitle();
+            case 4 -> book.title();
+            case 5 -> book.averageRating();
+            default -> throw new IndexOutOfBoundsException("Index " + column + " out of bounds for size "
+                    + COLUMNS.length);
+        };
+    }
+}
@@ -0,0 +1,115 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BookTableModelTest {
+    private final AtomicInteger reads = new AtomicInteger();
+
+    /**
+     * An ordering of a million synthetic books, made up on demand and counting every read.
+     */
+    private final BookBrowser.Ordering million = new BookBrowser.Ordering() {
+        @Override
+        public int size() {
+            return 1_000_000;
+        }
+
+        @Override
+        public Book bookAt(int position) {
+            reads.incrementAndGet();
+            return new Book(String.valueOf(position), "Author " + position, 2000 + position % 20,
+                    "Original " + position, "Title " + position, position % 5);
+        }
+    };
+
+    @Test
+    public void testRowsReadOnDemand() {
+        BookTableModel model = new BookTableModel(million);
+        assertEquals(1_000_000, model.getRowCount());
+        assertEquals(6, model.getColumnCount());
+        assertEquals(0, reads.get());
+
+        assertEquals("999999", model.getValueAt(999_999, 0));
+        assertEquals("Author 999999", model.getValueAt(999_999, 1));
+        assertEquals(2019, model.getValueAt(999_999, 2));
+        assertEquals("Title 999999", model.getValueAt(999_999, 4));
+        assertEquals(4.0, model.getValueAt(999_999, 5));
+        assertEquals(1, reads.get());
+
+        assertEquals("Original 7", model.getValueAt(7, 3));
+        assertEquals(2, reads.get());
+        assertThrows(IndexOutOfBoundsException.class, () -> model.getValueAt(1_000_000, 0));
+    }
+
+    @Test
+    public void testSetOrderingNotifiesListeners() {
+        BookTableModel model = new BookTableModel(null);
+        assertEquals(0, model.getRowCount());
+        AtomicInteger events = new AtomicInteger();
+        model.addTableModelListener(e -> events.incrementAndGet());
+        model.setOrdering(million);
+        assertEquals(1, events.get());
+        assertEquals(1_000_000, model.getRowCount());
+        assertEquals(Integer.class, model.getColumnClass(2));
+        assertEquals("Avg. Rating", model.getColumnName(5));
+    }
+
+    @Test
+    public void testRowsAfterPatchReadWithoutCopyingIndex() {
+        AtomicInteger copies = new AtomicInteger();
+        IntTreeMap<PostingIndex.Postings> years = new IntTreeMap<>() {
+            @Override
+            public PostingIndex.Postings[] toValueArray(PostingIndex.Postings[] array) {
+                copies.incrementAndGet();
+                return super.toValueArray(array);
+            }
+
+            @Override
+            public Integer[] toKeyArray(Integer[] array) {
+                copies.incrementAndGet();
+                return super.toKeyArray(array);
+            }
+        };
+        Book[] books = new Book[10_000];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new Book(String.format("%05d", i), "Author " + i, 1950 + i % 70, "Original " + i,
+                    "Title " + i, i % 5);
+        }
+        CatalogStore before = CatalogStore.of(books);
+        Integer[] keys = new Integer[before.size()];
+        for (int id = 0; id < keys.length; id++) {
+            keys[id] = before.publicationYear(id);
+        }
+        PostingIndex<Integer> index = PostingIndex.build(keys, years);
+
+        Book[] changed = books.clone();
+        changed[42] = new Book("00042", "Author 42", 1901, "Original 42", "Title 42", 1);
+        changed[9_000] = new Book("00042b", "Author X", 2030, "Original X", "Title X", 2);
+        CatalogDelta delta = CatalogDelta.compute(before, changed);
+        delta.applyTo(index, CatalogStore::publicationYear);
+        CatalogStore after = delta.after();
+        BookTableModel model = new BookTableModel(new BookBrowser.Ordering() {
+            @Override
+            public int size() {
+                return index.size();
+            }
+
+            @Override
+            public Book bookAt(int position) {
+                return after.book(index.select(position));
+            }
+        });
+
+        assertEquals(books.length, model.getRowCount());
+        assertEquals(1901, model.getValueAt(0, 2));
+        assertEquals("Title 42", model.getValueAt(0, 4));
+        assertEquals(2030, model.getValueAt(books.length - 1, 2));
+        assertEquals("Author X", model.getValueAt(books.length - 1, 1));
+        for (int row = 1; row < books.length; row += 97) {
+            int year = (Integer) model.getValueAt(row, 2);
+            assertTrue(year >= (Integer) model.getValueAt(row - 1, 2));
+        }
+        assertEquals(0, copies.get());
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * The difference between a loaded catalog and a newer copy of its data file, matched by ISBN.
+ * <p>
+ * Books keep their ids across the change, so indexes keyed by id can be patched rather than rebuilt: only the ids
+ * listed by {@link #changedIds()} need their old entries removed and their new ones added. Ids stay dense, as
+ * {@link CatalogStore} requires. A new book takes the id of a deleted one if there is any and is appended otherwise;
+ * when more books are deleted than inserted, the books with the highest ids move down into the remaining gaps.
+ * <p>
+ * When an ISBN occurs more than once, each occurrence in the new file is matched to a different book of the old
+ * catalog; occurrences left over are inserts. A map from ISBN to id keeps one of them, the one with the highest id,
+ * as a build in id order would.
+ */
+public final class CatalogDelta {
+
+    private final CatalogStore before;
+    private final CatalogStore after;
+    private final int[] changedIds;
+    // The highest id holding each ISBN of a changed id in the new catalog, or -1 if no book holds it any more.
+    private final HashMap<String, Integer> isbnOwners;
+    private final int inserted;
+    private final int updated;
+    private final int deleted;
+
+    private CatalogDelta(CatalogStore before, CatalogStore after, int[] changedIds,
+                         HashMap<String, Integer> isbnOwners, int inserted, int updated, int deleted) {
+        this.before = before;
+        this.after = after;
+        this.changedIds = changedIds;
+        this.isbnOwners = isbnOwners;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.deleted = deleted;
+    }
+
+    /**
+     * Compares a catalog with the books of a newer data file. Runs in time linear in the number of books; the new
+     * catalog is encoded afresh, but no ordering is sorted.
+     *
+     * @param before the catalog as loaded.
+     * @param books the books of the new data file, in file order.
+     * @return the difference, holding the new catalog.
+     * @throws IllegalArgumentException if the catalog, the array or any book is {@code null}.
+     */
+    public static CatalogDelta compute(CatalogStore before, Book[] books) {
+        if (before == null || books == null) {
+            throw new IllegalArgumentException("Catalog and books cannot be null.");
+        }
+        int oldSize = before.size();
+        // The first unmatched id of each ISBN; further books with the same ISBN are chained through nextSameIsbn.
+        HashMap<String, Integer> firstId = new HashMap<>();
+        int[] nextSameIsbn = new int[oldSize];
+        for (int id = oldSize - 1; id >= 0; id--) {
+            Integer next = firstId.put(before.isbn(id), id);
+            nextSameIsbn[id] = next != null ? next : -1;
+        }
+
+        Book[] slots = new Book[oldSize];
+        boolean[] changed = new boolean[oldSize];
+        List<Book> inserts = new ArrayList<>();
+        int updated = 0;
+        for (Book book : books) {
+            if (book == null) {
+                throw new IllegalArgumentException("Book cannot be null.");
+            }
+            Integer match = firstId.get(book.isbn());
+            if (match == null) {
+                inserts.add(book);
+                continue;
+            }
+            int id = match;
+            if (nextSameIsbn[id] >= 0) {
+                firstId.put(book.isbn(), nextSameIsbn[id]);
+            } else {
+                firstId.remove(book.isbn());
+            }
+            slots[id] = book;
+            if (!before.book(id).equals(book)) {
+                changed[id] = true;
+                updated++;
+            }
+        }
+
+        int[] holes = new int[oldSize];
+        int holeCount = 0;
+        for (int id = 0; id < oldSize; id++) {
+            if (slots[id] == null) {
+                holes[holeCount++] = id;
+                changed[id] = true;
+            }
+        }
+
+        int size = oldSize;
+        int filled = 0;
+        List<Book> appended = new ArrayList<>();
+        for (Book book : inserts) {
+            if (filled < holeCount) {
+                slots[holes[filled++]] = book;
+            } else {
+                appended.add(book);
+            }
+        }
+        if (filled < holeCount) {
+            size = oldSize - (holeCount - filled);
+            int source = oldSize - 1;
+            for (int i = filled; i < holeCount && holes[i] < size; i++) {
+                while (slots[source] == null) {
+                    source--;
+                }
+                slots[holes[i]] = slots[source];
+                slots[source] = null;
+                changed[source] = true;
+                source--;
+            }
+        }
+
+        Book[] byId = Arrays.copyOf(slots, size + appended.size());
+        for (int i = 0; i < appended.size(); i++) {
+            byId[size + i] = appended.get(i);
+        }
+        int[] changedIds = new int[Math.max(oldSize, byId.length)];
+        int changedCount = 0;
+        for (int id = 0; id < changedIds.length; id++) {
+            if (id >= oldSize || changed[id]) {
+                changedIds[changedCount++] = id;
+            }
+        }
+        changedIds = Arrays.copyOf(changedIds, changedCount);
+
+        // An unchanged book can share its ISBN with a changed one, so owners are found over the whole new catalog.
+        HashMap<String, Integer> isbnOwners = new HashMap<>();
+        for (int id : changedIds) {
+            if (id < oldSize) {
+                isbnOwners.put(before.isbn(id), -1);
+            }
+            if (id < byId.length) {
+                isbnOwners.put(byId[id].isbn(), -1);
+            }
+        }
+        if (!isbnOwners.isEmpty()) {
+            for (int id = 0; id < byId.length; id++) {
+                isbnOwners.replace(byId[id].isbn(), id);
+            }
+        }
+        return new CatalogDelta(before, CatalogStore.of(byId), changedIds, isbnOwners, inserts.size(), updated,
+                holeCount);
+    }
+
+    /**
+     * Retrieves the catalog the delta was computed against.
+     *
+     * @return the old catalog.
+     */
+    public CatalogStore before() {
+        return before;
+    }
+
+    /**
+     * Retrieves the catalog with the delta applied.
+     *
+     * @return the new catalog.
+     */
+    public CatalogStore after() {
+        return after;
+    }
+
+    /**
+     * Retrieves the ids whose book differs between the two catalogs: updated, inserted and deleted books, and the
+     * old and new ids of books that moved. An id may lie beyond the end of either catalog.
+     *
+     * @return a new array of the ids, in ascending order.
+     */
+    public int[] changedIds() {
+        return changedIds.clone();
+    }
+
+    /**
+     * Retrieves the number of books in the new file whose ISBN was not in the catalog.
+     *
+     * @return the number of inserted books.
+     */
+    public int inserted() {
+        return inserted;
+    }
+
+    /**
+     * Retrieves the number of books whose ISBN was in the catalog but whose other fields changed.
+     *
+     * @return the number of updated books.
+     */
+    public int updated() {
+        return updated;
+    }
+
+    /**
+     * Retrieves the number of books in the catalog whose ISBN is no longer in the file.
+     *
+     * @return the number of deleted books.
+     */
+    public int deleted() {
+        return deleted;
+    }
+
+    /**
+     * Checks whether the file holds exactly the books of the catalog.
+     *
+     * @return {@code true} if no book changed.
+     */
+    public boolean isEmpty() {
+        return changedIds.length == 0;
+    }
+
+    /**
+     * Patches a map from ISBN to book id, such as the one built over {@link #before()}, to match {@link #after()}.
+     * An ISBN held by several books maps to the highest of their ids. Costs O(log n) per changed id.
+     *
+     * @param isbnIds the map to patch.
+     */
+    public void applyTo(TreeMapInterface<String, Integer> isbnIds) {
+        for (Map.Entry<String, Integer> owner : isbnOwners.entrySet()) {
+            if (owner.getValue() < 0) {
+                isbnIds.remove(owner.getKey());
+            } else {
+                isbnIds.put(owner.getKey(), owner.getValue());
+            }
+        }
+    }
+
+    /**
+     * Patches a secondary index over one column, such as one built over {@link #before()}, to match
+     * {@link #after()}. Costs O(log n) per changed id.
+     *
+     * @param index the index to patch.
+     * @param column reads the key of a book from a catalog, such as {@code CatalogStore::authors}.
+     * @param <K> the type of keys maintained by the index.
+     */
+    public <K extends Comparable<K>> void applyTo(PostingIndex<K> index,
+                                                  BiFunction<CatalogStore, Integer, K> column) {
+        for (int id : changedIds) {
+            if (id < before.size()) {
+                index.remove(column.apply(before, id), id);
+            }
+        }
+        for (int id : changedIds) {
+            if (id < after.size()) {
+                index.add(column.apply(after, id), id);
+            }
+        }
+    }
+}
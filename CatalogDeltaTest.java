@@ -0,0 +1,159 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class CatalogDeltaTest {
+
+    private static Book book(int n, String authors, double rating) {
+        return new Book("isbn" + n, authors, 1900 + n % 120, "Original " + n, "Title " + n, rating);
+    }
+
+    private static Book[] sorted(Book[] books) {
+        Book[] copy = books.clone();
+        Arrays.sort(copy, Comparator.comparing(Book::isbn).thenComparing(Book::title));
+        return copy;
+    }
+
+    /**
+     * Applies the delta to indexes built over the old catalog and checks they match indexes built over the new one.
+     */
+    private static void assertPatchesIndexes(CatalogDelta delta) {
+        CatalogStore before = delta.before();
+        CatalogStore after = delta.after();
+        TreeMap<String, Integer> isbnIds = new TreeMap<>();
+        for (int id = 0; id < before.size(); id++) {
+            isbnIds.put(before.isbn(id), id);
+        }
+        String[] authors = new String[before.size()];
+        for (int id = 0; id < authors.length; id++) {
+            authors[id] = before.authors(id);
+        }
+        PostingIndex<String> authorIndex = PostingIndex.build(authors);
+
+        delta.applyTo(isbnIds);
+        delta.applyTo(authorIndex, CatalogStore::authors);
+
+        TreeMap<String, Integer> expectedIds = new TreeMap<>();
+        String[] expectedAuthors = new String[after.size()];
+        for (int id = 0; id < after.size(); id++) {
+            expectedIds.put(after.isbn(id), id);
+            expectedAuthors[id] = after.authors(id);
+        }
+        assertArrayEquals(expectedIds.toKeyArray(new String[0]), isbnIds.toKeyArray(new String[0]));
+        assertArrayEquals(expectedIds.toValueArray(new Integer[0]), isbnIds.toValueArray(new Integer[0]));
+        assertArrayEquals(PostingIndex.build(expectedAuthors).toIdArray(), authorIndex.toIdArray());
+    }
+
+    @Test
+    public void testInsertsUpdatesAndDeletes() {
+        Book[] old = {book(0, "A", 4.0), book(1, "B", 3.5), book(2, "C", 4.5), book(3, "A", 2.0)};
+        CatalogStore before = CatalogStore.of(old);
+        // Book 1 is deleted, book 2 gets a new rating, books 4 and 5 are new.
+        Book[] books = {book(5, "D", 3.0), old[3], book(2, "C", 4.25), old[0], book(4, "B", 1.0)};
+        CatalogDelta delta = CatalogDelta.compute(before, books);
+
+        assertEquals(2, delta.inserted());
+        assertEquals(1, delta.updated());
+        assertEquals(1, delta.deleted());
+        assertArrayEquals(sorted(books), sorted(delta.after().toArray()));
+        // Unchanged books keep their ids; the first insert takes the deleted id, the second is appended.
+        assertEquals(old[0], delta.after().book(0));
+        assertEquals(old[3], delta.after().book(3));
+        assertArrayEquals(new int[]{1, 2, 4}, delta.changedIds());
+        assertPatchesIndexes(delta);
+    }
+
+    @Test
+    public void testDeletesCompactIds() {
+        Book[] old = new Book[6];
+        for (int i = 0; i < old.length; i++) {
+            old[i] = book(i, "A" + i % 2, 3.0);
+        }
+        CatalogStore before = CatalogStore.of(old);
+        Book[] books = {old[0], old[2], old[4], old[5]};
+        CatalogDelta delta = CatalogDelta.compute(before, books);
+
+        assertEquals(2, delta.deleted());
+        assertEquals(4, delta.after().size());
+        assertArrayEquals(sorted(books), sorted(delta.after().toArray()));
+        // Books 5 and 4 move down into the gaps left by books 1 and 3.
+        assertEquals(old[5], delta.after().book(1));
+        assertEquals(old[4], delta.after().book(3));
+        assertArrayEquals(new int[]{1, 3, 4, 5}, delta.changedIds());
+        assertPatchesIndexes(delta);
+    }
+
+    @Test
+    public void testUnchangedFileIsEmpty() {
+        Book[] old = {book(0, "A", 4.0), book(1, "B", 3.5)};
+        CatalogDelta delta = CatalogDelta.compute(CatalogStore.of(old), new Book[]{old[1], old[0]});
+        assertTrue(delta.isEmpty());
+        assertEquals(0, delta.inserted() + delta.updated() + delta.deleted());
+        assertThrows(IllegalArgumentException.class, () -> CatalogDelta.compute(CatalogStore.of(old), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> CatalogDelta.compute(CatalogStore.of(old), new Book[]{null}));
+    }
+
+    @Test
+    public void testDuplicateIsbnsMatchedOnce() {
+        Book first = new Book("x", "A", 2000, "O", "T", 4.0);
+        Book second = new Book("x", "B", 2001, "O2", "T2", 3.0);
+        CatalogDelta delta = CatalogDelta.compute(CatalogStore.of(new Book[]{first}), new Book[]{first, second});
+        assertEquals(1, delta.inserted());
+        assertEquals(0, delta.updated());
+        assertArrayEquals(new Book[]{first, second}, delta.after().toArray());
+        assertPatchesIndexes(delta);
+    }
+
+    @Test
+    public void testDeletingOwningDuplicateKeepsIsbn() {
+        Book first = new Book("x", "A", 2000, "O", "T", 4.0);
+        Book other = new Book("y", "B", 2001, "O2", "T2", 3.0);
+        Book last = new Book("x", "C", 2002, "O3", "T3", 2.0);
+        // The ISBN index maps x to id 2, the book that is deleted; book 0 still has ISBN x.
+        CatalogDelta delta = CatalogDelta.compute(CatalogStore.of(new Book[]{first, other, last}),
+                new Book[]{first, other});
+        assertEquals(1, delta.deleted());
+        assertPatchesIndexes(delta);
+
+        // A book with a duplicate ISBN is appended above an unchanged one and takes the ISBN over.
+        assertPatchesIndexes(CatalogDelta.compute(CatalogStore.of(new Book[]{first, other}),
+                new Book[]{first, other, last}));
+    }
+
+    @Test
+    public void testRandomChangesPatchIndexes() {
+        Random random = new Random(23);
+        Book[] old = new Book[2_000];
+        for (int i = 0; i < old.length; i++) {
+            old[i] = book(i, "Author " + random.nextInt(50), random.nextInt(500) / 100.0);
+        }
+        CatalogStore before = CatalogStore.of(old);
+        for (int round = 0; round < 5; round++) {
+            List<Book> books = new ArrayList<>();
+            int next = old.length + round * 1_000;
+            for (Book book : before.toArray()) {
+                int change = random.nextInt(10);
+                if (change == 0) {
+                    continue;
+                }
+                books.add(change == 1 ? book(Integer.parseInt(book.isbn().substring(4)), "Author "
+                        + random.nextInt(50), 1.0) : book);
+            }
+            int inserts = random.nextInt(2) == 0 ? 50 : 400;
+            for (int i = 0; i < inserts; i++) {
+                books.add(book(next++, "Author " + random.nextInt(50), 2.0));
+            }
+            Book[] file = books.toArray(new Book[0]);
+            CatalogDelta delta = CatalogDelta.compute(before, file);
+            assertArrayEquals(sorted(file), sorted(delta.after().toArray()));
+            assertPatchesIndexes(delta);
+            before = delta.after();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A versioned binary snapshot of a loaded catalog, so later startups can skip parsing the text data file.
+ * <p>
+ * The snapshot holds a string dictionary (every distinct string once, UTF-8 encoded), a columnar book table (string
+ * references, years and ratings in parallel arrays), and any number of named orderings, each a permutation of book
+ * ids already in index order. Indexes can be rebuilt from those orderings without sorting.
+ * <p>
+ * A snapshot records the length, modification time and CRC-32 of the source file it was built from. It is only
+ * opened if the source file is no newer than the snapshot and still has the same length and checksum.
+ */
+public final class CatalogSnapshot {
+
+    private static final int MAGIC = 0x424B534E; // "BKSN"
+    private static final int VERSION = 1;
+
+    /**
+     * The catalog read back from a snapshot.
+     *
+     * @param books the books, indexed by id.
+     * @param orders the book ids of each named ordering, in index order.
+     */
+    public record Contents(Book[] books, Map<String, int[]> orders) {
+    }
+
+    private CatalogSnapshot() {
+    }
+
+    /**
+     * Retrieves the conventional snapshot location for a data file: the same path with {@code .snapshot} appended.
+     *
+     * @param source the data file.
+     * @return the path of its snapshot.
+     */
+    public static Path pathFor(Path source) {
+        return source.resolveSibling(source.getFileName() + ".snapshot");
+    }
+
+    /**
+     * Writes a snapshot of the specified catalog. The file is written under a temporary name and then moved into
+     * place, so readers never see a partial snapshot.
+     * <p>
+     * The length and checksum must describe the bytes the catalog was parsed from, such as those of a
+     * {@link BookFileLoader.Result}, not the source file as it is now: the snapshot may be written long after the
+     * load, and a source changed in between must not be recorded as matching the old catalog.
+     *
+     * @param snapshot the file to write.
+     * @param source the data file the catalog was loaded from.
+     * @param sourceLength the length of the source as loaded, in bytes.
+     * @param sourceChecksum the CRC-32 of the source as loaded.
+     * @param books the books, indexed by id.
+     * @param orders the book ids of each named ordering, in index order; each array may have any length.
+     * @throws IOException if the source's modification time cannot be read or the snapshot cannot be written.
+     */
+    public static void write(Path snapshot, Path source, long sourceLength, long sourceChecksum, Book[] books,
+                             Map<String, int[]> orders) throws IOException {
+        long sourceModified = Files.getLastModifiedTime(source).toMillis();
+
+        Map<String, Integer> ids = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[][] columns = new int[4][books.length];
+        for (int i = 0; i < books.length; i++) {
+            Book book = books[i];
+            columns[0][i] = intern(book.isbn(), ids, strings);
+            columns[1][i] = intern(book.authors(), ids, strings);
+            columns[2][i] = intern(book.originalTitle(), ids, strings);
+            columns[3][i] = intern(book.title(), ids, strings);
+        }
+
+        Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeLong(sourceChecksum);
+
+            out.writeInt(strings.size());
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] string : strings) {
+                offset += string.length;
+                out.writeInt(offset);
+            }
+            for (byte[] string : strings) {
+                out.write(string);
+            }
+
+            out.writeInt(books.length);
+            for (int[] column : columns) {
+                writeInts(out, column);
+            }
+            for (Book book : books) {
+                out.writeInt(book.publicationYear());
+            }
+            for (Book book : books) {
+                out.writeDouble(book.averageRating());
+            }
+
+            out.writeInt(orders.size());
+            for (Map.Entry<String, int[]> order : orders.entrySet()) {
+                out.writeUTF(order.getKey());
+                out.writeInt(order.getValue().length);
+                writeInts(out, order.getValue());
+            }
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Opens a snapshot if it is present and still matches the specified data file.
+     *
+     * @param snapshot the snapshot file.
+     * @param source the data file the snapshot should describe.
+     * @return the catalog, or {@code null} if the snapshot is missing, stale, from another format version, or
+     *         unreadable; the caller should then load the data file itself.
+     */
+    public static Contents open(Path snapshot, Path source) {
+        try {
+            if (!Files.exists(snapshot) || Files.getLastModifiedTime(source).compareTo(
+                    Files.getLastModifiedTime(snapshot)) > 0) {
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                    return null;
+                }
+                long sourceLength = buffer.getLong();
+                buffer.getLong(); // source modification time; the file times were compared above
+                long sourceChecksum = buffer.getLong();
+                if (sourceLength != Files.size(source) || sourceChecksum != checksum(source)) {
+                    return null;
+                }
+                return read(buffer);
+            }
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException
+                 | IllegalArgumentException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static Contents read(ByteBuffer buffer) {
+        int stringCount = checkCount(buffer, buffer.getInt(), Integer.BYTES);
+        int[] offsets = readInts(buffer, stringCount + 1);
+        byte[] bytes = new byte[checkCount(buffer, offsets[stringCount], 1)];
+        buffer.get(bytes);
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            strings[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+
+        // Each book takes four string references, a year and a rating.
+        int bookCount = checkCount(buffer, buffer.getInt(), 5 * Integer.BYTES + Double.BYTES);
+        int[] isbns = readInts(buffer, bookCount);
+        int[] authors = readInts(buffer, bookCount);
+        int[] originalTitles = readInts(buffer, bookCount);
+        int[] titles = readInts(buffer, bookCount);
+        int[] years = readInts(buffer, bookCount);
+        double[] ratings = new double[bookCount];
+        buffer.asDoubleBuffer().get(ratings);
+        buffer.position(buffer.position() + bookCount * Double.BYTES);
+
+        Book[] books = new Book[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            books[i] = new Book(strings[isbns[i]], strings[authors[i]], years[i], strings[originalTitles[i]],
+                    strings[titles[i]], ratings[i]);
+        }
+
+        int orderCount = buffer.getInt();
+        Map<String, int[]> orders = new LinkedHashMap<>();
+        for (int i = 0; i < orderCount; i++) {
+            String name = readUtf(buffer);
+            int[] order = readInts(buffer, buffer.getInt());
+            for (int id : order) {
+                if (id < 0 || id >= bookCount) {
+                    throw new IndexOutOfBoundsException("Book id " + id + " out of bounds for " + bookCount);
+                }
+            }
+            orders.put(name, order);
+        }
+        return new Contents(books, orders);
+    }
+
+    /**
+     * Computes the CRC-32 of a file by mapping it, without decoding any of it.
+     */
+    static long checksum(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            long size = channel.size();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                long length = Math.min(Integer.MAX_VALUE, size - position);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            }
+            return crc.getValue();
+        }
+    }
+
+    private static int intern(String string, Map<String, Integer> ids, List<byte[]> strings) {
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = strings.size();
+            ids.put(string, id);
+            strings.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[checkCount(buffer, count, Integer.BYTES)];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Checks a count read from the snapshot against the bytes left, before anything is allocated for it, so a
+     * corrupt count is reported as a short snapshot instead of exhausting the heap.
+     *
+     * @return the count.
+     * @throws BufferUnderflowException if the count is negative or more items than the remaining bytes can hold.
+     */
+    private static int checkCount(ByteBuffer buffer, int count, int bytesEach) {
+        if (count < 0 || count > buffer.remaining() / bytesEach) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    /**
+     * Reads a string written by {@link DataOutputStream#writeUTF(String)}. Ordering names are plain ASCII, for which
+     * modified UTF-8 and standard UTF-8 agree.
+     */
+    private static String readUtf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CatalogSnapshotTest {
+    @TempDir
+    Path tempDir;
+
+    private final Book[] books = {
+            new Book("0439023483", "Suzanne Collins", 2008, "The Hunger Games", "The Hunger Games", 4.34),
+            new Book("0439554934", "J.K. Rowling, Mary GrandPr\u00e9", 1997, "", "Harry Potter", 4.44),
+            new Book("0316015849", "Suzanne Collins", 2008, "", "Catching Fire", 3.57)
+    };
+
+    private Path source() throws IOException {
+        Path source = tempDir.resolve("books.txt");
+        Files.writeString(source, "header\nrow one\nrow two\nrow three\n");
+        return source;
+    }
+
+    /**
+     * Writes a snapshot of the test books, recording the source as the loader mapped it.
+     */
+    private void write(Path snapshot, Path source) throws IOException {
+        BookFileLoader.Result loaded = BookFileLoader.load(source);
+        CatalogSnapshot.write(snapshot, source, loaded.length(), loaded.checksum(), books, orders());
+    }
+
+    private Map<String, int[]> orders() {
+        Map<String, int[]> orders = new LinkedHashMap<>();
+        orders.put("ISBN", new int[]{2, 0, 1});
+        orders.put("Year", new int[]{1, 0, 2});
+        return orders;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path source = source();
+        Path snapshot = CatalogSnapshot.pathFor(source);
+        write(snapshot, source);
+
+        CatalogSnapshot.Contents contents = CatalogSnapshot.open(snapshot, source);
+        assertNotNull(contents);
+        assertArrayEquals(books, contents.books());
+        assertEquals(2, contents.orders().size());
+        assertArrayEquals(new int[]{2, 0, 1}, contents.orders().get("ISBN"));
+        assertArrayEquals(new int[]{1, 0, 2}, contents.orders().get("Year"));
+        // Repeated strings are stored once and shared again after loading.
+        assertSame(contents.books()[0].authors(), contents.books()[2].authors());
+    }
+
+    @Test
+    public void testMissingSnapshot() throws IOException {
+        Path source = source();
+        assertNull(CatalogSnapshot.open(CatalogSnapshot.pathFor(source), source));
+    }
+
+    @Test
+    public void testNewerSourceIsStale() throws IOException {
+        Path source = source();
+        Path snapshot = CatalogSnapshot.pathFor(source);
+        write(snapshot, source);
+        Files.setLastModifiedTime(source,
+                FileTime.fromMillis(Files.getLastModifiedTime(snapshot).toMillis() + 10_000));
+        assertNull(CatalogSnapshot.open(snapshot, source));
+    }
+
+    @Test
+    public void testChangedContentFailsChecksum() throws IOException {
+        Path source = source();
+        Path snapshot = CatalogSnapshot.pathFor(source);
+        write(snapshot, source);
+        FileTime modified = Files.getLastModifiedTime(source);
+        Files.writeString(source, "header\nrow one\nrow 2!\nrow three\n");
+        Files.setLastModifiedTime(source, modified);
+        assertNull(CatalogSnapshot.open(snapshot, source));
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsIgnored() throws IOException {
+        Path source = source();
+        Path snapshot = CatalogSnapshot.pathFor(source);
+        write(snapshot, source);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Files.write(snapshot, java.util.Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(CatalogSnapshot.open(snapshot, source));
+    }
+
+    @Test
+    public void testCorruptCountIsIgnored() throws IOException {
+        Path source = source();
+        Path snapshot = CatalogSnapshot.pathFor(source);
+        write(snapshot, source);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        // The string count follows the magic number, the version and the three source fields.
+        java.nio.ByteBuffer.wrap(bytes).putInt(4 + 4 + 3 * 8, Integer.MAX_VALUE - 1);
+        Files.write(snapshot, bytes);
+        assertNull(CatalogSnapshot.open(snapshot, source));
+    }
+
+    @Test
+    public void testSourceChangedAfterLoadIsStale() throws IOException {
+        Path source = source();
+        Path snapshot = CatalogSnapshot.pathFor(source);
+        BookFileLoader.Result loaded = BookFileLoader.load(source);
+        // The file changes between the load and the background snapshot write.
+        Files.writeString(source, "header\nrow one\nrow two, edited\nrow three\n");
+        CatalogSnapshot.write(snapshot, source, loaded.length(), loaded.checksum(), books, orders());
+        assertNull(CatalogSnapshot.open(snapshot, source));
+    }
+}
@@ -0,0 +1,287 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A compact, column-oriented copy of the catalog.
+ * <p>
+ * Instead of one {@link Book} object and five {@code String} objects per book, the store keeps one array per
+ * column. Text columns hold references into a string pool in which each distinct string is stored once, as Latin-1
+ * bytes when every character fits in one byte and as UTF-8 otherwise, all in a single {@code byte[]}. Years are an
+ * {@code int[]}; ratings are an exact {@code short[]} of hundredths when every rating has at most two decimals, as in
+ * the data files, and a {@code double[]} otherwise.
+ * <p>
+ * Single columns can be read without decoding anything else. {@link #book(int)} assembles a {@link Book} on demand;
+ * callers should use it for the few books on screen and let it go, rather than hold on to every book.
+ */
+public final class CatalogStore {
+
+    private static final int ISBN = 0;
+    private static final int AUTHORS = 1;
+    private static final int ORIGINAL_TITLE = 2;
+    private static final int TITLE = 3;
+
+    private final int size;
+    private final int[][] text;
+    private final int[] years;
+    private final short[] centiRatings;
+    private final double[] ratings;
+
+    private final byte[] pool;
+    private final int[] poolOffsets;
+    // One bit per pooled string: set if it is stored as UTF-8 rather than Latin-1.
+    private final long[] utf8;
+
+    private CatalogStore(int size, int[][] text, int[] years, short[] centiRatings, double[] ratings, byte[] pool,
+                         int[] poolOffsets, long[] utf8) {
+        this.size = size;
+        this.text = text;
+        this.years = years;
+        this.centiRatings = centiRatings;
+        this.ratings = ratings;
+        this.pool = pool;
+        this.poolOffsets = poolOffsets;
+        this.utf8 = utf8;
+    }
+
+    /**
+     * Builds a store holding the specified books. The books are copied; the array can be discarded afterwards.
+     *
+     * @param books the books, indexed by id.
+     * @return the store.
+     * @throws IllegalArgumentException if the array or any book is {@code null}.
+     */
+    public static CatalogStore of(Book[] books) {
+        if (books == null) {
+            throw new IllegalArgumentException("Array cannot be null.");
+        }
+        HashMap<String, Integer> ids = new HashMap<>();
+        PoolWriter writer = new PoolWriter();
+        int[][] text = new int[4][books.length];
+        int[] years = new int[books.length];
+        double[] ratings = new double[books.length];
+        boolean exactHundredths = true;
+        for (int i = 0; i < books.length; i++) {
+            Book book = books[i];
+            if (book == null) {
+                throw new IllegalArgumentException("Book cannot be null.");
+            }
+            text[ISBN][i] = intern(book.isbn(), ids, writer);
+            text[AUTHORS][i] = intern(book.authors(), ids, writer);
+            text[ORIGINAL_TITLE][i] = intern(book.originalTitle(), ids, writer);
+            text[TITLE][i] = intern(book.title(), ids, writer);
+            years[i] = book.publicationYear();
+            ratings[i] = book.averageRating();
+            double hundredths = Math.rint(book.averageRating() * 100);
+            exactHundredths &= Math.abs(hundredths) <= Short.MAX_VALUE && hundredths / 100 == book.averageRating();
+        }
+        short[] centiRatings = null;
+        if (exactHundredths) {
+            centiRatings = new short[books.length];
+            for (int i = 0; i < books.length; i++) {
+                centiRatings[i] = (short) Math.rint(ratings[i] * 100);
+            }
+            ratings = null;
+        }
+        return new CatalogStore(books.length, text, years, centiRatings, ratings, writer.bytes(),
+                writer.offsets(), writer.utf8());
+    }
+
+    private static int intern(String string, HashMap<String, Integer> ids, PoolWriter writer) {
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = writer.add(string);
+            ids.put(string, id);
+        }
+        return id;
+    }
+
+    /**
+     * Retrieves the number of books in the store.
+     *
+     * @return the number of books.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of distinct strings in the pool.
+     *
+     * @return the number of pooled strings.
+     */
+    public int stringCount() {
+        return poolOffsets.length - 1;
+    }
+
+    /**
+     * Assembles the book with the specified id.
+     *
+     * @param id the id of the book.
+     * @return a new {@link Book} with the stored values.
+     * @throws IndexOutOfBoundsException if the id is out of bounds.
+     */
+    public Book book(int id) {
+        checkId(id);
+        return new Book(string(text[ISBN][id]), string(text[AUTHORS][id]), years[id],
+                string(text[ORIGINAL_TITLE][id]), string(text[TITLE][id]), averageRating(id));
+    }
+
+    /**
+     * Assembles every book, in id order.
+     *
+     * @return a new array of all books.
+     */
+    public Book[] toArray() {
+        Book[] books = new Book[size];
+        for (int i = 0; i < size; i++) {
+            books[i] = book(i);
+        }
+        return books;
+    }
+
+    /**
+     * Retrieves the ISBN of a book.
+     *
+     * @param id the id of the book.
+     * @return the ISBN.
+     * @throws IndexOutOfBoundsException if the id is out of bounds.
+     */
+    public String isbn(int id) {
+        checkId(id);
+        return string(text[ISBN][id]);
+    }
+
+    /**
+     * Retrieves the authors of a book.
+     *
+     * @param id the id of the book.
+     * @return the authors field.
+     * @throws IndexOutOfBoundsException if the id is out of bounds.
+     */
+    public String authors(int id) {
+        checkId(id);
+        return string(text[AUTHORS][id]);
+    }
+
+    /**
+     * Retrieves the original title of a book.
+     *
+     * @param id the id of the book.
+     * @return the original title.
+     * @throws IndexOutOfBoundsException if the id is out of bounds.
+     */
+    public String originalTitle(int id) {
+        checkId(id);
+        return string(text[ORIGINAL_TITLE][id]);
+    }
+
+    /**
+     * Retrieves the title of a book.
+     *
+     * @param id the id of the book.
+     * @return the title.
+     * @throws IndexOutOfBoundsException if the id is out of bounds.
+     */
+    public String title(int id) {
+        checkId(id);
+        return string(text[TITLE][id]);
+    }
+
+    /**
+     * Retrieves the publication year of a book.
+     *
+     * @param id the id of the book.
+     * @return the publication year.
+     * @throws IndexOutOfBoundsException if the id is out of bounds.
+     */
+    public int publicationYear(int id) {
+        checkId(id);
+        return years[id];
+    }
+
+    /**
+     * Retrieves the average rating of a book.
+     *
+     * @param id the id of the book.
+     * @return the average rating.
+     * @throws IndexOutOfBoundsException if the id is out of bounds.
+     */
+    public double averageRating(int id) {
+        checkId(id);
+        return centiRatings != null ? centiRatings[id] / 100.0 : ratings[id];
+    }
+
+    /**
+     * Estimates the heap held by the store's arrays, excluding object headers.
+     *
+     * @return the size in bytes.
+     */
+    public long memoryBytes() {
+        long bytes = pool.length + (long) poolOffsets.length * Integer.BYTES + (long) utf8.length * Long.BYTES;
+        bytes += 5L * size * Integer.BYTES;
+        bytes += centiRatings != null ? (long) size * Short.BYTES : (long) size * Double.BYTES;
+        return bytes;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Index " + id + " out of bounds for size " + size);
+        }
+    }
+
+    private String string(int index) {
+        int start = poolOffsets[index];
+        int length = poolOffsets[index + 1] - start;
+        boolean isUtf8 = (utf8[index >>> 6] & (1L << index)) != 0;
+        return new String(pool, start, length, isUtf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Appends encoded strings to a growing pool.
+     */
+    private static final class PoolWriter {
+        private byte[] bytes = new byte[1 << 16];
+        private int length;
+        private int[] offsets = new int[1024];
+        private long[] utf8 = new long[16];
+        private int count;
+
+        int add(String string) {
+            boolean latin1 = true;
+            for (int i = 0; i < string.length() && latin1; i++) {
+                latin1 = string.charAt(i) <= 0xFF;
+            }
+            byte[] encoded = string.getBytes(latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            if (length + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + encoded.length, bytes.length * 2));
+            }
+            System.arraycopy(encoded, 0, bytes, length, encoded.length);
+            if (count + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            if (count >>> 6 >= utf8.length) {
+                utf8 = Arrays.copyOf(utf8, utf8.length * 2);
+            }
+            if (!latin1) {
+                utf8[count >>> 6] |= 1L << count;
+            }
+            offsets[count] = length;
+            length += encoded.length;
+            offsets[count + 1] = length;
+            return count++;
+        }
+
+        byte[] bytes() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        int[] offsets() {
+            return Arrays.copyOf(offsets, count + 1);
+        }
+
+        long[] utf8() {
+            return Arrays.copyOf(utf8, (count + 63) >>> 6);
+        }
+    }
+}
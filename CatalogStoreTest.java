@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class CatalogStoreTest {
+
+    private static final Book[] BOOKS = {
+            new Book("439023483", "Suzanne Collins", 2008, "The Hunger Games",
+                    "The Hunger Games (The Hunger Games, #1)", 4.34),
+            new Book("2070612880", "Antoine de Saint-Exup\u00e9ry", 1943, "Le Petit Prince", "Le Petit Prince", 4.29),
+            new Book("9787020024759", "\u66f9\u96ea\u82b9", 1791, "\u7ea2\u697c\u68a6", "The Dream of the Red Chamber",
+                    3.97),
+            new Book("439023491", "Suzanne Collins", 2009, "Catching Fire", "Catching Fire (The Hunger Games, #2)",
+                    4.3),
+    };
+
+    @Test
+    public void testRoundTrip() {
+        CatalogStore store = CatalogStore.of(BOOKS);
+        assertEquals(BOOKS.length, store.size());
+        for (int i = 0; i < BOOKS.length; i++) {
+            assertEquals(BOOKS[i], store.book(i));
+            assertEquals(BOOKS[i].isbn(), store.isbn(i));
+            assertEquals(BOOKS[i].authors(), store.authors(i));
+            assertEquals(BOOKS[i].originalTitle(), store.originalTitle(i));
+            assertEquals(BOOKS[i].title(), store.title(i));
+            assertEquals(BOOKS[i].publicationYear(), store.publicationYear(i));
+            assertEquals(BOOKS[i].averageRating(), store.averageRating(i));
+        }
+        assertArrayEquals(BOOKS, store.toArray());
+    }
+
+    @Test
+    public void testStringsStoredOnce() {
+        CatalogStore store = CatalogStore.of(BOOKS);
+        // 4 ISBNs, 3 authors, 4 original titles and 4 titles, with "Le Petit Prince" pooled once for both fields.
+        assertEquals(4 + 3 + 4 + 4 - 1, store.stringCount());
+        assertTrue(store.memoryBytes() > 0);
+    }
+
+    @Test
+    public void testRatingsWithMoreDecimals() {
+        Book[] books = {
+                new Book("1", "A", 2000, "T", "T", 3.5),
+                new Book("2", "B", 2001, "U", "U", 1.0 / 3),
+        };
+        CatalogStore store = CatalogStore.of(books);
+        assertEquals(3.5, store.averageRating(0));
+        assertEquals(1.0 / 3, store.averageRating(1));
+        assertEquals(books[1], store.book(1));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> CatalogStore.of(null));
+        assertThrows(IllegalArgumentException.class, () -> CatalogStore.of(new Book[]{null}));
+        CatalogStore store = CatalogStore.of(BOOKS);
+        assertThrows(IndexOutOfBoundsException.class, () -> store.book(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.isbn(BOOKS.length));
+        assertEquals(0, CatalogStore.of(new Book[0]).size());
+    }
+}
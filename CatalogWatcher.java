@@ -0,0 +1,119 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a catalog data file and loads it again whenever it changes, for instance after a nightly export.
+ * <p>
+ * The file's directory is watched with a {@link WatchService}, so an export that writes a temporary file and renames
+ * it over the old one is noticed as well as one that rewrites the file in place. An export usually takes several
+ * writes, so the file is only read once no further change has been seen for a quiet period. Loads run on a single
+ * daemon thread, one at a time, and the listener is called on that thread; the next change is not looked at until
+ * the listener returns.
+ */
+public final class CatalogWatcher implements Closeable {
+
+    private final WatchService service;
+    private final Thread thread;
+
+    private CatalogWatcher(WatchService service, Path file, Duration quietPeriod,
+                           Consumer<BookFileLoader.Result> listener) {
+        this.service = service;
+        this.thread = new Thread(() -> run(file, quietPeriod.toMillis(), listener), "catalog-watcher");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching the specified data file.
+     *
+     * @param file the data file.
+     * @param quietPeriod how long the file must go unchanged before it is read.
+     * @param listener receives the contents of the file after each change; called on the watcher's thread.
+     * @return the running watcher.
+     * @throws IOException if the file's directory cannot be watched.
+     */
+    public static CatalogWatcher start(Path file, Duration quietPeriod, Consumer<BookFileLoader.Result> listener)
+            throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        WatchService service = directory.getFileSystem().newWatchService();
+        try {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        }
+        CatalogWatcher watcher = new CatalogWatcher(service, file.toAbsolutePath(), quietPeriod, listener);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    /**
+     * Stops watching. A load that is under way finishes first, but its listener call may still happen.
+     *
+     * @throws IOException if the watch service cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+
+    private void run(Path file, long quietMillis, Consumer<BookFileLoader.Result> listener) {
+        try {
+            while (true) {
+                if (!touches(service.take(), file)) {
+                    continue;
+                }
+                WatchKey next;
+                while ((next = service.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+                    touches(next, file);
+                }
+                load(file, listener);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed; stop watching.
+        }
+    }
+
+    /**
+     * Checks whether a batch of directory events includes a change to the file, and re-arms the key.
+     */
+    private static boolean touches(WatchKey key, Path file) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // After an overflow, events were lost, so the file may have changed.
+            touched |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || file.getFileName().equals(event.context());
+        }
+        key.reset();
+        return touched;
+    }
+
+    private static void load(Path file, Consumer<BookFileLoader.Result> listener) {
+        // A file that is gone is being replaced; its creation will be seen as a further change.
+        if (!Files.exists(file)) {
+            return;
+        }
+        BookFileLoader.Result result;
+        try {
+            result = BookFileLoader.load(file);
+        } catch (IOException e) {
+            System.err.println("Could not reload " + file.getFileName() + ": " + e);
+            return;
+        }
+        try {
+            listener.accept(result);
+        } catch (RuntimeException e) {
+            // The watcher keeps running, so the next export is still picked up.
+            System.err.println("Could not apply " + file.getFileName() + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class CatalogWatcherTest {
+    private static final String HEADER = "book_id~goodreads_book_id~isbn~authors~pub_year~original_title~title"
+            + "~average_rating~image_url~small_image_url\n";
+
+    @TempDir
+    Path tempDir;
+
+    private static void write(Path file, String rows) throws IOException {
+        Files.write(file, (HEADER + rows).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReloadsAfterRewriteAndRename() throws Exception {
+        Path file = tempDir.resolve("books.txt");
+        write(file, "1~1~a~A~2008~O~T~4.34~u~s\n");
+        LinkedBlockingQueue<BookFileLoader.Result> loads = new LinkedBlockingQueue<>();
+        CatalogWatcher watcher = CatalogWatcher.start(file, Duration.ofMillis(100), loads::add);
+        try {
+            write(tempDir.resolve("other.txt"), "");
+            write(file, "1~1~a~A~2008~O~T~4.34~u~s\n2~2~b~B~2009~O2~T2~3.5~u~s\n");
+            BookFileLoader.Result result = loads.poll(20, TimeUnit.SECONDS);
+            assertNotNull(result);
+            assertEquals(List.of(new Book("a", "A", 2008, "O", "T", 4.34), new Book("b", "B", 2009, "O2", "T2", 3.5)),
+                    result.books());
+
+            // An export that writes a new file and renames it over the old one.
+            Path staged = tempDir.resolve("books.tmp");
+            write(staged, "3~3~c~C~2010~O3~T3~2.5~u~s\n");
+            Files.move(staged, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            result = loads.poll(20, TimeUnit.SECONDS);
+            assertNotNull(result);
+            assertEquals(List.of(new Book("c", "C", 2010, "O3", "T3", 2.5)), result.books());
+        } finally {
+            watcher.close();
+        }
+        assertNull(loads.poll(500, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,586 @@
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * A thread-safe AVL tree map for catalogs that change while they are being read.
+ * <p>
+ * Nodes are immutable. An update copies only the nodes on the path from the root to the changed key, rebalancing as
+ * it goes, and then installs the new root with a single compare-and-set; if another writer got there first, the
+ * update is redone against the newer tree. Readers never lock and never wait: every read follows whichever root was
+ * current when it started, so it sees the map either entirely before or entirely after any update.
+ * <p>
+ * {@link #snapshot()} pins the current root. A snapshot is an immutable map that can be iterated, ranked and indexed
+ * consistently, for instance by a table model, while a background importer keeps adding books to this map. Taking a
+ * snapshot costs O(1); unchanged subtrees are shared between the snapshot and the live map.
+ *
+ * @param <K> the type of keys maintained by this map; must extend {@link Comparable}.
+ * @param <V> the type of values maintained by this map.
+ */
+public class ConcurrentTreeMap<K extends Comparable<K>, V> implements TreeMapInterface<K, V> {
+
+    private final AtomicReference<Node<K, V>> root = new AtomicReference<>();
+
+    /**
+     * An immutable tree node holding the height and size of its subtree.
+     */
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int height;
+        final int count;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.count = 1 + count(left) + count(right);
+        }
+    }
+
+    /**
+     * Constructs an empty ConcurrentTreeMap.
+     */
+    public ConcurrentTreeMap() {
+    }
+
+    /**
+     * Builds a perfectly balanced map from parallel key and value arrays.
+     * Sorting and duplicate handling are those of {@link TreeMap#fromArrays(Comparable[], Object[])}: when a key
+     * appears more than once, the value that appears last wins. The arrays are not modified.
+     *
+     * @param keys the keys to load; must not contain {@code null}.
+     * @param values the values to load; {@code values[i]} is associated with {@code keys[i]}.
+     * @param <K> the type of keys maintained by the map.
+     * @param <V> the type of values maintained by the map.
+     * @return a new map holding the specified pairs.
+     * @throws IllegalArgumentException if either array or any key is {@code null}, or the arrays differ in length.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <K extends Comparable<K>, V> ConcurrentTreeMap<K, V> fromArrays(K[] keys, V[] values) {
+        TreeMap<K, V> sorted = TreeMap.fromArrays(keys, values);
+        K[] sortedKeys = sorted.toKeyArray((K[]) new Comparable[sorted.size()]);
+        V[] sortedValues = sorted.toValueArray((V[]) new Object[sorted.size()]);
+        ConcurrentTreeMap<K, V> map = new ConcurrentTreeMap<>();
+        map.root.set(build(sortedKeys, sortedValues, 0, sortedKeys.length));
+        return map;
+    }
+
+    private static <K, V> Node<K, V> build(K[] keys, V[] values, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        return new Node<>(keys[mid], values[mid], build(keys, values, from, mid), build(keys, values, mid + 1, to));
+    }
+
+    /**
+     * Retrieves a consistent, read-only view of the map as it is now. Later updates to this map do not affect it.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot<K, V> snapshot() {
+        return new Snapshot<>(root.get());
+    }
+
+    /**
+     * Retrieves the number of key/value pair elements managed by the map.
+     *
+     * @return the number of elements in the map.
+     */
+    @Override
+    public int size() {
+        return count(root.get());
+    }
+
+    /**
+     * Clears the existing tree, removing any and all existing key/value pairs. Snapshots taken earlier keep their
+     * contents.
+     */
+    @Override
+    public void clear() {
+        root.set(null);
+    }
+
+    /**
+     * Retrieves the value corresponding to the specified key.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the key is not found.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    public V get(K key) {
+        Node<K, V> node = find(root.get(), key);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Adds a key/value pair to the tree map, replacing the value if the key is already present.
+     * Safe to call from several threads at once; concurrent readers see the map before or after the pair is added.
+     *
+     * @param key the key in the key/value pair; used to organize the tree.
+     * @param value the value in the key/value pair; this data is looked up through key-based searches.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    public void put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        Node<K, V> current;
+        Node<K, V> updated;
+        do {
+            current = root.get();
+            updated = insert(current, key, value);
+        } while (!root.compareAndSet(current, updated));
+    }
+
+    /**
+     * Removes the key/value pair with the specified key from the tree map, if it is present.
+     * Safe to call from several threads at once; concurrent readers see the map before or after the pair is removed.
+     *
+     * @param key the key of the pair to remove.
+     * @return the value that was associated with the key, or {@code null} if the key was not found.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    public V remove(K key) {
+        Node<K, V> current;
+        Node<K, V> found;
+        Node<K, V> updated;
+        do {
+            current = root.get();
+            found = find(current, key);
+            if (found == null) {
+                return null;
+            }
+            updated = delete(current, key);
+        } while (!root.compareAndSet(current, updated));
+        return found.value;
+    }
+
+    /**
+     * Checks if the map contains the specified key.
+     *
+     * @param key the key to search for.
+     * @return {@code true} if the key is in the map; {@code false} otherwise.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    public boolean containsKey(K key) {
+        return find(root.get(), key) != null;
+    }
+
+    /**
+     * Retrieves an array of key data from the map, in order. The keys all come from the same version of the map.
+     *
+     * @param array the array to fill in. If smaller than the map's size, a new array will be created. If larger than the
+     *              map's size, data will be filled in from index 0, with a {@code null} reference just after the copied-in data.
+     *              This parameter must not be {@code null}.
+     * @return a reference to the filled-in array; may be a different array than the one passed in.
+     * @throws IllegalArgumentException if the array is {@code null}.
+     */
+    @Override
+    public K[] toKeyArray(K[] array) {
+        return snapshot().toKeyArray(array);
+    }
+
+    /**
+     * Retrieves an array of value data from the map, in key order. The values all come from the same version of the
+     * map.
+     *
+     * @param array the array to fill in. If smaller than the map's size, a new array will be created. If larger than the
+     *              map's size, data will be filled in from index 0, with a {@code null} reference just after the copied-in data.
+     *              This parameter must not be {@code null}.
+     * @return a reference to the filled-in array; may be a different array than the one passed in.
+     * @throws IllegalArgumentException if the array is {@code null}.
+     */
+    @Override
+    public V[] toValueArray(V[] array) {
+        return snapshot().toValueArray(array);
+    }
+
+    /**
+     * Performs an action for each key/value pair in the map, in key order. The pairs all come from the same version
+     * of the map.
+     *
+     * @param action the action to perform on each key and its value.
+     * @throws IllegalArgumentException if the action is {@code null}.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        snapshot().forEach(action);
+    }
+
+    /**
+     * Retrieves the height of the current tree; an empty tree has height 0.
+     *
+     * @return the number of nodes on the longest root-to-leaf path.
+     */
+    int height() {
+        return height(root.get());
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> find(Node<K, V> node, K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies the path to the key, replacing or adding its node and rebalancing each copied node on the way back up.
+     * Recursion depth is the height of the tree.
+     *
+     * @return the root of the new subtree.
+     */
+    private static <K extends Comparable<K>, V> Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<>(key, value, null, null);
+        }
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            return balance(node.key, node.value, insert(node.left, key, value), node.right);
+        } else if (cmp > 0) {
+            return balance(node.key, node.value, node.left, insert(node.right, key, value));
+        }
+        return new Node<>(key, value, node.left, node.right);
+    }
+
+    /**
+     * Copies the path to the key, which must be present, leaving its node out and rebalancing each copied node on
+     * the way back up. A node with two children is replaced by its successor.
+     *
+     * @return the root of the new subtree.
+     */
+    private static <K extends Comparable<K>, V> Node<K, V> delete(Node<K, V> node, K key) {
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            return balance(node.key, node.value, delete(node.left, key), node.right);
+        } else if (cmp > 0) {
+            return balance(node.key, node.value, node.left, delete(node.right, key));
+        }
+        if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        }
+        Node<K, V> next = node.right;
+        while (next.left != null) {
+            next = next.left;
+        }
+        return balance(next.key, next.value, node.left, delete(node.right, next.key));
+    }
+
+    /**
+     * Creates a node from the specified parts, rotating if its subtrees' heights differ by two.
+     *
+     * @return the root of the balanced subtree.
+     */
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int factor = height(left) - height(right);
+        if (factor > 1) {
+            if (height(left.left) < height(left.right)) {
+                Node<K, V> pivot = left.right;
+                return new Node<>(pivot.key, pivot.value,
+                        new Node<>(left.key, left.value, left.left, pivot.left),
+                        new Node<>(key, value, pivot.right, right));
+            }
+            return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+        } else if (factor < -1) {
+            if (height(right.right) < height(right.left)) {
+                Node<K, V> pivot = right.left;
+                return new Node<>(pivot.key, pivot.value,
+                        new Node<>(key, value, left, pivot.left),
+                        new Node<>(right.key, right.value, pivot.right, right.right));
+            }
+            return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int count(Node<?, ?> node) {
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * An immutable view of a {@link ConcurrentTreeMap} at one point in time.
+     * All reads, including iteration and positional access, see the same pairs. Mutating operations throw
+     * {@link UnsupportedOperationException}.
+     *
+     * @param <K> the type of keys maintained by this map.
+     * @param <V> the type of values maintained by this map.
+     */
+    public static final class Snapshot<K extends Comparable<K>, V>
+            implements TreeMapInterface<K, V>, Iterable<Map.Entry<K, V>> {
+
+        private final Node<K, V> root;
+
+        private Snapshot(Node<K, V> root) {
+            this.root = root;
+        }
+
+        /**
+         * Retrieves the number of key/value pair elements in the snapshot.
+         *
+         * @return the number of elements.
+         */
+        @Override
+        public int size() {
+            return count(root);
+        }
+
+        /**
+         * Not supported; a snapshot is read-only.
+         *
+         * @throws UnsupportedOperationException always.
+         */
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Snapshot is read-only.");
+        }
+
+        /**
+         * Retrieves the value corresponding to the specified key.
+         *
+         * @param key the key whose associated value is to be returned.
+         * @return the value corresponding to the specified key, or {@code null} if the key is not found.
+         * @throws IllegalArgumentException if the key is {@code null}.
+         */
+        @Override
+        public V get(K key) {
+            Node<K, V> node = find(root, key);
+            return node != null ? node.value : null;
+        }
+
+        /**
+         * Not supported; a snapshot is read-only.
+         *
+         * @throws UnsupportedOperationException always.
+         */
+        @Override
+        public void put(K key, V value) {
+            throw new UnsupportedOperationException("Snapshot is read-only.");
+        }
+
+        /**
+         * Not supported; a snapshot is read-only.
+         *
+         * @throws UnsupportedOperationException always.
+         */
+        @Override
+        public V remove(K key) {
+            throw new UnsupportedOperationException("Snapshot is read-only.");
+        }
+
+        /**
+         * Checks if the snapshot contains the specified key.
+         *
+         * @param key the key to search for.
+         * @return {@code true} if the key is in the snapshot; {@code false} otherwise.
+         * @throws IllegalArgumentException if the key is {@code null}.
+         */
+        @Override
+        public boolean containsKey(K key) {
+            return find(root, key) != null;
+        }
+
+        /**
+         * Retrieves the key at the specified position in key order.
+         *
+         * @param index the zero-based position of the key.
+         * @return the key with exactly {@code index} smaller keys in the snapshot.
+         * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}.
+         */
+        public K select(int index) {
+            return selectNode(index).key;
+        }
+
+        /**
+         * Retrieves the value whose key is at the specified position in key order.
+         *
+         * @param index the zero-based position of the key.
+         * @return the value associated with the key that has exactly {@code index} smaller keys in the snapshot.
+         * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}.
+         */
+        public V selectValue(int index) {
+            return selectNode(index).value;
+        }
+
+        /**
+         * Retrieves the number of keys in the snapshot that are strictly less than the specified key.
+         *
+         * @param key the key to rank; need not be present.
+         * @return the number of smaller keys.
+         * @throws IllegalArgumentException if the key is {@code null}.
+         */
+        public int rank(K key) {
+            if (key == null) {
+                throw new IllegalArgumentException("Key cannot be null.");
+            }
+            int rank = 0;
+            Node<K, V> node = root;
+            while (node != null) {
+                int cmp = key.compareTo(node.key);
+                if (cmp < 0) {
+                    node = node.left;
+                } else if (cmp > 0) {
+                    rank += count(node.left) + 1;
+                    node = node.right;
+                } else {
+                    return rank + count(node.left);
+                }
+            }
+            return rank;
+        }
+
+        private Node<K, V> selectNode(int index) {
+            int size = size();
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+            }
+            Node<K, V> node = root;
+            while (true) {
+                int leftCount = count(node.left);
+                if (index < leftCount) {
+                    node = node.left;
+                } else if (index > leftCount) {
+                    index -= leftCount + 1;
+                    node = node.right;
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        /**
+         * Retrieves an iterator over the snapshot's pairs in key order. Nodes have no parent links, so the iterator
+         * keeps the path to the current node on a stack of at most the tree's height.
+         *
+         * @return an iterator over immutable entries.
+         */
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new Iterator<>() {
+                private final ArrayDeque<Node<K, V>> path = new ArrayDeque<>();
+
+                {
+                    descend(root);
+                }
+
+                private void descend(Node<K, V> node) {
+                    for (; node != null; node = node.left) {
+                        path.push(node);
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return !path.isEmpty();
+                }
+
+                @Override
+                public Map.Entry<K, V> next() {
+                    if (path.isEmpty()) {
+                        throw new NoSuchElementException();
+                    }
+                    Node<K, V> node = path.pop();
+                    descend(node.right);
+                    return new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+                }
+            };
+        }
+
+        /**
+         * Retrieves an array of key data from the snapshot, in order.
+         *
+         * @param array the array to fill in. If smaller than the snapshot's size, a new array will be created. If
+         *              larger, data will be filled in from index 0, with a {@code null} reference just after the
+         *              copied-in data. This parameter must not be {@code null}.
+         * @return a reference to the filled-in array; may be a different array than the one passed in.
+         * @throws IllegalArgumentException if the array is {@code null}.
+         */
+        @Override
+        public K[] toKeyArray(K[] array) {
+            array = sized(array);
+            int index = 0;
+            for (Map.Entry<K, V> entry : this) {
+                array[index++] = entry.getKey();
+            }
+            return array;
+        }
+
+        /**
+         * Retrieves an array of value data from the snapshot, in key order.
+         *
+         * @param array the array to fill in. If smaller than the snapshot's size, a new array will be created. If
+         *              larger, data will be filled in from index 0, with a {@code null} reference just after the
+         *              copied-in data. This parameter must not be {@code null}.
+         * @return a reference to the filled-in array; may be a different array than the one passed in.
+         * @throws IllegalArgumentException if the array is {@code null}.
+         */
+        @Override
+        public V[] toValueArray(V[] array) {
+            array = sized(array);
+            int index = 0;
+            for (Map.Entry<K, V> entry : this) {
+                array[index++] = entry.getValue();
+            }
+            return array;
+        }
+
+        /**
+         * Performs an action for each key/value pair in the snapshot, in key order.
+         *
+         * @param action the action to perform on each key and its value.
+         * @throws IllegalArgumentException if the action is {@code null}.
+         */
+        @Override
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            if (action == null) {
+                throw new IllegalArgumentException("Action cannot be null.");
+            }
+            for (Map.Entry<K, V> entry : this) {
+                action.accept(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T[] sized(T[] array) {
+            if (array == null) {
+                throw new IllegalArgumentException("Array cannot be null.");
+            }
+            int size = size();
+            if (array.length < size) {
+                return (T[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), size);
+            }
+            if (array.length > size) {
+                array[size] = null;
+            }
+            return array;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ConcurrentTreeMapTest {
+
+    @Test
+    public void testMatchesTreeMap() {
+        ConcurrentTreeMap<Integer, String> map = new ConcurrentTreeMap<>();
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(2000);
+            map.put(key, "v" + i);
+            expected.put(key, "v" + i);
+        }
+        assertEquals(expected.size(), map.size());
+        assertArrayEquals(expected.toKeyArray(new Integer[0]), map.toKeyArray(new Integer[0]));
+        assertArrayEquals(expected.toValueArray(new String[0]), map.toValueArray(new String[0]));
+        for (int key = -1; key <= 2000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        ConcurrentTreeMap.Snapshot<Integer, String> snapshot = map.snapshot();
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertEquals(expected.select(i), snapshot.select(i));
+            assertEquals(expected.selectValue(i), snapshot.selectValue(i));
+            assertEquals(i, snapshot.rank(snapshot.select(i)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> map.put(null, "x"));
+        assertThrows(IllegalArgumentException.class, () -> map.get(null));
+        assertThrows(IndexOutOfBoundsException.class, () -> snapshot.select(snapshot.size()));
+    }
+
+    @Test
+    public void testSnapshotIsUnaffectedByLaterUpdates() {
+        ConcurrentTreeMap<String, Integer> map = ConcurrentTreeMap.fromArrays(
+                new String[]{"c", "a", "b", "a"}, new Integer[]{3, 1, 2, 4});
+        assertEquals(3, map.size());
+        assertEquals(4, map.get("a"));
+        ConcurrentTreeMap.Snapshot<String, Integer> before = map.snapshot();
+        map.put("d", 5);
+        map.put("a", 6);
+        map.clear();
+        map.put("z", 7);
+        assertEquals(3, before.size());
+        assertArrayEquals(new String[]{"a", "b", "c"}, before.toKeyArray(new String[0]));
+        assertEquals(4, before.get("a"));
+        assertFalse(before.containsKey("z"));
+        assertArrayEquals(new String[]{"z"}, map.toKeyArray(new String[0]));
+        assertThrows(UnsupportedOperationException.class, () -> before.put("e", 8));
+        assertThrows(UnsupportedOperationException.class, before::clear);
+    }
+
+    @Test
+    public void testSortedInsertsStayBalanced() {
+        ConcurrentTreeMap<Integer, Integer> map = new ConcurrentTreeMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            map.put(i, i);
+        }
+        // An AVL tree of n nodes is at most about 1.44 log2(n) high.
+        assertTrue(map.height() <= 1.44 * Math.log(100_000) / Math.log(2), "height " + map.height());
+        ConcurrentTreeMap.Snapshot<Integer, Integer> snapshot = map.snapshot();
+        int expected = 0;
+        for (Map.Entry<Integer, Integer> entry : snapshot) {
+            assertEquals(expected++, entry.getKey());
+        }
+        assertEquals(100_000, expected);
+        assertEquals(65_536, snapshot.rank(65_536));
+    }
+
+    @Test
+    public void testConcurrentWritersAndReaders() throws Exception {
+        int writers = 4;
+        int keysPerWriter = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+        ConcurrentTreeMap<Integer, Integer> map = new ConcurrentTreeMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                writes.add(executor.submit(() -> {
+                    start.await();
+                    // Interleaved keys, so every writer keeps touching the same parts of the tree.
+                    for (int i = 0; i < keysPerWriter; i++) {
+                        int key = i * writers + writer;
+                        map.put(key, -key);
+                        map.put(key, key);
+                    }
+                    return null;
+                }));
+            }
+            List<Future<Integer>> reads = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                reads.add(executor.submit(() -> {
+                    start.await();
+                    int checks = 0;
+                    int lastSize = 0;
+                    do {
+                        ConcurrentTreeMap.Snapshot<Integer, Integer> snapshot = map.snapshot();
+                        int size = snapshot.size();
+                        assertTrue(size >= lastSize, "snapshots never shrink");
+                        lastSize = size;
+                        int count = 0;
+                        Integer previous = null;
+                        for (Iterator<Map.Entry<Integer, Integer>> it = snapshot.iterator(); it.hasNext(); ) {
+                            Map.Entry<Integer, Integer> entry = it.next();
+                            assertTrue(previous == null || previous < entry.getKey());
+                            assertEquals(Math.abs(entry.getKey()), Math.abs(entry.getValue()));
+                            previous = entry.getKey();
+                            count++;
+                        }
+                        assertEquals(size, count);
+                        if (size > 0) {
+                            int index = size / 2;
+                            assertEquals(index, snapshot.rank(snapshot.select(index)));
+                        }
+                        checks++;
+                    } while (!done.get());
+                    return checks;
+                }));
+            }
+            start.countDown();
+            for (Future<?> write : writes) {
+                write.get(60, TimeUnit.SECONDS);
+            }
+            done.set(true);
+            for (Future<Integer> read : reads) {
+                assertTrue(read.get(60, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(writers * keysPerWriter, map.size());
+        for (int key = 0; key < writers * keysPerWriter; key++) {
+            assertEquals(key, map.get(key));
+        }
+    }
+
+    @Test
+    public void testRemoveLeavesSnapshotsIntact() {
+        ConcurrentTreeMap<Integer, String> map = new ConcurrentTreeMap<>();
+        java.util.TreeMap<Integer, String> expected = new java.util.TreeMap<>();
+        Random random = new Random(19);
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                map.put(key, "v" + i);
+                expected.put(key, "v" + i);
+            }
+        }
+        assertArrayEquals(expected.keySet().toArray(new Integer[0]), map.toKeyArray(new Integer[0]));
+        assertTrue(map.height() <= 1.44 * Math.log(map.size() + 2) / Math.log(2), "height " + map.height());
+
+        ConcurrentTreeMap.Snapshot<Integer, String> before = map.snapshot();
+        for (Integer key : expected.keySet()) {
+            map.remove(key);
+        }
+        assertEquals(0, map.size());
+        assertEquals(expected.size(), before.size());
+        assertArrayEquals(expected.values().toArray(new String[0]), before.toValueArray(new String[0]));
+        assertNull(map.remove(1));
+        assertThrows(IllegalArgumentException.class, () -> map.remove(null));
+        assertThrows(UnsupportedOperationException.class, () -> before.remove(1));
+    }
+}
@@ -0,0 +1,298 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A two-tier cache of cover images, keyed by ISBN.
+ * <p>
+ * The memory tier holds decoded images and is bounded by their pixel data size; when it is full, the least recently
+ * used images are evicted. The disk tier holds the raw encoded bytes as fetched, one file per ISBN, and is bounded
+ * by total file size; when it is full, the files fetched longest ago are evicted. Disk entries older than the
+ * maximum age are reported as stale, so callers can refresh them but still fall back to them when offline. An empty
+ * file records that a book has no cover.
+ * <p>
+ * All methods are thread-safe. The two tiers are guarded by separate locks, so a memory lookup on the event dispatch
+ * thread never waits for disk work. The disk tier's lock only guards its index of files; files are read, written and
+ * deleted outside it, under one of a fixed set of locks picked by the file name, so that work on one cover never
+ * interleaves with other work on the same file.
+ */
+public class CoverCache {
+
+    /**
+     * Raw cover bytes read from the disk tier.
+     *
+     * @param bytes the encoded image, or an empty array if the book is known to have no cover.
+     * @param stale {@code true} if the entry is older than the cache's maximum age.
+     */
+    public record DiskEntry(byte[] bytes, boolean stale) {
+    }
+
+    /**
+     * A snapshot of the cache counters.
+     *
+     * @param memoryHits lookups answered by the memory tier.
+     * @param memoryMisses lookups the memory tier could not answer.
+     * @param memoryEvictions images evicted from the memory tier.
+     * @param diskHits lookups answered by a fresh disk entry.
+     * @param diskMisses lookups with no disk entry, or only a stale one.
+     * @param diskEvictions files evicted from the disk tier.
+     */
+    public record Stats(long memoryHits, long memoryMisses, long memoryEvictions, long diskHits, long diskMisses,
+                        long diskEvictions) {
+    }
+
+    private final long memoryBudget;
+    private final Path directory;
+    private final long diskBudget;
+    private final Duration maxAge;
+
+    // Both maps iterate eldest first: by last access for memory, by fetch time for disk. Each map is also the lock for
+    // its tier's counters. A file lock, when needed, is always taken before the disk index lock.
+    private final LinkedHashMap<String, BufferedImage> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> diskSizes = new LinkedHashMap<>();
+    private final Object[] fileLocks = new Object[32];
+    private long memoryBytes;
+    private long diskBytes;
+
+    private long memoryHits;
+    private long memoryMisses;
+    private long memoryEvictions;
+    private long diskHits;
+    private long diskMisses;
+    private long diskEvictions;
+
+    /**
+     * Constructs a cache, indexing any cover files already present in the directory.
+     *
+     * @param memoryBudget the maximum pixel data size of the memory tier, in bytes.
+     * @param directory the directory for the disk tier; created if missing.
+     * @param diskBudget the maximum total size of the disk tier, in bytes.
+     * @param maxAge the age after which a disk entry is reported as stale.
+     * @throws UncheckedIOException if the directory cannot be created or listed.
+     */
+    public CoverCache(long memoryBudget, Path directory, long diskBudget, Duration maxAge) {
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+        this.diskBudget = diskBudget;
+        this.maxAge = maxAge;
+        for (int i = 0; i < fileLocks.length; i++) {
+            fileLocks[i] = new Object();
+        }
+        try {
+            Files.createDirectories(directory);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.img")) {
+                stream.forEach(files::add);
+            }
+            List<BasicFileAttributes> attributes = new ArrayList<>();
+            for (Path file : files) {
+                attributes.add(Files.readAttributes(file, BasicFileAttributes.class));
+            }
+            Integer[] order = new Integer[files.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(i -> attributes.get(i).lastModifiedTime()));
+            for (int i : order) {
+                String name = files.get(i).getFileName().toString();
+                diskSizes.put(name.substring(0, name.length() - ".img".length()), attributes.get(i).size());
+                diskBytes += attributes.get(i).size();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Retrieves a decoded cover from the memory tier.
+     *
+     * @param isbn the ISBN of the book.
+     * @return the cover, or {@code null} if it is not in memory.
+     */
+    public BufferedImage getImage(String isbn) {
+        synchronized (memory) {
+            BufferedImage image = memory.get(isbn);
+            if (image != null) {
+                memoryHits++;
+            } else {
+                memoryMisses++;
+            }
+            return image;
+        }
+    }
+
+    /**
+     * Adds a decoded cover to the memory tier, evicting the least recently used covers if needed.
+     * An image larger than the whole budget is not cached.
+     *
+     * @param isbn the ISBN of the book.
+     * @param image the decoded cover.
+     */
+    public void putImage(String isbn, BufferedImage image) {
+        long bytes = sizeOf(image);
+        if (bytes > memoryBudget) {
+            return;
+        }
+        synchronized (memory) {
+            BufferedImage old = memory.put(isbn, image);
+            if (old != null) {
+                memoryBytes -= sizeOf(old);
+            }
+            memoryBytes += bytes;
+            Iterator<BufferedImage> eldest = memory.values().iterator();
+            while (memoryBytes > memoryBudget) {
+                memoryBytes -= sizeOf(eldest.next());
+                eldest.remove();
+                memoryEvictions++;
+            }
+        }
+    }
+
+    /**
+     * Retrieves raw cover bytes from the disk tier.
+     *
+     * @param isbn the ISBN of the book.
+     * @return the entry, or {@code null} if there is none or it cannot be read.
+     */
+    public DiskEntry getBytes(String isbn) {
+        String key = fileKey(isbn);
+        synchronized (diskSizes) {
+            if (!diskSizes.containsKey(key)) {
+                diskMisses++;
+                return null;
+            }
+        }
+        Path file = directory.resolve(key + ".img");
+        synchronized (fileLock(key)) {
+            DiskEntry entry;
+            try {
+                boolean stale = Files.getLastModifiedTime(file).toInstant()
+                        .plus(maxAge).isBefore(Instant.now());
+                entry = new DiskEntry(Files.readAllBytes(file), stale);
+            } catch (IOException e) {
+                entry = null;
+            }
+            synchronized (diskSizes) {
+                if (entry == null) {
+                    Long size = diskSizes.remove(key);
+                    if (size != null) {
+                        diskBytes -= size;
+                    }
+                    diskMisses++;
+                } else if (entry.stale()) {
+                    diskMisses++;
+                } else {
+                    diskHits++;
+                }
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Stores raw cover bytes in the disk tier, evicting the oldest files if needed. Write errors are ignored, since
+     * the cover can always be fetched again.
+     *
+     * @param isbn the ISBN of the book.
+     * @param bytes the encoded image, or an empty array to record that the book has no cover.
+     */
+    public void putBytes(String isbn, byte[] bytes) {
+        String key = fileKey(isbn);
+        Path file = directory.resolve(key + ".img");
+        Path temp = directory.resolve(key + ".tmp");
+        List<String> evicted = new ArrayList<>();
+        synchronized (fileLock(key)) {
+            try {
+                Files.write(temp, bytes);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                return;
+            }
+            synchronized (diskSizes) {
+                Long old = diskSizes.remove(key);
+                if (old != null) {
+                    diskBytes -= old;
+                }
+                diskSizes.put(key, (long) bytes.length);
+                diskBytes += bytes.length;
+                Iterator<Map.Entry<String, Long>> eldest = diskSizes.entrySet().iterator();
+                while (diskBytes > diskBudget && eldest.hasNext()) {
+                    Map.Entry<String, Long> entry = eldest.next();
+                    evicted.add(entry.getKey());
+                    diskBytes -= entry.getValue();
+                    eldest.remove();
+                    diskEvictions++;
+                }
+            }
+        }
+        for (String victim : evicted) {
+            delete(victim);
+        }
+    }
+
+    /**
+     * Deletes the file of an entry already dropped from the index, unless it has been stored again meanwhile. A file
+     * that cannot be deleted is indexed again when the cache is next opened.
+     */
+    private void delete(String key) {
+        synchronized (fileLock(key)) {
+            synchronized (diskSizes) {
+                if (diskSizes.containsKey(key)) {
+                    return;
+                }
+            }
+            try {
+                Files.deleteIfExists(directory.resolve(key + ".img"));
+            } catch (IOException e) {
+                // Left for the next start-up to find.
+            }
+        }
+    }
+
+    /**
+     * Retrieves the current hit, miss and eviction counters.
+     *
+     * @return a snapshot of the counters.
+     */
+    public Stats stats() {
+        synchronized (memory) {
+            synchronized (diskSizes) {
+                return new Stats(memoryHits, memoryMisses, memoryEvictions, diskHits, diskMisses, diskEvictions);
+            }
+        }
+    }
+
+    /**
+     * Estimates the heap held by a decoded image's pixel data.
+     */
+    static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    /**
+     * Maps an ISBN to a safe file name: the hex digits of its UTF-8 bytes, so distinct ISBNs never share a file.
+     */
+    static String fileKey(String isbn) {
+        return HexFormat.of().formatHex(isbn.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Object fileLock(String key) {
+        return fileLocks[Math.floorMod(key.hashCode(), fileLocks.length)];
+    }
+}
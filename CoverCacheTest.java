@@ -0,0 +1,109 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+public class CoverCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private Path file(String isbn) {
+        return directory.resolve(CoverCache.fileKey(isbn) + ".img");
+    }
+
+    private static BufferedImage image(int width) {
+        return new BufferedImage(width, 1, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Test
+    public void testMemoryEvictsLeastRecentlyUsed() {
+        // Each 10x1 image counts as 40 bytes, so three fit.
+        CoverCache cache = new CoverCache(120, directory, 1 << 20, Duration.ofDays(1));
+        cache.putImage("a", image(10));
+        cache.putImage("b", image(10));
+        cache.putImage("c", image(10));
+        assertNotNull(cache.getImage("a"));
+        cache.putImage("d", image(10));
+        assertNull(cache.getImage("b"));
+        assertNotNull(cache.getImage("a"));
+        assertNotNull(cache.getImage("c"));
+        assertNotNull(cache.getImage("d"));
+
+        cache.putImage("huge", image(100));
+        assertNull(cache.getImage("huge"));
+        assertEquals(new CoverCache.Stats(4, 2, 1, 0, 0, 0), cache.stats());
+    }
+
+    @Test
+    public void testDiskEvictsOldestAndSurvivesReopen() throws Exception {
+        CoverCache cache = new CoverCache(1 << 20, directory, 10, Duration.ofDays(1));
+        cache.putBytes("1", new byte[]{1, 2, 3, 4});
+        Files.setLastModifiedTime(file("1"), FileTime.fromMillis(1000));
+        cache.putBytes("2", new byte[]{5, 6, 7, 8});
+        Files.setLastModifiedTime(file("2"), FileTime.fromMillis(2000));
+
+        // Reopening orders the existing files by modification time, oldest first.
+        cache = new CoverCache(1 << 20, directory, 10, Duration.ofDays(100000));
+        cache.putBytes("3", new byte[]{9, 10, 11, 12});
+        assertNull(cache.getBytes("1"));
+        assertArrayEquals(new byte[]{5, 6, 7, 8}, cache.getBytes("2").bytes());
+        assertArrayEquals(new byte[]{9, 10, 11, 12}, cache.getBytes("3").bytes());
+        assertFalse(Files.exists(file("1")));
+        assertEquals(new CoverCache.Stats(0, 0, 0, 2, 1, 1), cache.stats());
+    }
+
+    @Test
+    public void testStaleAndNegativeEntries() throws Exception {
+        CoverCache cache = new CoverCache(1 << 20, directory, 1 << 20, Duration.ofDays(30));
+        cache.putBytes("old", new byte[]{1});
+        Files.setLastModifiedTime(file("old"), FileTime.fromMillis(0));
+        cache.putBytes("none", new byte[0]);
+
+        CoverCache.DiskEntry old = cache.getBytes("old");
+        assertTrue(old.stale());
+        assertArrayEquals(new byte[]{1}, old.bytes());
+        CoverCache.DiskEntry none = cache.getBytes("none");
+        assertFalse(none.stale());
+        assertEquals(0, none.bytes().length);
+        assertEquals(1, cache.stats().diskHits());
+        assertEquals(1, cache.stats().diskMisses());
+    }
+
+    @Test
+    public void testFileKeysNeverCollide() {
+        CoverCache cache = new CoverCache(1 << 20, directory, 1 << 20, Duration.ofDays(1));
+        cache.putBytes("0-1", new byte[]{1});
+        cache.putBytes("0_1", new byte[]{2});
+        cache.putBytes("0\u00e91", new byte[]{3});
+        assertArrayEquals(new byte[]{1}, cache.getBytes("0-1").bytes());
+        assertArrayEquals(new byte[]{2}, cache.getBytes("0_1").bytes());
+        assertArrayEquals(new byte[]{3}, cache.getBytes("0\u00e91").bytes());
+        assertEquals("302d31", CoverCache.fileKey("0-1"));
+    }
+
+    @Test
+    public void testDiskWritesAlongsideMemoryLookups() throws Exception {
+        CoverCache cache = new CoverCache(1 << 20, directory, 1 << 20, Duration.ofDays(1));
+        cache.putImage("a", image(10));
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                cache.putBytes("isbn" + i % 10, new byte[4096]);
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 10_000; i++) {
+            assertNotNull(cache.getImage("a"));
+        }
+        writer.join();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(4096, cache.getBytes("isbn" + i).bytes().length);
+        }
+        assertEquals(10_000, cache.stats().memoryHits());
+    }
+}
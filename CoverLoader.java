@@ -0,0 +1,277 @@
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches cover images in the background on a fixed-size pool of daemon threads.
+ * Concurrent requests for the same ISBN share one fetch. Failed fetches complete with {@code null}, the same as a
+ * book without a cover, so callers only need to handle the one case.
+ * <p>
+ * Each {@link #load(String)} asks for the cover the user is now looking at and supersedes the requests made before
+ * it. Queued fetches that no request has asked for since are skipped when a thread reaches them, so a user holding
+ * down an arrow key does not leave a fetch per book passed ahead of the cover they stop at.
+ * <p>
+ * Covers go through a {@link CoverCache}: decoded images held in memory are returned at once, covers on disk are
+ * decoded without touching the source, and stale disk entries are refreshed from the source but still used if the
+ * source cannot be reached.
+ * <p>
+ * If a cover size is given, each cover is scaled to it once, right after decoding, into an image compatible with the
+ * screen. The memory tier holds the scaled copy, so painting it is a plain copy instead of a rescale of the full
+ * image on every repaint.
+ */
+public class CoverLoader implements AutoCloseable {
+
+    private static final int MAX_QUEUED_PREFETCHES = 16;
+
+    private final CoverSource source;
+    private final CoverCache cache;
+    private final Dimension coverSize;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, Request> inFlight = new ConcurrentHashMap<>();
+    // Advanced by every load; queued requests from an older generation are skipped.
+    private final AtomicInteger generation = new AtomicInteger();
+    // Null unless metrics are enabled.
+    private final Metrics.Histogram fetchNanos;
+    private final Metrics.Histogram decodeNanos;
+    private final Metrics.Counter fetchFailures;
+    private final Metrics.Counter fetchesSkipped;
+
+    /**
+     * A queued or running fetch, with the generation of the latest request that asked for it. The generation is only
+     * read and written inside {@code inFlight}'s per-key operations, which order those accesses.
+     */
+    private static final class Request {
+        final CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+        int generation;
+    }
+
+    /**
+     * Constructs a loader that fetches from the specified source.
+     *
+     * @param source the source to fetch covers from.
+     * @param cache the cache to consult before the source and to fill after it.
+     * @param threads the maximum number of concurrent fetches.
+     */
+    public CoverLoader(CoverSource source, CoverCache cache, int threads) {
+        this(source, cache, threads, null);
+    }
+
+    /**
+     * Constructs a loader that fetches from the specified source and scales every cover to the specified size.
+     *
+     * @param source the source to fetch covers from.
+     * @param cache the cache to consult before the source and to fill after it.
+     * @param threads the maximum number of concurrent fetches.
+     * @param coverSize the size to scale covers to, or {@code null} to keep them at their original size.
+     */
+    public CoverLoader(CoverSource source, CoverCache cache, int threads, Dimension coverSize) {
+        this.source = source;
+        this.cache = cache;
+        this.coverSize = coverSize;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "cover-loader-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        if (Metrics.ENABLED) {
+            Metrics.Group group = Metrics.group("Covers");
+            fetchNanos = group.histogram("fetch.nanos");
+            decodeNanos = group.histogram("decode.nanos");
+            fetchFailures = group.counter("fetch.failures");
+            fetchesSkipped = group.counter("fetch.skipped");
+            group.gauge("memoryHitRate", () -> {
+                CoverCache.Stats stats = cache.stats();
+                return hitRate(stats.memoryHits(), stats.memoryMisses());
+            });
+            group.gauge("diskHitRate", () -> {
+                CoverCache.Stats stats = cache.stats();
+                return hitRate(stats.diskHits(), stats.diskMisses());
+            });
+            group.gauge("memoryEvictions", () -> cache.stats().memoryEvictions());
+            group.gauge("diskEvictions", () -> cache.stats().diskEvictions());
+            group.gauge("queued", () -> executor.getQueue().size());
+        } else {
+            fetchNanos = null;
+            decodeNanos = null;
+            fetchFailures = null;
+            fetchesSkipped = null;
+        }
+    }
+
+    private static double hitRate(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * Starts fetching the cover the user is now looking at, or joins a fetch already queued or in progress.
+     * Fetches queued for earlier covers are skipped unless asked for again.
+     *
+     * @param isbn the ISBN of the book.
+     * @return a future completed with the cover, or with {@code null} if there is none, it could not be fetched, or
+     *         its fetch was skipped because a later cover was loaded first.
+     */
+    public CompletableFuture<BufferedImage> load(String isbn) {
+        return request(isbn, generation.incrementAndGet());
+    }
+
+    private CompletableFuture<BufferedImage> request(String isbn, int wanted) {
+        BufferedImage cached = cache.getImage(isbn);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        boolean[] created = new boolean[1];
+        Request request = inFlight.compute(isbn, (key, pending) -> {
+            if (pending == null) {
+                pending = new Request();
+                created[0] = true;
+            }
+            pending.generation = wanted;
+            return pending;
+        });
+        if (created[0]) {
+            executor.execute(() -> run(isbn, request));
+        }
+        return request.future;
+    }
+
+    private void run(String isbn, Request request) {
+        // Dropped from inFlight in the same step as the check, so no later request can join a skipped fetch.
+        Request current = inFlight.computeIfPresent(isbn,
+                (key, pending) -> pending == request && pending.generation != generation.get() ? null : pending);
+        if (current != request) {
+            if (Metrics.ENABLED) {
+                fetchesSkipped.increment();
+            }
+            request.future.complete(null);
+            return;
+        }
+        try {
+            request.future.complete(fetch(isbn));
+        } catch (IOException | UncheckedIOException e) {
+            request.future.complete(null);
+        } catch (RuntimeException e) {
+            request.future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(isbn, request);
+        }
+    }
+
+    /**
+     * Retrieves a cover from the disk cache or the source and decodes it, filling both cache tiers on the way.
+     */
+    private BufferedImage fetch(String isbn) throws IOException {
+        CoverCache.DiskEntry stored = cache.getBytes(isbn);
+        byte[] bytes;
+        if (stored != null && !stored.stale()) {
+            bytes = stored.bytes();
+        } else {
+            long start = Metrics.ENABLED ? System.nanoTime() : 0;
+            try {
+                bytes = source.fetch(isbn);
+                if (Metrics.ENABLED) {
+                    fetchNanos.record(System.nanoTime() - start);
+                }
+                cache.putBytes(isbn, bytes != null ? bytes : new byte[0]);
+            } catch (IOException | UncheckedIOException e) {
+                if (Metrics.ENABLED) {
+                    fetchFailures.increment();
+                }
+                // Offline: an old cover is better than none.
+                if (stored == null) {
+                    throw e;
+                }
+                bytes = stored.bytes();
+            }
+        }
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            return null;
+        }
+        if (coverSize != null) {
+            image = scale(image, coverSize.width, coverSize.height);
+        }
+        if (Metrics.ENABLED) {
+            decodeNanos.record(System.nanoTime() - start);
+        }
+        cache.putImage(isbn, image);
+        return image;
+    }
+
+    /**
+     * Scales an image with bilinear interpolation into a new opaque image of the specified size. The new image uses
+     * the screen's pixel layout when there is a screen, so drawing it needs no conversion either.
+     */
+    static BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage scaled = GraphicsEnvironment.isHeadless()
+                ? new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                        .getDefaultConfiguration().createCompatibleImage(width, height, Transparency.OPAQUE);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Starts fetching the covers of books the user is likely to view next, without waiting for them. They belong
+     * to the latest {@link #load(String)}, and are skipped like it once another cover is loaded.
+     * Prefetching stops once enough fetches are queued, so rapid browsing cannot build an unbounded backlog; the
+     * covers that matter are requested again when the user gets there.
+     *
+     * @param isbns the ISBNs to fetch, most wanted first.
+     */
+    public void prefetch(List<String> isbns) {
+        int current = generation.get();
+        for (String isbn : isbns) {
+            if (executor.getQueue().size() >= MAX_QUEUED_PREFETCHES) {
+                return;
+            }
+            request(isbn, current);
+        }
+    }
+
+    /**
+     * Stops the loader threads. Fetches already queued are abandoned.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Waits for the loader threads to stop after {@link #close()}, so that no fetch is still writing to the cache.
+     *
+     * @param timeout the longest time to wait.
+     * @param unit the unit of the timeout.
+     * @return {@code true} if the threads stopped; {@code false} if the timeout passed first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
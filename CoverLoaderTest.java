@@ -0,0 +1,272 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CoverLoaderTest {
+    private final Map<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private CoverLoader loader;
+
+    @TempDir
+    Path cacheDirectory;
+
+    /**
+     * A local stand-in for the network: returns a small PNG per ISBN, optionally waiting on a gate first.
+     */
+    private final CoverSource fakeSource = isbn -> {
+        fetches.incrementAndGet();
+        CountDownLatch gate = gates.get(isbn);
+        if (gate != null) {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+        if (isbn.startsWith("missing")) {
+            return null;
+        }
+        if (isbn.startsWith("broken")) {
+            throw new IOException("connection reset");
+        }
+        return encode(new BufferedImage(isbn.length(), 1, BufferedImage.TYPE_INT_RGB));
+    };
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private CoverCache newCache() {
+        return new CoverCache(1 << 20, cacheDirectory, 1 << 20, Duration.ofDays(1));
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        loader.close();
+        // A prefetch may still be writing to the cache directory, which is deleted after each test.
+        assertTrue(loader.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLoadAndFailuresCompleteWithNull() throws Exception {
+        loader = new CoverLoader(fakeSource, newCache(), 2);
+        assertEquals(4, loader.load("1234").get(5, TimeUnit.SECONDS).getWidth());
+        assertNull(loader.load("missing").get(5, TimeUnit.SECONDS));
+        assertNull(loader.load("broken").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneFetch() throws Exception {
+        loader = new CoverLoader(fakeSource, newCache(), 2);
+        CountDownLatch gate = new CountDownLatch(1);
+        gates.put("slow", gate);
+        var first = loader.load("slow");
+        var second = loader.load("slow");
+        assertSame(first, second);
+        gate.countDown();
+        assertNotNull(first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void testPrefetchFetchesInBackground() throws Exception {
+        loader = new CoverLoader(fakeSource, newCache(), 2);
+        loader.prefetch(List.of("a", "bb", "ccc"));
+        assertEquals(3, loader.load("ccc").get(5, TimeUnit.SECONDS).getWidth());
+    }
+
+    @Test
+    public void testFetchesPassedOverAreSkipped() throws Exception {
+        loader = new CoverLoader(fakeSource, newCache(), 1);
+        CountDownLatch gate = new CountDownLatch(1);
+        gates.put("slow", gate);
+        var slow = loader.load("slow");
+        // Wait until the only thread is busy, so every later request queues behind it.
+        while (fetches.get() == 0) {
+            Thread.sleep(1);
+        }
+        // Browsing past two books, prefetching around each; "dd" is near both and stays wanted.
+        var passed = loader.load("a");
+        loader.prefetch(List.of("dd", "eee"));
+        var passedAgain = loader.load("bb");
+        loader.prefetch(List.of("dd"));
+        var current = loader.load("ccc");
+        loader.prefetch(List.of("dd"));
+        gate.countDown();
+
+        assertNotNull(slow.get(5, TimeUnit.SECONDS));
+        assertEquals(3, current.get(5, TimeUnit.SECONDS).getWidth());
+        assertNull(passed.get(5, TimeUnit.SECONDS));
+        assertNull(passedAgain.get(5, TimeUnit.SECONDS));
+        // Only the cover in progress, the one shown and its neighbour reached the source.
+        assertEquals(2, loader.load("dd").get(5, TimeUnit.SECONDS).getWidth());
+        assertEquals(3, fetches.get());
+        // A skipped cover is fetched if asked for again.
+        assertEquals(1, loader.load("a").get(5, TimeUnit.SECONDS).getWidth());
+    }
+
+    @Test
+    public void testCoverPanelDropsStaleResults() throws Exception {
+        loader = new CoverLoader(fakeSource, newCache(), 2);
+        CountDownLatch gate = new CountDownLatch(1);
+        gates.put("old", gate);
+        BookBrowser.CoverPanel panel = new BookBrowser.CoverPanel(loader);
+        SwingUtilities.invokeAndWait(() -> {
+            panel.loadCoverImage("old");
+            panel.loadCoverImage("newer");
+        });
+        loader.load("newer").get(5, TimeUnit.SECONDS);
+        gate.countDown();
+        loader.load("old").get(5, TimeUnit.SECONDS);
+        // Let the completion callbacks queued on the event dispatch thread run.
+        SwingUtilities.invokeAndWait(() -> { });
+        SwingUtilities.invokeAndWait(() -> assertEquals(5, panel.getCoverImage().getWidth(null)));
+    }
+
+    @Test
+    public void testCachedCoversSkipTheSource() throws Exception {
+        loader = new CoverLoader(fakeSource, newCache(), 2);
+        BufferedImage first = loader.load("1234").get(5, TimeUnit.SECONDS);
+        assertSame(first, loader.load("1234").get(5, TimeUnit.SECONDS));
+        assertNull(loader.load("missing").get(5, TimeUnit.SECONDS));
+        assertEquals(2, fetches.get());
+        loader.close();
+
+        // A later launch finds both covers on disk, including the knowledge that one does not exist.
+        loader = new CoverLoader(fakeSource, newCache(), 2);
+        assertEquals(4, loader.load("1234").get(5, TimeUnit.SECONDS).getWidth());
+        assertNull(loader.load("missing").get(5, TimeUnit.SECONDS));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void testStaleCoverUsedWhenSourceFails() throws Exception {
+        CoverCache cache = newCache();
+        cache.putBytes("broken", encode(new BufferedImage(7, 1, BufferedImage.TYPE_INT_RGB)));
+        Files.setLastModifiedTime(cacheDirectory.resolve(CoverCache.fileKey("broken") + ".img"), FileTime.fromMillis(0));
+        loader = new CoverLoader(fakeSource, newCache(), 2);
+        assertEquals(7, loader.load("broken").get(5, TimeUnit.SECONDS).getWidth());
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void testCoversScaledOnceAndDrawnUnscaled() throws Exception {
+        loader = new CoverLoader(fakeSource, newCache(), 2, new Dimension(30, 40));
+        BufferedImage cover = loader.load("1234").get(5, TimeUnit.SECONDS);
+        assertEquals(30, cover.getWidth());
+        assertEquals(40, cover.getHeight());
+        assertSame(cover, loader.load("1234").get(5, TimeUnit.SECONDS));
+
+        BookBrowser.CoverPanel panel = new BookBrowser.CoverPanel(loader);
+        panel.setSize(30, 40);
+        SwingUtilities.invokeAndWait(() -> panel.loadCoverImage("1234"));
+        SwingUtilities.invokeAndWait(() -> { });
+        BufferedImage screen = new BufferedImage(30, 40, BufferedImage.TYPE_INT_RGB);
+        SwingUtilities.invokeAndWait(() -> {
+            Graphics2D g = screen.createGraphics();
+            panel.paint(g);
+            g.dispose();
+            assertSame(cover, panel.getCoverImage());
+            assertTrue(panel.averagePaintMicros() > 0);
+        });
+    }
+
+    @Test
+    public void testShownCoverMatchesPanelBoundsAfterLayout() throws Exception {
+        Dimension coverSize = new Dimension(30, 40);
+        loader = new CoverLoader(fakeSource, newCache(), 2, coverSize);
+        BufferedImage cover = loader.load("1234").get(5, TimeUnit.SECONDS);
+
+        // Laid out like the browser's cover panel: not stretched, so the pre-scaled cover is drawn as it is.
+        BookBrowser.CoverPanel fixed = layOut(coverSize, GridBagConstraints.NONE);
+        assertEquals(new Dimension(30, 40), fixed.getSize());
+        show(fixed);
+        BufferedImage shown = paint(fixed);
+        assertSame(cover, shown);
+
+        // Stretched by its layout: scaled to the panel once, then drawn without scaling.
+        BookBrowser.CoverPanel stretched = layOut(coverSize, GridBagConstraints.BOTH);
+        assertNotEquals(coverSize, stretched.getSize());
+        show(stretched);
+        shown = paint(stretched);
+        assertEquals(stretched.getWidth(), shown.getWidth());
+        assertEquals(stretched.getHeight(), shown.getHeight());
+        assertSame(shown, paint(stretched));
+
+        stretched.setSize(50, 60);
+        shown = paint(stretched);
+        assertEquals(50, shown.getWidth());
+        assertEquals(60, shown.getHeight());
+    }
+
+    /**
+     * Places a cover panel next to a taller component in a grid bag layout, as the browser does, and lays it out.
+     */
+    private BookBrowser.CoverPanel layOut(Dimension coverSize, int fill) {
+        BookBrowser.CoverPanel panel = new BookBrowser.CoverPanel(loader);
+        panel.setPreferredSize(coverSize);
+        panel.setMinimumSize(coverSize);
+        JPanel container = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.weightx = 1;
+        gbc.weighty = 1;
+        gbc.fill = GridBagConstraints.BOTH;
+        JPanel table = new JPanel();
+        table.setPreferredSize(new Dimension(80, 70));
+        container.add(table, gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 0;
+        gbc.fill = fill;
+        gbc.anchor = GridBagConstraints.NORTH;
+        container.add(panel, gbc);
+        container.setSize(150, 70);
+        container.doLayout();
+        return panel;
+    }
+
+    private static void show(BookBrowser.CoverPanel panel) throws Exception {
+        SwingUtilities.invokeAndWait(() -> panel.loadCoverImage("1234"));
+        SwingUtilities.invokeAndWait(() -> { });
+    }
+
+    /**
+     * Paints a panel and retrieves the image it drew.
+     */
+    private static BufferedImage paint(BookBrowser.CoverPanel panel) throws Exception {
+        AtomicReference<BufferedImage> shown = new AtomicReference<>();
+        SwingUtilities.invokeAndWait(() -> {
+            BufferedImage screen = new BufferedImage(panel.getWidth(), panel.getHeight(),
+                    BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = screen.createGraphics();
+            panel.paint(g);
+            g.dispose();
+            shown.set((BufferedImage) panel.getShownImage());
+        });
+        return shown.get();
+    }
+}
@@ -0,0 +1,60 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLConnection;
+import java.time.Duration;
+
+/**
+ * A source of book cover images, keyed by ISBN.
+ * Covers are returned still encoded, exactly as fetched, so they can be cached on disk without re-encoding.
+ * Implementations may block; callers are expected to invoke them off the Swing event dispatch thread.
+ */
+public interface CoverSource {
+
+    /**
+     * Retrieves the encoded cover of the specified book.
+     *
+     * @param isbn the ISBN of the book.
+     * @return the cover in an image format {@link javax.imageio.ImageIO} can read, or {@code null} if the book has
+     *         no cover.
+     * @throws IOException if the cover could not be retrieved.
+     */
+    byte[] fetch(String isbn) throws IOException;
+
+    /**
+     * Retrieves a source that downloads large covers from the Open Library covers API. Connections that stay silent
+     * for ten seconds are given up on, so a server that stops answering cannot hold the cover threads.
+     *
+     * @return the Open Library cover source.
+     */
+    static CoverSource openLibrary() {
+        // Without default=false, missing covers come back as a blank placeholder instead of a 404.
+        return http("https://covers.openlibrary.org/b/isbn/%s-L.jpg?default=false", Duration.ofSeconds(10));
+    }
+
+    /**
+     * Retrieves a source that downloads covers over HTTP. A book without a cover is expected to answer 404.
+     *
+     * @param urlFormat the URL of a cover, with {@code %s} in place of the ISBN.
+     * @param timeout how long to wait to connect, and then for each read, before the fetch fails.
+     * @return the cover source.
+     * @throws IllegalArgumentException if the URL format or timeout is {@code null}, or the timeout is not positive.
+     */
+    static CoverSource http(String urlFormat, Duration timeout) {
+        if (urlFormat == null || timeout == null || timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("URL format and a positive timeout are required.");
+        }
+        int timeoutMillis = (int) Math.min(Integer.MAX_VALUE, timeout.toMillis());
+        return isbn -> {
+            URLConnection connection = URI.create(String.format(urlFormat, isbn)).toURL().openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            try (InputStream in = connection.getInputStream()) {
+                return in.readAllBytes();
+            } catch (FileNotFoundException e) {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+public class CoverSourceTest {
+
+    @Test
+    public void testFetchesCoversAndMissingCovers() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            boolean found = exchange.getRequestURI().getPath().equals("/covers/1234.jpg");
+            byte[] body = found ? new byte[]{1, 2, 3} : new byte[0];
+            exchange.sendResponseHeaders(found ? 200 : 404, found ? body.length : -1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            CoverSource source = CoverSource.http("http://localhost:" + server.getAddress().getPort()
+                    + "/covers/%s.jpg", Duration.ofSeconds(5));
+            assertArrayEquals(new byte[]{1, 2, 3}, source.fetch("1234"));
+            assertNull(source.fetch("5678"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testSilentServerTimesOut() throws IOException {
+        // Accepts connections but never answers, like a hung server.
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        Thread.sleep(10_000);
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // Closed by the test.
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+            CoverSource source = CoverSource.http("http://localhost:" + server.getLocalPort() + "/%s.jpg",
+                    Duration.ofMillis(200));
+            long start = System.nanoTime();
+            assertThrows(SocketTimeoutException.class, () -> source.fetch("1234"));
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+            acceptor.interrupt();
+        }
+        assertThrows(IllegalArgumentException.class, () -> CoverSource.http("http://localhost/%s", Duration.ZERO));
+    }
+}
@@ -0,0 +1,309 @@
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * A self-balancing (AVL) tree map specialized for {@code double} keys.
+ * Keys are stored in a primitive array and nodes are array slots rather than objects, so the map holds no boxed
+ * keys and no per-node object headers. Keys are ordered as by {@link Double#compare(double, double)}, the same
+ * order {@link Double#compareTo(Double)} gives a {@link TreeMap}. The primitive {@link #get(double)},
+ * {@link #put(double, Object)} and {@link #containsKey(double)} overloads compare keys without unboxing; the boxed
+ * {@link TreeMapInterface} methods delegate to them.
+ *
+ * @param <V> the type of values maintained by this map.
+ */
+public class DoubleTreeMap<V> extends ArrayTreeMap<V> implements WeightedTreeMap<Double, V> {
+
+    private double[] keys = new double[0];
+
+    /**
+     * Constructs an empty DoubleTreeMap.
+     */
+    public DoubleTreeMap() {
+    }
+
+    @Override
+    void resizeKeys(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+    }
+
+    @Override
+    void moveKey(int from, int to) {
+        keys[to] = keys[from];
+    }
+
+    /**
+     * Retrieves the value corresponding to the specified key.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the key is not found.
+     */
+    public V get(double key) {
+        int node = getNode(key);
+        return node != NIL ? value(node) : null;
+    }
+
+    /**
+     * Retrieves the value corresponding to the specified key.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the key is not found.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    public V get(Double key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        return get(key.doubleValue());
+    }
+
+    private int getNode(double key) {
+        int node = root;
+        while (node != NIL) {
+            int cmp = Double.compare(key, keys[node]);
+            if (cmp < 0) {
+                node = left[node];
+            } else if (cmp > 0) {
+                node = right[node];
+            } else {
+                return node;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Adds a key/value pair to the tree map.
+     *
+     * @param key the key in the key/value pair; used to organize the tree.
+     * @param value the value in the key/value pair; this data is looked up through key-based searches.
+     */
+    public void put(double key, V value) {
+        int node = root;
+        int parentNode = NIL;
+        boolean goLeft = false;
+        while (node != NIL) {
+            parentNode = node;
+            int cmp = Double.compare(key, keys[node]);
+            if (cmp < 0) {
+                goLeft = true;
+                node = left[node];
+            } else if (cmp > 0) {
+                goLeft = false;
+                node = right[node];
+            } else {
+                replaceValue(node, value);
+                return;
+            }
+        }
+        int added = addNode(parentNode, goLeft, value);
+        keys[added] = key;
+        retrace(parentNode);
+    }
+
+    /**
+     * Adds a key/value pair to the tree map.
+     *
+     * @param key the key in the key/value pair; used to organize the tree.
+     * @param value the value in the key/value pair; this data is looked up through key-based searches.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    public void put(Double key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        put(key.doubleValue(), value);
+    }
+
+    /**
+     * Removes the key/value pair with the specified key from the tree map, if it is present.
+     *
+     * @param key the key of the pair to remove.
+     * @return the value that was associated with the key, or {@code null} if the key was not found.
+     */
+    public V remove(double key) {
+        int node = getNode(key);
+        return node != NIL ? removeNode(node) : null;
+    }
+
+    /**
+     * Removes the key/value pair with the specified key from the tree map, if it is present.
+     *
+     * @param key the key of the pair to remove.
+     * @return the value that was associated with the key, or {@code null} if the key was not found.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    public V remove(Double key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        return remove(key.doubleValue());
+    }
+
+    /**
+     * Checks if the tree contains the specified key.
+     *
+     * @param key the key to search for.
+     * @return {@code true} if the key is in the tree map; {@code false} otherwise.
+     */
+    public boolean containsKey(double key) {
+        return getNode(key) != NIL;
+    }
+
+    /**
+     * Checks if the tree contains the specified key.
+     *
+     * @param key the key to search for.
+     * @return {@code true} if the key is in the tree map; {@code false} otherwise.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    public boolean containsKey(Double key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        return containsKey(key.doubleValue());
+    }
+
+    /**
+     * Retrieves an array of key data from the map, in order. Keys are boxed as they are copied out.
+     *
+     * @param array the array to fill in. If smaller than the map's size, a new array will be created. If larger than the
+     *              map's size, data will be filled in from index 0, with a {@code null} reference just after the copied-in data.
+     *              This parameter must not be {@code null}.
+     * @return a reference to the filled-in array; may be a different array than the one passed in.
+     * @throws IllegalArgumentException if the array is {@code null}.
+     */
+    @Override
+    public Double[] toKeyArray(Double[] array) {
+        if (array == null) {
+            throw new IllegalArgumentException("Array cannot be null.");
+        }
+        if (array.length < size) {
+            array = new Double[size];
+        }
+        int index = 0;
+        for (int node = first(); node != NIL; node = successor(node)) {
+            array[index++] = keys[node];
+        }
+        if (array.length > size) {
+            array[size] = null;
+        }
+        return array;
+    }
+
+    /**
+     * Retrieves the keys of the map, in order, without boxing them.
+     *
+     * @return a new array holding every key.
+     */
+    public double[] toDoubleArray() {
+        double[] array = new double[size];
+        int index = 0;
+        for (int node = first(); node != NIL; node = successor(node)) {
+            array[index++] = keys[node];
+        }
+        return array;
+    }
+
+    /**
+     * Performs an action for each key/value pair in the map, in key order. Keys are boxed as they are passed on.
+     *
+     * @param action the action to perform on each key and its value.
+     * @throws IllegalArgumentException if the action is {@code null}.
+     */
+    @Override
+    public void forEach(BiConsumer<? super Double, ? super V> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null.");
+        }
+        for (int node = first(); node != NIL; node = successor(node)) {
+            action.accept(keys[node], value(node));
+        }
+    }
+
+    /**
+     * Brings the subtree totals up to date after the weight of a key's value changed in place. Costs O(log n).
+     *
+     * @param key the key whose value changed; nothing happens if it is not in the map.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    public void reweigh(double key) {
+        checkWeighed();
+        reweighPath(getNode(key));
+    }
+
+    /**
+     * Brings the subtree totals up to date after the weight of a key's value changed in place. Costs O(log n).
+     *
+     * @param key the key whose value changed; nothing happens if it is not in the map.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    @Override
+    public void reweigh(Double key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        reweigh(key.doubleValue());
+    }
+
+    /**
+     * Retrieves the key whose value covers the specified position when every value is repeated as many times as it
+     * weighs, in key order.
+     *
+     * @param position the zero-based position.
+     * @return the key covering the position.
+     * @throws IndexOutOfBoundsException if the position is negative or not less than {@link #totalWeight()}.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    @Override
+    public Double selectWeighted(int position) {
+        return keys[selectWeightedNode(position)];
+    }
+
+    /**
+     * Retrieves the total weight of the values whose keys are strictly less than the specified key: the first
+     * position the key would cover.
+     *
+     * @param key the key to look up; need not be present.
+     * @return the weight of the smaller keys.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    public int weightBefore(double key) {
+        checkWeighed();
+        int before = 0;
+        int node = root;
+        while (node != NIL) {
+            int cmp = Double.compare(key, keys[node]);
+            if (cmp < 0) {
+                node = left[node];
+            } else if (cmp > 0) {
+                before += total[node] - total(right[node]);
+                node = right[node];
+            } else {
+                return before + total(left[node]);
+            }
+        }
+        return before;
+    }
+
+    /**
+     * Retrieves the total weight of the values whose keys are strictly less than the specified key: the first
+     * position the key would cover.
+     *
+     * @param key the key to look up; need not be present.
+     * @return the weight of the smaller keys.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    @Override
+    public int weightBefore(Double key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        return weightBefore(key.doubleValue());
+    }
+}
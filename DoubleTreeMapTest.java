@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+public class DoubleTreeMapTest {
+    private DoubleTreeMap<String> treeMap;
+
+    @BeforeEach
+    public void setUp() {
+        treeMap = new DoubleTreeMap<>();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        treeMap.put(4.34, "a");
+        treeMap.put(4.44, "b");
+        assertEquals(2, treeMap.size());
+        assertEquals("a", treeMap.get(4.34));
+        assertEquals("b", treeMap.get(Double.valueOf(4.44)));
+        assertNull(treeMap.get(4.0));
+        assertTrue(treeMap.containsKey(4.44));
+    }
+
+    @Test
+    public void testOrderMatchesDoubleCompareTo() {
+        double[] keys = {0.0, -0.0, Double.NaN, -1.5, Double.POSITIVE_INFINITY, 2.25};
+        java.util.TreeMap<Double, String> expected = new java.util.TreeMap<>();
+        for (double key : keys) {
+            treeMap.put(key, String.valueOf(key));
+            expected.put(key, String.valueOf(key));
+        }
+        assertArrayEquals(expected.keySet().toArray(new Double[0]), treeMap.toKeyArray(new Double[0]));
+        assertEquals("NaN", treeMap.get(Double.NaN));
+    }
+
+    @Test
+    public void testRandomInsertsMatchJavaTreeMap() {
+        java.util.TreeMap<Double, String> expected = new java.util.TreeMap<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 20_000; i++) {
+            double key = random.nextInt(500) / 100.0;
+            treeMap.put(key, "v" + i);
+            expected.put(key, "v" + i);
+        }
+        assertEquals(expected.size(), treeMap.size());
+        assertArrayEquals(expected.values().toArray(new String[0]), treeMap.toValueArray(new String[0]));
+        double[] keys = treeMap.toDoubleArray();
+        for (int i = 1; i < keys.length; i++) {
+            assertTrue(keys[i - 1] < keys[i]);
+        }
+    }
+
+    @Test
+    public void testRemoveMatchesJavaTreeMap() {
+        java.util.TreeMap<Double, String> expected = new java.util.TreeMap<>();
+        Random random = new Random(17);
+        for (int i = 0; i < 20_000; i++) {
+            double key = random.nextInt(500) / 100.0;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), treeMap.remove(key));
+            } else {
+                treeMap.put(key, "v" + i);
+                expected.put(key, "v" + i);
+            }
+        }
+        assertEquals(expected.size(), treeMap.size());
+        assertArrayEquals(expected.keySet().toArray(new Double[0]), treeMap.toKeyArray(new Double[0]));
+        assertArrayEquals(expected.values().toArray(new String[0]), treeMap.toValueArray(new String[0]));
+    }
+
+    @Test
+    public void testWeightedPositionsMatchNaiveSums() {
+        DoubleTreeMap<StringBuilder> weighted = new DoubleTreeMap<>();
+        java.util.TreeMap<Integer, StringBuilder> expected = new java.util.TreeMap<>();
+        assertThrows(IllegalStateException.class, weighted::totalWeight);
+        weighted.put(0.0, new StringBuilder("ab"));
+        expected.put(0, weighted.get(0.0));
+        weighted.weighBy(StringBuilder::length);
+        Random random = new Random(23);
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(500);
+            int op = random.nextInt(4);
+            if (op == 0) {
+                weighted.remove(key / 10.0);
+                expected.remove(key);
+            } else if (op == 1 && expected.containsKey(key)) {
+                expected.get(key).append("x");
+                weighted.reweigh(key / 10.0);
+            } else {
+                StringBuilder value = new StringBuilder("y".repeat(random.nextInt(4)));
+                weighted.put(key / 10.0, value);
+                expected.put(key, value);
+            }
+        }
+        int position = 0;
+        for (Map.Entry<Integer, StringBuilder> entry : expected.entrySet()) {
+            int key = entry.getKey();
+            assertEquals(position, weighted.weightBefore(key / 10.0));
+            for (int i = 0; i < entry.getValue().length(); i++) {
+                assertEquals(key / 10.0, weighted.selectWeighted(position++));
+            }
+        }
+        assertEquals(position, weighted.totalWeight());
+        assertEquals(position, weighted.weightBefore(100.0));
+        assertThrows(IndexOutOfBoundsException.class, () -> weighted.selectWeighted(weighted.totalWeight()));
+        assertThrows(IndexOutOfBoundsException.class, () -> weighted.selectWeighted(-1));
+    }
+}
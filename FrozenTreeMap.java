@@ -0,0 +1,251 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A read-only, read-optimized map built from an existing sorted map.
+ * Keys and values are stored in contiguous arrays in Eytzinger (breadth-first) order: the root is at index 1 and the
+ * children of index {@code k} are at {@code 2k} and {@code 2k + 1}. A lookup walks the arrays with index arithmetic
+ * instead of following node references, and the top levels of every search share the same few cache lines.
+ * All mutating operations throw {@link UnsupportedOperationException}.
+ *
+ * @param <K> the type of keys maintained by this map; must extend {@link Comparable}.
+ * @param <V> the type of values maintained by this map.
+ */
+public class FrozenTreeMap<K extends Comparable<K>, V> implements TreeMapInterface<K, V> {
+
+    private final Object[] keys;
+    private final Object[] values;
+    private final int size;
+
+    /**
+     * Constructs an empty FrozenTreeMap.
+     */
+    public FrozenTreeMap() {
+        this(new Object[0], new Object[0]);
+    }
+
+    private FrozenTreeMap(Object[] sortedKeys, Object[] sortedValues) {
+        size = sortedKeys.length;
+        keys = new Object[size + 1];
+        values = new Object[size + 1];
+        int index = 0;
+        for (int k = first(); k != 0; k = successor(k)) {
+            keys[k] = sortedKeys[index];
+            values[k] = sortedValues[index];
+            index++;
+        }
+    }
+
+    /**
+     * Builds a frozen copy of the specified map, which may be any {@link TreeMapInterface}, including the
+     * primitive-keyed ones. Later changes to the source map are not reflected.
+     *
+     * @param map the map to copy.
+     * @param <K> the type of keys maintained by the map.
+     * @param <V> the type of values maintained by the map.
+     * @return a read-only map holding the same pairs.
+     * @throws IllegalArgumentException if the map is {@code null}.
+     */
+    public static <K extends Comparable<K>, V> FrozenTreeMap<K, V> from(TreeMapInterface<K, V> map) {
+        if (map == null) {
+            throw new IllegalArgumentException("Map cannot be null.");
+        }
+        // Copied through forEach: toKeyArray needs an array of the map's own key type, which is not known here.
+        List<Object> sortedKeys = new ArrayList<>(map.size());
+        List<Object> sortedValues = new ArrayList<>(map.size());
+        map.forEach((key, value) -> {
+            sortedKeys.add(key);
+            sortedValues.add(value);
+        });
+        return new FrozenTreeMap<>(sortedKeys.toArray(), sortedValues.toArray());
+    }
+
+    /**
+     * Retrieves the number of key/value pair elements managed by the map.
+     *
+     * @return the number of elements in the map.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Not supported; the map is read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("FrozenTreeMap is read-only.");
+    }
+
+    /**
+     * Retrieves the value corresponding to the specified key.
+     *
+     * @param key the key whose associated value is to be returned.
+     * @return the value corresponding to the specified key, or {@code null} if the key is not found.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int k = find(key);
+        return k != 0 ? (V) values[k] : null;
+    }
+
+    /**
+     * Not supported; the map is read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void put(K key, V value) {
+        throw new UnsupportedOperationException("FrozenTreeMap is read-only.");
+    }
+
+    /**
+     * Not supported; the map is read-only.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public V remove(K key) {
+        throw new UnsupportedOperationException("FrozenTreeMap is read-only.");
+    }
+
+    /**
+     * Checks if the map contains the specified key.
+     *
+     * @param key the key to search for.
+     * @return {@code true} if the key is in the map; {@code false} otherwise.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    public boolean containsKey(K key) {
+        return find(key) != 0;
+    }
+
+    /**
+     * Retrieves an array of key data from the map, in order.
+     *
+     * @param array the array to fill in. If smaller than the map's size, a new array will be created. If larger than the
+     *              map's size, data will be filled in from index 0, with a {@code null} reference just after the copied-in data.
+     *              This parameter must not be {@code null}.
+     * @return a reference to the filled-in array; may be a different array than the one passed in.
+     * @throws IllegalArgumentException if the array is {@code null}.
+     */
+    @Override
+    public K[] toKeyArray(K[] array) {
+        return fill(keys, array);
+    }
+
+    /**
+     * Retrieves an array of value data from the map, in key order.
+     *
+     * @param array the array to fill in. If smaller than the map's size, a new array will be created. If larger than the
+     *              map's size, data will be filled in from index 0, with a {@code null} reference just after the copied-in data.
+     *              This parameter must not be {@code null}.
+     * @return a reference to the filled-in array; may be a different array than the one passed in.
+     * @throws IllegalArgumentException if the array is {@code null}.
+     */
+    @Override
+    public V[] toValueArray(V[] array) {
+        return fill(values, array);
+    }
+
+    /**
+     * Performs an action for each key/value pair in the map, in key order.
+     *
+     * @param action the action to perform on each key and its value.
+     * @throws IllegalArgumentException if the action is {@code null}.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null.");
+        }
+        for (int k = first(); k != 0; k = successor(k)) {
+            action.accept((K) keys[k], (V) values[k]);
+        }
+    }
+
+    /**
+     * Finds the Eytzinger index of the specified key.
+     *
+     * @return the index of the key, or 0 if it is not present.
+     */
+    @SuppressWarnings("unchecked")
+    private int find(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        int k = 1;
+        while (k <= size) {
+            int cmp = key.compareTo((K) keys[k]);
+            if (cmp == 0) {
+                return k;
+            }
+            k = 2 * k + (cmp > 0 ? 1 : 0);
+        }
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T[] fill(Object[] source, T[] array) {
+        if (array == null) {
+            throw new IllegalArgumentException("Array cannot be null.");
+        }
+        if (array.length < size) {
+            array = (T[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(),
+                    size);
+        }
+        int index = 0;
+        for (int k = first(); k != 0; k = successor(k)) {
+            array[index++] = (T) source[k];
+        }
+        if (array.length > size) {
+            array[size] = null;
+        }
+        return array;
+    }
+
+    /**
+     * Retrieves the Eytzinger index holding the smallest key.
+     *
+     * @return the leftmost index, or 0 if the map is empty.
+     */
+    private int first() {
+        if (size == 0) {
+            return 0;
+        }
+        int k = 1;
+        while (2 * k <= size) {
+            k = 2 * k;
+        }
+        return k;
+    }
+
+    /**
+     * Retrieves the Eytzinger index holding the next larger key.
+     *
+     * @param k an index holding a key.
+     * @return the in-order successor's index, or 0 if {@code k} holds the largest key.
+     */
+    private int successor(int k) {
+        if (2 * k + 1 <= size) {
+            k = 2 * k + 1;
+            while (2 * k <= size) {
+                k = 2 * k;
+            }
+            return k;
+        }
+        // Climb while k is a right child, then step up once more to the parent it is a left child of.
+        while ((k & 1) == 1) {
+            k >>= 1;
+        }
+        return k >> 1;
+    }
+}
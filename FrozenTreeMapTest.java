@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FrozenTreeMapTest {
+
+    @Test
+    public void testEmptyMap() {
+        FrozenTreeMap<Integer, String> frozen = FrozenTreeMap.from(new TreeMap<Integer, String>());
+        assertEquals(0, frozen.size());
+        assertNull(frozen.get(1));
+        assertFalse(frozen.containsKey(1));
+        assertArrayEquals(new Integer[0], frozen.toKeyArray(new Integer[0]));
+    }
+
+    @Test
+    public void testMatchesSourceMap() {
+        TreeMap<Integer, String> source = new TreeMap<>();
+        Random random = new Random(17);
+        for (int size = 1; size <= 300; size++) {
+            source.put(random.nextInt(1000), "v" + size);
+            FrozenTreeMap<Integer, String> frozen = FrozenTreeMap.from(source);
+            assertEquals(source.size(), frozen.size());
+            assertArrayEquals(source.toKeyArray(new Integer[0]), frozen.toKeyArray(new Integer[0]));
+            assertArrayEquals(source.toValueArray(new String[0]), frozen.toValueArray(new String[0]));
+            for (int key = -1; key <= 1000; key += 7) {
+                assertEquals(source.get(key), frozen.get(key));
+                assertEquals(source.containsKey(key), frozen.containsKey(key));
+            }
+        }
+    }
+
+    @Test
+    public void testToKeyArrayWithLargerArray() {
+        TreeMap<Integer, String> source = new TreeMap<>();
+        source.put(2, "Two");
+        source.put(1, "One");
+        FrozenTreeMap<Integer, String> frozen = FrozenTreeMap.from(source);
+        assertArrayEquals(new Integer[]{1, 2, null}, frozen.toKeyArray(new Integer[3]));
+        assertArrayEquals(new String[]{"One", "Two", null}, frozen.toValueArray(new String[3]));
+    }
+
+    @Test
+    public void testFreezesPrimitiveKeyedMaps() {
+        IntTreeMap<String> years = new IntTreeMap<>();
+        DoubleTreeMap<String> ratings = new DoubleTreeMap<>();
+        Random random = new Random(8);
+        for (int i = 0; i < 200; i++) {
+            int key = random.nextInt(500);
+            years.put(key, "y" + i);
+            ratings.put(key / 100.0, "r" + i);
+        }
+        FrozenTreeMap<Integer, String> frozenYears = FrozenTreeMap.from(years);
+        FrozenTreeMap<Double, String> frozenRatings = FrozenTreeMap.from(ratings);
+        assertArrayEquals(years.toKeyArray(new Integer[0]), frozenYears.toKeyArray(new Integer[0]));
+        assertArrayEquals(years.toValueArray(new String[0]), frozenYears.toValueArray(new String[0]));
+        assertArrayEquals(ratings.toKeyArray(new Double[0]), frozenRatings.toKeyArray(new Double[0]));
+        assertArrayEquals(ratings.toValueArray(new String[0]), frozenRatings.toValueArray(new String[0]));
+        for (int key = 0; key < 500; key++) {
+            assertEquals(years.get(key), frozenYears.get(key));
+            assertEquals(ratings.get(key / 100.0), frozenRatings.get(key / 100.0));
+        }
+
+        List<Integer> visited = new ArrayList<>();
+        frozenYears.forEach((key, value) -> {
+            assertEquals(years.get(key), value);
+            visited.add(key);
+        });
+        assertEquals(List.of(years.toKeyArray(new Integer[0])), visited);
+        assertSame(frozenRatings.get(0.5), FrozenTreeMap.from(frozenRatings).get(0.5));
+    }
+
+    @Test
+    public void testMutationsUnsupported() {
+        FrozenTreeMap<Integer, String> frozen = new FrozenTreeMap<>();
+        assertThrows(UnsupportedOperationException.class, () -> frozen.put(1, "One"));
+        assertThrows(UnsupportedOperationException.class, frozen::clear);
+        assertThrows(UnsupportedOperationException.class, () -> frozen.remove(1));
+        assertThrows(IllegalArgumentException.class, () -> frozen.get(null));
+    }
+}
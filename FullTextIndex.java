@@ -0,0 +1,360 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * An inverted index for ranked keyword search over the catalog.
+ * <p>
+ * Each book is one document made of its title, original title and authors. Text is split into tokens at anything
+ * that is not a letter or digit, lower-cased, and stripped of diacritics, so "GrandPr&eacute;" and "grandpre" are
+ * the same token. A query matches the books containing every one of its tokens; matches are ranked by BM25,
+ * optionally plus a boost for a high average rating.
+ * <p>
+ * Posting lists are stored in one byte array as variable-length integers: for each document, the gap from the
+ * previous document id followed by the token's frequency in the document. Every {@value #SKIP_INTERVAL} postings a
+ * skip entry records the document id and byte offset reached so far, so intersecting a long list with a short one
+ * jumps over whole blocks instead of decoding them.
+ */
+public class FullTextIndex {
+
+    static final int SKIP_INTERVAL = 64;
+
+    // Standard BM25 parameters: term frequency saturation and document length normalization.
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final HashMap<String, Integer> termIds;
+    private final byte[] postings;
+    private final int[] postingStarts;
+    private final int[] documentFrequencies;
+    private final int[] skipStarts;
+    private final int[] skipDocs;
+    private final int[] skipOffsets;
+    private final int[] lengths;
+    private final double averageLength;
+    private final double[] ratings;
+
+    /**
+     * A ranked search result.
+     *
+     * @param id the id of the matching book.
+     * @param score the book's relevance score; higher is better.
+     */
+    public record Hit(int id, double score) {
+    }
+
+    private FullTextIndex(HashMap<String, Integer> termIds, byte[] postings, int[] postingStarts,
+                          int[] documentFrequencies, int[] skipStarts, int[] skipDocs, int[] skipOffsets,
+                          int[] lengths, double[] ratings) {
+        this.termIds = termIds;
+        this.postings = postings;
+        this.postingStarts = postingStarts;
+        this.documentFrequencies = documentFrequencies;
+        this.skipStarts = skipStarts;
+        this.skipDocs = skipDocs;
+        this.skipOffsets = skipOffsets;
+        this.lengths = lengths;
+        this.ratings = ratings;
+        long total = 0;
+        for (int length : lengths) {
+            total += length;
+        }
+        this.averageLength = lengths.length == 0 ? 0 : (double) total / lengths.length;
+    }
+
+    /**
+     * Builds an index over the titles, original titles and authors of the books.
+     *
+     * @param books the books, indexed by id.
+     * @return the index.
+     * @throws IllegalArgumentException if the array is {@code null}.
+     */
+    public static FullTextIndex build(Book[] books) {
+        if (books == null) {
+            throw new IllegalArgumentException("Array cannot be null.");
+        }
+        HashMap<String, Integer> termIds = new HashMap<>();
+        List<int[]> lists = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        int[] lengths = new int[books.length];
+        double[] ratings = new double[books.length];
+
+        for (int id = 0; id < books.length; id++) {
+            Book book = books[id];
+            ratings[id] = book.averageRating();
+            String text = book.originalTitle().equals(book.title())
+                    ? book.title() + " " + book.authors()
+                    : book.title() + " " + book.originalTitle() + " " + book.authors();
+            String[] tokens = tokenize(text);
+            lengths[id] = tokens.length;
+            Arrays.sort(tokens);
+            for (int i = 0; i < tokens.length; ) {
+                int j = i + 1;
+                while (j < tokens.length && tokens[j].equals(tokens[i])) {
+                    j++;
+                }
+                Integer term = termIds.putIfAbsent(tokens[i], termIds.size());
+                if (term == null) {
+                    term = termIds.size() - 1;
+                    lists.add(new int[4]);
+                    counts.add(0);
+                }
+                // Books are visited in id order, so each list is already sorted by id.
+                int[] list = lists.get(term);
+                int count = counts.get(term);
+                if (count + 2 > list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                    lists.set(term, list);
+                }
+                list[count] = id;
+                list[count + 1] = j - i;
+                counts.set(term, count + 2);
+                i = j;
+            }
+        }
+
+        int termCount = lists.size();
+        ByteWriter out = new ByteWriter();
+        int[] postingStarts = new int[termCount + 1];
+        int[] documentFrequencies = new int[termCount];
+        int[] skipStarts = new int[termCount + 1];
+        int skipCount = 0;
+        for (int term = 0; term < termCount; term++) {
+            skipCount += (counts.get(term) / 2 - 1) / SKIP_INTERVAL;
+        }
+        int[] skipDocs = new int[skipCount];
+        int[] skipOffsets = new int[skipCount];
+        int skip = 0;
+        for (int term = 0; term < termCount; term++) {
+            int[] list = lists.get(term);
+            int df = counts.get(term) / 2;
+            postingStarts[term] = out.size();
+            documentFrequencies[term] = df;
+            skipStarts[term] = skip;
+            int previous = 0;
+            for (int p = 0; p < df; p++) {
+                out.writeVarInt(list[2 * p] - previous);
+                out.writeVarInt(list[2 * p + 1]);
+                previous = list[2 * p];
+                if ((p + 1) % SKIP_INTERVAL == 0 && p + 1 < df) {
+                    skipDocs[skip] = previous;
+                    skipOffsets[skip] = out.size();
+                    skip++;
+                }
+            }
+            lists.set(term, null);
+        }
+        postingStarts[termCount] = out.size();
+        skipStarts[termCount] = skip;
+        return new FullTextIndex(termIds, out.toByteArray(), postingStarts, documentFrequencies, skipStarts,
+                skipDocs, skipOffsets, lengths, ratings);
+    }
+
+    /**
+     * Splits text into search tokens: runs of letters and digits, lower-cased, with diacritics removed.
+     *
+     * @param text the text to split.
+     * @return the tokens, in order of appearance.
+     */
+    public static String[] tokenize(String text) {
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        String[] tokens = SEPARATORS.split(folded);
+        if (tokens.length > 0 && tokens[0].isEmpty()) {
+            return Arrays.copyOfRange(tokens, 1, tokens.length);
+        }
+        return tokens;
+    }
+
+    /**
+     * Retrieves the number of distinct tokens in the index.
+     *
+     * @return the number of tokens.
+     */
+    public int termCount() {
+        return documentFrequencies.length;
+    }
+
+    /**
+     * Retrieves the size of the compressed posting lists and skip entries.
+     *
+     * @return the size in bytes.
+     */
+    public long postingBytes() {
+        return postings.length + (long) (skipDocs.length + skipOffsets.length) * Integer.BYTES;
+    }
+
+    /**
+     * Finds the books containing every token of the query, best match first.
+     *
+     * @param query the query text; tokenized the same way as the catalog.
+     * @param k the maximum number of results.
+     * @param ratingBoost the weight of the average rating added to each BM25 score; 0 ranks by text alone.
+     * @return up to {@code k} hits in descending score order; empty if the query has no tokens or some token appears
+     *         in no book.
+     */
+    public List<Hit> search(String query, int k, double ratingBoost) {
+        String[] tokens = tokenize(query);
+        if (tokens.length == 0 || k <= 0) {
+            return List.of();
+        }
+        Cursor[] cursors = new Cursor[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            Integer term = termIds.get(tokens[i]);
+            if (term == null) {
+                return List.of();
+            }
+            cursors[i] = new Cursor(term);
+        }
+        // Drive the intersection from the rarest token; the others only ever skip forward to its documents.
+        Arrays.sort(cursors, (a, b) -> Integer.compare(documentFrequencies[a.term], documentFrequencies[b.term]));
+
+        PriorityQueue<Hit> top = new PriorityQueue<>((a, b) -> a.score() != b.score()
+                ? Double.compare(a.score(), b.score()) : Integer.compare(b.id(), a.id()));
+        Cursor lead = cursors[0];
+        int doc = lead.next();
+        while (doc != Cursor.END) {
+            int candidate = doc;
+            for (int i = 1; i < cursors.length && candidate == doc; i++) {
+                candidate = cursors[i].advance(doc);
+            }
+            if (candidate == Cursor.END) {
+                break;
+            }
+            if (candidate == doc) {
+                double score = ratingBoost * ratings[doc];
+                for (Cursor cursor : cursors) {
+                    score += bm25(cursor, doc);
+                }
+                Hit hit = new Hit(doc, score);
+                if (top.size() < k) {
+                    top.add(hit);
+                } else if (top.comparator().compare(hit, top.peek()) > 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+                doc = lead.next();
+            } else {
+                doc = lead.advance(candidate);
+            }
+        }
+        Hit[] hits = top.toArray(new Hit[0]);
+        Arrays.sort(hits, top.comparator().reversed());
+        return List.of(hits);
+    }
+
+    private double bm25(Cursor cursor, int doc) {
+        int df = documentFrequencies[cursor.term];
+        double idf = Math.log(1 + (lengths.length - df + 0.5) / (df + 0.5));
+        double norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+        return idf * cursor.frequency * (K1 + 1) / (cursor.frequency + norm);
+    }
+
+    /**
+     * Decodes one posting list front to back.
+     */
+    private final class Cursor {
+        static final int END = Integer.MAX_VALUE;
+
+        final int term;
+        private int offset;
+        private int index;
+        private int doc;
+        private int frequency;
+        private int skip;
+
+        Cursor(int term) {
+            this.term = term;
+            this.offset = postingStarts[term];
+            this.skip = skipStarts[term];
+        }
+
+        /**
+         * Moves to the next posting.
+         *
+         * @return its document id, or {@link #END} if the list is exhausted.
+         */
+        int next() {
+            if (index == documentFrequencies[term]) {
+                return doc = END;
+            }
+            doc += readVarInt();
+            frequency = readVarInt();
+            index++;
+            return doc;
+        }
+
+        /**
+         * Moves to the first posting at or after the specified document, skipping whole blocks where possible.
+         *
+         * @return its document id, or {@link #END} if there is none.
+         */
+        int advance(int target) {
+            if (doc >= target && index > 0) {
+                return doc;
+            }
+            while (skip < skipStarts[term + 1] && skipDocs[skip] < target) {
+                int skipIndex = (skip - skipStarts[term] + 1) * SKIP_INTERVAL;
+                if (skipIndex > index) {
+                    doc = skipDocs[skip];
+                    offset = skipOffsets[skip];
+                    index = skipIndex;
+                }
+                skip++;
+            }
+            while (doc < target || index == 0) {
+                if (next() == END) {
+                    return END;
+                }
+            }
+            return doc;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * A growable byte buffer that writes variable-length integers, seven bits per byte, low bits first.
+     */
+    private static final class ByteWriter {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        void writeVarInt(int value) {
+            if (size + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class FullTextIndexTest {
+
+    private static final Book[] BOOKS = {
+            new Book("1", "J.K. Rowling, Mary GrandPr\u00e9", 1997, "Harry Potter and the Philosopher's Stone",
+                    "Harry Potter and the Sorcerer's Stone", 4.44),
+            new Book("2", "J.K. Rowling", 1998, "Harry Potter and the Chamber of Secrets",
+                    "Harry Potter and the Chamber of Secrets", 4.37),
+            new Book("3", "Harper Lee", 1960, "To Kill a Mockingbird", "To Kill a Mockingbird", 4.25),
+            new Book("4", "Stone Harry", 2001, "Stone", "Stone", 2.0),
+    };
+
+    @Test
+    public void testTokenizeFoldsCaseAndDiacritics() {
+        assertArrayEquals(new String[]{"mary", "grandpre", "j", "k"},
+                FullTextIndex.tokenize("  Mary GrandPr\u00e9, J.K."));
+        assertArrayEquals(new String[0], FullTextIndex.tokenize(" -- "));
+    }
+
+    @Test
+    public void testConjunctiveRankedSearch() {
+        FullTextIndex index = FullTextIndex.build(BOOKS);
+        // The short record mentions both words, so BM25 puts it first.
+        assertEquals(List.of(3, 0), ids(index.search("harry stone", 10, 0)));
+        assertEquals(List.of(0), ids(index.search("GRANDPRE", 10, 0)));
+        // Both match once per field, but the second record is shorter.
+        assertEquals(List.of(1, 0), ids(index.search("rowling potter", 10, 0)));
+        assertEquals(List.of(), ids(index.search("harry unicorn", 10, 0)));
+        assertEquals(List.of(), ids(index.search("", 10, 0)));
+        // A strong enough rating boost outweighs the text match.
+        assertEquals(List.of(0, 3), ids(index.search("harry stone", 10, 10)));
+        assertEquals(List.of(3), ids(index.search("harry stone", 1, 0)));
+    }
+
+    @Test
+    public void testSkipIntersectionMatchesScan() {
+        Random random = new Random(17);
+        Book[] books = new Book[5000];
+        String[] words = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta"};
+        for (int i = 0; i < books.length; i++) {
+            StringBuilder title = new StringBuilder();
+            for (String word : words) {
+                // Rarer words further down the list, so lists of very different lengths get intersected.
+                if (random.nextInt(words.length) >= Arrays.asList(words).indexOf(word)) {
+                    title.append(word).append(' ');
+                }
+            }
+            books[i] = new Book(String.valueOf(i), "author", 2000, title.toString(), title.toString(), 3);
+        }
+        FullTextIndex index = FullTextIndex.build(books);
+        for (String query : new String[]{"alpha zeta", "zeta alpha beta", "epsilon gamma", "delta"}) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < books.length; i++) {
+                if (Arrays.asList(FullTextIndex.tokenize(books[i].title())).containsAll(
+                        Arrays.asList(FullTextIndex.tokenize(query)))) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> actual = new ArrayList<>(ids(index.search(query, books.length, 0)));
+            actual.sort(null);
+            assertEquals(expected, actual, query);
+        }
+    }
+
+    private static List<Integer> ids(List<FullTextIndex.Hit> hits) {
+        return hits.stream().map(FullTextIndex.Hit::id).toList();
+    }
+}
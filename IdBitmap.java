@@ -0,0 +1,354 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntPredicate;
+
+/**
+ * An immutable, compressed set of non-negative ids, laid out like a Roaring bitmap.
+ * <p>
+ * Ids are split into chunks of 65536 by their high 16 bits. A chunk holding few ids stores their low 16 bits as a
+ * sorted {@code char[]}; a chunk holding more than {@value #ARRAY_LIMIT} stores a 65536-bit {@code long[]} bitmap,
+ * whichever is smaller. Intersections work chunk by chunk with the cheapest method for each pair of layouts, and
+ * positional access skips whole chunks by their counts, so sets of dense ids stay small and fast to combine.
+ */
+public final class IdBitmap {
+
+    // Above this many ids, an 8 KB bitmap is smaller than a sorted array of 2-byte values.
+    static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private static final IdBitmap EMPTY = new IdBitmap(new char[0], new Object[0], 0);
+
+    private final char[] keys;
+    private final Object[] chunks;
+    // The number of ids in all chunks before each chunk, plus the total at the end.
+    private final int[] ranks;
+
+    private IdBitmap(char[] keys, Object[] chunks, int chunkCount) {
+        this.keys = chunkCount == keys.length ? keys : Arrays.copyOf(keys, chunkCount);
+        this.chunks = chunkCount == chunks.length ? chunks : Arrays.copyOf(chunks, chunkCount);
+        this.ranks = new int[chunkCount + 1];
+        for (int i = 0; i < chunkCount; i++) {
+            ranks[i + 1] = ranks[i] + cardinality(this.chunks[i]);
+        }
+    }
+
+    /**
+     * Retrieves the empty set.
+     *
+     * @return a set with no ids.
+     */
+    public static IdBitmap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds a set of the specified ids.
+     *
+     * @param ids the ids, in any order; duplicates are ignored. The array is not modified.
+     * @return the set.
+     * @throws IllegalArgumentException if the array is {@code null} or holds a negative id.
+     */
+    public static IdBitmap of(int[] ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("Array cannot be null.");
+        }
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        if (sorted.length > 0 && sorted[0] < 0) {
+            throw new IllegalArgumentException("Ids cannot be negative.");
+        }
+        char[] keys = new char[16];
+        Object[] chunks = new Object[16];
+        int chunkCount = 0;
+        char[] values = new char[Math.min(sorted.length, 1 << 16)];
+        for (int i = 0; i < sorted.length; ) {
+            int key = sorted[i] >>> 16;
+            int count = 0;
+            for (; i < sorted.length && sorted[i] >>> 16 == key; i++) {
+                char low = (char) sorted[i];
+                if (count == 0 || values[count - 1] != low) {
+                    values[count++] = low;
+                }
+            }
+            if (chunkCount == keys.length) {
+                keys = Arrays.copyOf(keys, chunkCount * 2);
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            }
+            keys[chunkCount] = (char) key;
+            chunks[chunkCount++] = compact(values, count);
+        }
+        return new IdBitmap(keys, chunks, chunkCount);
+    }
+
+    /**
+     * Retrieves the number of ids in the set.
+     *
+     * @return the number of ids.
+     */
+    public int size() {
+        return ranks[ranks.length - 1];
+    }
+
+    /**
+     * Checks if the set contains the specified id.
+     *
+     * @param id the id to search for.
+     * @return {@code true} if the id is in the set; {@code false} otherwise.
+     */
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, (char) (id >>> 16));
+        return index >= 0 && contains(chunks[index], (char) id);
+    }
+
+    /**
+     * Retrieves the id at the specified position, in ascending order.
+     *
+     * @param index the zero-based position.
+     * @return the id at that position.
+     * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}.
+     */
+    public int select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        }
+        // Chunks are never empty, so the ranks are strictly increasing: find the last one at most the index.
+        int chunk = Arrays.binarySearch(ranks, index);
+        chunk = chunk >= 0 ? chunk : -chunk - 2;
+        int rank = index - ranks[chunk];
+        int high = keys[chunk] << 16;
+        if (chunks[chunk] instanceof char[] values) {
+            return high | values[rank];
+        }
+        long[] words = (long[]) chunks[chunk];
+        for (int w = 0; ; w++) {
+            int bits = Long.bitCount(words[w]);
+            if (rank < bits) {
+                long word = words[w];
+                for (int r = 0; r < rank; r++) {
+                    word &= word - 1;
+                }
+                return high | (w << 6) | Long.numberOfTrailingZeros(word);
+            }
+            rank -= bits;
+        }
+    }
+
+    /**
+     * Computes the ids present in both this set and another.
+     *
+     * @param other the other set.
+     * @return the intersection.
+     */
+    public IdBitmap and(IdBitmap other) {
+        char[] resultKeys = new char[Math.min(keys.length, other.keys.length)];
+        Object[] resultChunks = new Object[resultKeys.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Object chunk = and(chunks[i], other.chunks[j]);
+                if (chunk != null) {
+                    resultKeys[count] = keys[i];
+                    resultChunks[count++] = chunk;
+                }
+                i++;
+                j++;
+            }
+        }
+        return count == 0 ? EMPTY : new IdBitmap(resultKeys, resultChunks, count);
+    }
+
+    /**
+     * Computes the ids of this set that satisfy a predicate, such as a direct check of a record's attributes.
+     *
+     * @param predicate the test for each id.
+     * @return the ids that pass.
+     */
+    public IdBitmap filter(IntPredicate predicate) {
+        int[] kept = new int[size()];
+        int count = 0;
+        for (PrimitiveIterator.OfInt iterator = iterator(); iterator.hasNext(); ) {
+            int id = iterator.nextInt();
+            if (predicate.test(id)) {
+                kept[count++] = id;
+            }
+        }
+        return of(Arrays.copyOf(kept, count));
+    }
+
+    /**
+     * Retrieves an iterator over the ids in ascending order. Chunks are decoded only as the iteration reaches them.
+     *
+     * @return an iterator over the ids.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int chunk;
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return chunk < chunks.length;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int high = keys[chunk] << 16;
+                int id;
+                if (chunks[chunk] instanceof char[] values) {
+                    id = high | values[position++];
+                    if (position == values.length) {
+                        chunk++;
+                        position = 0;
+                    }
+                    return id;
+                }
+                // In a bitmap chunk, position is the bit to resume scanning from.
+                long[] words = (long[]) chunks[chunk];
+                int w = position >>> 6;
+                long word = words[w] & (-1L << position);
+                while (word == 0) {
+                    word = words[++w];
+                }
+                int low = (w << 6) | Long.numberOfTrailingZeros(word);
+                id = high | low;
+                position = low + 1;
+                if (position == 1 << 16 || nextBit(words, position) < 0) {
+                    chunk++;
+                    position = 0;
+                }
+                return id;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the ids in ascending order.
+     *
+     * @return a new array of the ids.
+     */
+    public int[] toArray() {
+        int[] ids = new int[size()];
+        PrimitiveIterator.OfInt iterator = iterator();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = iterator.nextInt();
+        }
+        return ids;
+    }
+
+    private static int nextBit(long[] words, int from) {
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == BITMAP_WORDS) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) | Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Stores sorted, distinct low bits in whichever chunk layout is smaller.
+     */
+    private static Object compact(char[] values, int count) {
+        if (count <= ARRAY_LIMIT) {
+            return Arrays.copyOf(values, count);
+        }
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < count; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return words;
+    }
+
+    private static int cardinality(Object chunk) {
+        if (chunk instanceof char[] values) {
+            return values.length;
+        }
+        int count = 0;
+        for (long word : (long[]) chunk) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static boolean contains(Object chunk, char low) {
+        if (chunk instanceof char[] values) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+        return (((long[]) chunk)[low >>> 6] & (1L << low)) != 0;
+    }
+
+    /**
+     * Intersects two chunks with the same high bits.
+     *
+     * @return the intersection, or {@code null} if it is empty.
+     */
+    private static Object and(Object a, Object b) {
+        if (a instanceof long[] left && b instanceof long[] right) {
+            long[] words = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                words[w] = left[w] & right[w];
+                count += Long.bitCount(words[w]);
+            }
+            if (count == 0) {
+                return null;
+            }
+            if (count > ARRAY_LIMIT) {
+                return words;
+            }
+            char[] values = new char[count];
+            int index = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[index++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                }
+            }
+            return values;
+        }
+        if (a instanceof long[]) {
+            Object swap = a;
+            a = b;
+            b = swap;
+        }
+        // At least one side is a sorted array, so the result is no larger than it.
+        char[] values = (char[]) a;
+        char[] result = new char[values.length];
+        int count = 0;
+        if (b instanceof long[] words) {
+            for (char value : values) {
+                if ((words[value >>> 6] & (1L << value)) != 0) {
+                    result[count++] = value;
+                }
+            }
+        } else {
+            char[] other = (char[]) b;
+            for (int i = 0, j = 0; i < values.length && j < other.length; ) {
+                if (values[i] < other[j]) {
+                    i++;
+                } else if (values[i] > other[j]) {
+                    j++;
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return count == 0 ? null : Arrays.copyOf(result, count);
+    }
+}
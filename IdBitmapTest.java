@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class IdBitmapTest {
+
+    private static int[] randomIds(Random random, int count, int bound) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = random.nextInt(bound);
+        }
+        return ids;
+    }
+
+    private static void assertSameSet(TreeSet<Integer> expected, IdBitmap actual) {
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), actual.toArray());
+        int position = 0;
+        for (int id : expected) {
+            assertEquals(id, actual.select(position++));
+            assertTrue(actual.contains(id));
+        }
+    }
+
+    @Test
+    public void testMatchesTreeSetForSparseAndDenseChunks() {
+        Random random = new Random(18);
+        // 300000 ids below 200000 fill their chunks densely; 2000 below 10 million leave them sparse.
+        for (int[] shape : new int[][]{{300_000, 200_000}, {2000, 10_000_000}, {0, 1}}) {
+            int[] ids = randomIds(random, shape[0], shape[1]);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int id : ids) {
+                expected.add(id);
+            }
+            assertSameSet(expected, IdBitmap.of(ids));
+        }
+    }
+
+    @Test
+    public void testAndMatchesTreeSet() {
+        Random random = new Random(180);
+        int[][] sets = {
+                randomIds(random, 200_000, 150_000),
+                randomIds(random, 50_000, 150_000),
+                randomIds(random, 3000, 150_000),
+        };
+        for (int[] a : sets) {
+            for (int[] b : sets) {
+                TreeSet<Integer> expected = new TreeSet<>();
+                for (int id : a) {
+                    expected.add(id);
+                }
+                TreeSet<Integer> other = new TreeSet<>();
+                for (int id : b) {
+                    other.add(id);
+                }
+                expected.retainAll(other);
+                assertSameSet(expected, IdBitmap.of(a).and(IdBitmap.of(b)));
+            }
+        }
+    }
+
+    @Test
+    public void testFilterIteratorAndBounds() {
+        IdBitmap bitmap = IdBitmap.of(new int[]{5, 70_000, 3, 5, 1 << 20});
+        assertArrayEquals(new int[]{3, 5, 70_000, 1 << 20}, bitmap.toArray());
+        assertArrayEquals(new int[]{70_000, 1 << 20}, bitmap.filter(id -> id > 10).toArray());
+        assertFalse(bitmap.contains(4));
+        assertFalse(bitmap.contains(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> bitmap.select(4));
+        PrimitiveIterator.OfInt iterator = IdBitmap.empty().iterator();
+        assertFalse(iterator.hasNext());
+        assertThrows(java.util.NoSuchElementException.class, iterator::nextInt);
+        assertThrows(IllegalArgumentException.class, () -> IdBitmap.of(new int[]{1, -2}));
+    }
+}
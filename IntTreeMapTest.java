@@ -0,0 +1,142 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+public class IntTreeMapTest {
+    private IntTreeMap<String> treeMap;
+
+    @BeforeEach
+    public void setUp() {
+        treeMap = new IntTreeMap<>();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        treeMap.put(2008, "a");
+        treeMap.put(1997, "b");
+        assertEquals(2, treeMap.size());
+        assertEquals("a", treeMap.get(2008));
+        assertEquals("b", treeMap.get(Integer.valueOf(1997)));
+        assertNull(treeMap.get(2000));
+        assertTrue(treeMap.containsKey(1997));
+        assertFalse(treeMap.containsKey(2000));
+    }
+
+    @Test
+    public void testPutDuplicateKey() {
+        treeMap.put(1, "One");
+        treeMap.put(1, "Uno");
+        assertEquals(1, treeMap.size());
+        assertEquals("Uno", treeMap.get(1));
+    }
+
+    @Test
+    public void testRandomInsertsMatchJavaTreeMap() {
+        java.util.TreeMap<Integer, String> expected = new java.util.TreeMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(20_000) - 10_000;
+            treeMap.put(key, "v" + i);
+            expected.put(key, "v" + i);
+        }
+        assertEquals(expected.size(), treeMap.size());
+        assertArrayEquals(expected.keySet().toArray(new Integer[0]), treeMap.toKeyArray(new Integer[0]));
+        assertArrayEquals(expected.values().toArray(new String[0]), treeMap.toValueArray(new String[0]));
+        int[] keys = treeMap.toIntArray();
+        for (int i = 1; i < keys.length; i++) {
+            assertTrue(keys[i - 1] < keys[i]);
+        }
+    }
+
+    @Test
+    public void testSequentialInsertsAndClear() {
+        for (int i = 0; i < 100_000; i++) {
+            treeMap.put(i, null);
+        }
+        assertEquals(100_000, treeMap.size());
+        assertTrue(treeMap.containsKey(99_999));
+        treeMap.clear();
+        assertEquals(0, treeMap.size());
+        assertFalse(treeMap.containsKey(0));
+        treeMap.put(5, "Five");
+        assertEquals("Five", treeMap.get(5));
+    }
+
+    @Test
+    public void testToKeyArrayWithLargerArray() {
+        treeMap.put(2, "Two");
+        treeMap.put(1, "One");
+        assertArrayEquals(new Integer[]{1, 2, null}, treeMap.toKeyArray(new Integer[3]));
+    }
+
+    @Test
+    public void testPutNullKey() {
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> {
+            treeMap.put((Integer) null, "NullKey");
+        });
+        assertEquals("Key cannot be null.", thrown.getMessage());
+    }
+
+    @Test
+    public void testRemoveMatchesJavaTreeMap() {
+        java.util.TreeMap<Integer, String> expected = new java.util.TreeMap<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), treeMap.remove(key));
+            } else {
+                treeMap.put(key, "v" + i);
+                expected.put(key, "v" + i);
+            }
+        }
+        assertEquals(expected.size(), treeMap.size());
+        assertArrayEquals(expected.keySet().toArray(new Integer[0]), treeMap.toKeyArray(new Integer[0]));
+        assertArrayEquals(expected.values().toArray(new String[0]), treeMap.toValueArray(new String[0]));
+        for (int key = -1; key <= 5_000; key++) {
+            assertEquals(expected.get(key), treeMap.get(key));
+        }
+        assertThrows(IllegalArgumentException.class, () -> treeMap.remove((Integer) null));
+    }
+
+    @Test
+    public void testWeightedPositionsMatchNaiveSums() {
+        IntTreeMap<StringBuilder> weighted = new IntTreeMap<>();
+        java.util.TreeMap<Integer, StringBuilder> expected = new java.util.TreeMap<>();
+        assertThrows(IllegalStateException.class, weighted::totalWeight);
+        weighted.put(0, new StringBuilder("ab"));
+        expected.put(0, weighted.get(0));
+        weighted.weighBy(StringBuilder::length);
+        Random random = new Random(22);
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(500);
+            int op = random.nextInt(4);
+            if (op == 0) {
+                weighted.remove(key);
+                expected.remove(key);
+            } else if (op == 1 && expected.containsKey(key)) {
+                expected.get(key).append("x");
+                weighted.reweigh(key);
+            } else {
+                StringBuilder value = new StringBuilder("y".repeat(random.nextInt(4)));
+                weighted.put(key, value);
+                expected.put(key, value);
+            }
+        }
+        int position = 0;
+        for (Map.Entry<Integer, StringBuilder> entry : expected.entrySet()) {
+            int key = entry.getKey();
+            assertEquals(position, weighted.weightBefore(key));
+            for (int i = 0; i < entry.getValue().length(); i++) {
+                assertEquals(key, weighted.selectWeighted(position++));
+            }
+        }
+        assertEquals(position, weighted.totalWeight());
+        assertEquals(position, weighted.weightBefore(1_000));
+        assertThrows(IndexOutOfBoundsException.class, () -> weighted.selectWeighted(weighted.totalWeight()));
+        assertThrows(IndexOutOfBoundsException.class, () -> weighted.selectWeighted(-1));
+    }
+}
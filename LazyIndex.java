@@ -0,0 +1,63 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * An index that is built in the background the first time it is asked for, and kept from then on.
+ * <p>
+ * Nothing is built until {@link #get()} is first called; every call after that returns the same future, so
+ * concurrent requests share one build and a finished index is returned at once.
+ * A build that fails is not retried; the failure is reported to every caller. When the data behind the index
+ * changes, {@link #update(Consumer)} patches a built index or discards one that is not built yet.
+ *
+ * @param <T> the type of the index.
+ */
+public final class LazyIndex<T> {
+
+    private final Supplier<T> builder;
+    private final Executor executor;
+    private CompletableFuture<T> future;
+
+    /**
+     * Constructs a lazy index that builds on the specified executor.
+     *
+     * @param builder builds the index; called at most once.
+     * @param executor the executor to run the build on.
+     */
+    public LazyIndex(Supplier<T> builder, Executor executor) {
+        this.builder = builder;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts building the index, unless it has been started already.
+     *
+     * @return a future completed with the index once it is built.
+     */
+    public synchronized CompletableFuture<T> get() {
+        if (future == null) {
+            future = CompletableFuture.supplyAsync(builder, executor);
+        }
+        return future;
+    }
+
+    /**
+     * Brings the index up to date after the data it is built from changed. A built index is patched in place, in
+     * the calling thread; nothing else may be reading it meanwhile. An index that is still being built, or whose
+     * build failed, is discarded instead, and the next {@link #get()} builds it again from the current data.
+     * Futures handed out before the update keep the discarded index.
+     *
+     * @param patch applies the change to a built index; or {@code null} to discard even a built index.
+     */
+    public synchronized void update(Consumer<T> patch) {
+        if (future == null) {
+            return;
+        }
+        if (patch != null && future.isDone() && !future.isCompletedExceptionally()) {
+            patch.accept(future.join());
+        } else {
+            future = null;
+        }
+    }
+}
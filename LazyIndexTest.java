@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LazyIndexTest {
+
+    @Test
+    public void testBuildsOnceOnFirstGet() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        LazyIndex<String> index = new LazyIndex<>(() -> "built " + builds.incrementAndGet(), Runnable::run);
+        assertEquals(0, builds.get());
+        CompletableFuture<String> first = index.get();
+        assertEquals("built 1", first.get());
+        assertSame(first, index.get());
+        assertEquals("built 1", index.get().get());
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void testConcurrentGetsShareOneBuild() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService builder = Executors.newSingleThreadExecutor();
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            LazyIndex<Integer> index = new LazyIndex<>(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return builds.incrementAndGet();
+            }, builder);
+            List<Future<CompletableFuture<Integer>>> gets = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                gets.add(callers.submit(index::get));
+            }
+            CompletableFuture<Integer> future = gets.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<CompletableFuture<Integer>> get : gets) {
+                assertSame(future, get.get(10, TimeUnit.SECONDS));
+            }
+            assertFalse(future.isDone());
+            release.countDown();
+            assertEquals(1, future.get(10, TimeUnit.SECONDS));
+            assertEquals(1, builds.get());
+        } finally {
+            builder.shutdownNow();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureIsReportedAndNotRetried() {
+        AtomicInteger builds = new AtomicInteger();
+        LazyIndex<String> index = new LazyIndex<>(() -> {
+            builds.incrementAndGet();
+            throw new IllegalStateException("broken");
+        }, Runnable::run);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> index.get().get());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertTrue(index.get().isCompletedExceptionally());
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void testUpdatePatchesBuiltIndexAndDiscardsOthers() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        LazyIndex<List<String>> index = new LazyIndex<>(() -> {
+            builds.incrementAndGet();
+            return new ArrayList<>(List.of("a"));
+        }, Runnable::run);
+        index.update(list -> list.add("never"));
+        assertEquals(0, builds.get());
+
+        CompletableFuture<List<String>> built = index.get();
+        index.update(list -> list.add("b"));
+        assertSame(built, index.get());
+        assertEquals(List.of("a", "b"), built.get());
+
+        index.update(null);
+        assertEquals(List.of("a"), index.get().get());
+        assertEquals(2, builds.get());
+
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        LazyIndex<String> slow = new LazyIndex<>(pending::join, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        CompletableFuture<String> first = slow.get();
+        slow.update(value -> fail("not built yet"));
+        assertNotSame(first, slow.get());
+        pending.complete("done");
+        assertEquals("done", first.get(10, TimeUnit.SECONDS));
+    }
+}
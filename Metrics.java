@@ -0,0 +1,367 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Runtime metrics: counters, latency histograms and gauges, organized in named groups such as
+ * {@code TreeMap.isbn} or {@code Covers}.
+ * <p>
+ * Each group is registered with the platform MBean server as {@code BookBrowser:type=Metrics,name=<group>}, with one
+ * read-only attribute per value, and {@link #startLogging(Duration, PrintStream)} prints every group periodically.
+ * <p>
+ * Instrumentation is off unless the JVM is started with {@code -Dbookbrowser.metrics=true}. Callers guard their
+ * timing code with {@link #ENABLED}, a constant the JIT folds away, so disabled metrics cost nothing on hot paths.
+ */
+public final class Metrics {
+
+    /**
+     * Whether the application should record metrics, from the {@code bookbrowser.metrics} system property.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("bookbrowser.metrics");
+
+    private static final ConcurrentSkipListMap<String, Group> GROUPS = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Retrieves the group with the specified name, creating and registering it on first use.
+     *
+     * @param name the name of the group.
+     * @return the group.
+     */
+    public static Group group(String name) {
+        return GROUPS.computeIfAbsent(name, Group::new);
+    }
+
+    /**
+     * Formats the current value of every metric, one line per group.
+     *
+     * @return the formatted metrics; empty if there are none.
+     */
+    public static String dump() {
+        StringBuilder out = new StringBuilder();
+        for (Group group : GROUPS.values()) {
+            out.append(group.name);
+            group.values().forEach((name, value) -> out.append(' ').append(name).append('=').append(format(value)));
+            out.append(System.lineSeparator());
+        }
+        return out.toString();
+    }
+
+    private static String format(Number value) {
+        return value instanceof Double d ? String.format("%.2f", d) : value.toString();
+    }
+
+    /**
+     * Starts printing {@link #dump()} at a fixed interval on a daemon thread.
+     *
+     * @param interval the time between dumps.
+     * @param out the stream to print to.
+     */
+    public static void startLogging(Duration interval, PrintStream out) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> out.print(dump()), interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A named set of metrics, exposed as one MBean. Metric names are unique within the group; asking for an
+     * existing name returns the existing metric.
+     */
+    public static final class Group implements DynamicMBean {
+        private final String name;
+        private final ConcurrentHashMap<String, Object> metrics = new ConcurrentHashMap<>();
+        // Registration order, so dumps and MBean attributes list related values together.
+        private final List<String> order = new ArrayList<>();
+
+        private Group(String name) {
+            this.name = name;
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                        new ObjectName("BookBrowser:type=Metrics,name=" + name));
+            } catch (JMException e) {
+                // Metrics stay available through dumps even if they cannot be published.
+                System.err.println("Could not register metrics " + name + ": " + e);
+            }
+        }
+
+        /**
+         * Retrieves the counter with the specified name, creating it if needed.
+         *
+         * @param metric the name of the counter.
+         * @return the counter.
+         */
+        public Counter counter(String metric) {
+            return (Counter) metric(metric, new Counter());
+        }
+
+        /**
+         * Retrieves the histogram with the specified name, creating it if needed.
+         *
+         * @param metric the name of the histogram.
+         * @return the histogram.
+         */
+        public Histogram histogram(String metric) {
+            return (Histogram) metric(metric, new Histogram());
+        }
+
+        /**
+         * Adds a gauge whose value is read from the specified supplier each time it is reported. A gauge added
+         * under an existing name replaces it.
+         *
+         * @param metric the name of the gauge.
+         * @param value the supplier of the current value.
+         */
+        public void gauge(String metric, DoubleSupplier value) {
+            synchronized (order) {
+                if (metrics.put(metric, value) == null) {
+                    order.add(metric);
+                }
+            }
+        }
+
+        private Object metric(String metric, Object created) {
+            synchronized (order) {
+                Object existing = metrics.putIfAbsent(metric, created);
+                if (existing != null) {
+                    return existing;
+                }
+                order.add(metric);
+                return created;
+            }
+        }
+
+        /**
+         * Retrieves the current values of every metric in the group. A histogram contributes its count, mean,
+         * median, 99th percentile and maximum as {@code <name>.count}, {@code <name>.mean} and so on.
+         *
+         * @return the values by name, in the order the metrics were added.
+         */
+        public Map<String, Number> values() {
+            List<String> names;
+            synchronized (order) {
+                names = new ArrayList<>(order);
+            }
+            Map<String, Number> values = new LinkedHashMap<>();
+            for (String metric : names) {
+                Object value = metrics.get(metric);
+                if (value instanceof Counter counter) {
+                    values.put(metric, counter.get());
+                } else if (value instanceof Histogram histogram) {
+                    values.put(metric + ".count", histogram.count());
+                    values.put(metric + ".mean", histogram.mean());
+                    values.put(metric + ".p50", histogram.percentile(0.5));
+                    values.put(metric + ".p99", histogram.percentile(0.99));
+                    values.put(metric + ".max", histogram.max());
+                } else {
+                    values.put(metric, ((DoubleSupplier) value).getAsDouble());
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = values().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only.");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> values = values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("Metrics have no operations.");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            values().forEach((metric, value) -> attributes.add(new MBeanAttributeInfo(metric,
+                    value.getClass().getName(), metric, true, false, false)));
+            return new MBeanInfo(Group.class.getName(), "Metrics of " + name,
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+
+    /**
+     * A count that many threads can increment without contending.
+     */
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        private Counter() {
+        }
+
+        /**
+         * Adds one to the count.
+         */
+        public void increment() {
+            count.increment();
+        }
+
+        /**
+         * Retrieves the count.
+         *
+         * @return the sum of all increments.
+         */
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A histogram of non-negative values, such as latencies in nanoseconds, with bounded relative error.
+     * <p>
+     * As in an HDR histogram, values below {@value #SUB_BUCKETS} have a bucket each, and every power-of-two range
+     * above that is split into {@value #SUB_BUCKETS} equal buckets, so any recorded value is reported within about
+     * 3% using a fixed 15 KB of counts. Recording is one array increment and never allocates.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 5;
+        static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private Histogram() {
+        }
+
+        /**
+         * Records one value; negative values are recorded as 0.
+         *
+         * @param value the value.
+         */
+        public void record(long value) {
+            value = Math.max(0, value);
+            counts.incrementAndGet(bucket(value));
+            total.increment();
+            sum.add(value);
+            if (value > max.get()) {
+                max.accumulateAndGet(value, Math::max);
+            }
+        }
+
+        /**
+         * Retrieves the number of recorded values.
+         *
+         * @return the count.
+         */
+        public long count() {
+            return total.sum();
+        }
+
+        /**
+         * Retrieves the mean of the recorded values.
+         *
+         * @return the exact mean, or 0 if nothing was recorded.
+         */
+        public double mean() {
+            long count = count();
+            return count == 0 ? 0 : (double) sum.sum() / count;
+        }
+
+        /**
+         * Retrieves the largest recorded value.
+         *
+         * @return the exact maximum, or 0 if nothing was recorded.
+         */
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * Retrieves the value below which the specified fraction of recorded values fall.
+         *
+         * @param fraction the fraction, between 0 and 1.
+         * @return the midpoint of the bucket holding that value, capped at the maximum; 0 if nothing was recorded.
+         */
+        public long percentile(double fraction) {
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(lowerBound(i) + width(i) / 2, max());
+                }
+            }
+            return max();
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int shift = exponent - SUB_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+        }
+
+        static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        }
+
+        private static long width(int bucket) {
+            return bucket < SUB_BUCKETS ? 1 : 1L << (bucket / SUB_BUCKETS - 1);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class MetricsTest {
+
+    @Test
+    public void testHistogramBucketsCoverEveryValue() {
+        long previous = -1;
+        for (int bucket = 0; bucket < 64 * Metrics.Histogram.SUB_BUCKETS - 200; bucket++) {
+            long lower = Metrics.Histogram.lowerBound(bucket);
+            assertTrue(lower > previous, "bucket " + bucket);
+            assertEquals(bucket, Metrics.Histogram.bucket(lower));
+            assertEquals(bucket - (bucket > 0 ? 1 : 0), Metrics.Histogram.bucket(Math.max(0, lower - 1)));
+            previous = lower;
+        }
+        assertEquals(Metrics.Histogram.bucket(Long.MAX_VALUE), 59 * Metrics.Histogram.SUB_BUCKETS - 1);
+    }
+
+    @Test
+    public void testHistogramPercentilesWithinRelativeError() {
+        Metrics.Histogram histogram = Metrics.group("MetricsTest.histogram").histogram("latency");
+        assertEquals(0, histogram.percentile(0.5));
+        Random random = new Random(5);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform from 1 ns to about 1 s, like real latencies.
+            values[i] = (long) Math.exp(random.nextDouble() * Math.log(1e9));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.count());
+        assertEquals(values[values.length - 1], histogram.max());
+        for (double fraction : new double[]{0.01, 0.5, 0.9, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(fraction * values.length) - 1];
+            long estimate = histogram.percentile(fraction);
+            assertEquals(exact, estimate, Math.max(1, exact / 25.0), "p" + fraction);
+        }
+        histogram.record(-5);
+        assertEquals(0, histogram.percentile(0));
+    }
+
+    @Test
+    public void testGroupsPublishedAsMBeans() throws Exception {
+        Metrics.Group group = Metrics.group("MetricsTest.mbean");
+        assertSame(group, Metrics.group("MetricsTest.mbean"));
+        Metrics.Counter counter = group.counter("misses");
+        assertSame(counter, group.counter("misses"));
+        counter.increment();
+        counter.increment();
+        group.histogram("nanos").record(100);
+        group.gauge("height", () -> 7);
+
+        Map<String, Number> values = group.values();
+        assertEquals(List.of("misses", "nanos.count", "nanos.mean", "nanos.p50", "nanos.p99", "nanos.max", "height"),
+                List.copyOf(values.keySet()));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("BookBrowser:type=Metrics,name=MetricsTest.mbean");
+        assertEquals(2L, server.getAttribute(name, "misses"));
+        assertEquals(1L, server.getAttribute(name, "nanos.count"));
+        assertEquals(7.0, server.getAttribute(name, "height"));
+        assertEquals(values.size(), server.getMBeanInfo(name).getAttributes().length);
+
+        assertTrue(Metrics.dump().contains("MetricsTest.mbean misses=2 nanos.count=1 nanos.mean=100.00"));
+    }
+}
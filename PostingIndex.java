@@ -0,0 +1,468 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.Predicate;
+
+/**
+ * A secondary index that maps each key to the ids of every record carrying that key.
+ * Unlike a plain {@link TreeMap}, equal keys do not overwrite each other: each distinct key owns a posting list of
+ * record ids, stored as a compact sorted {@code int[]}. Records are visited in (key, id) order, so ties on the key
+ * are broken by the id.
+ * <p>
+ * The map is a {@link WeightedTreeMap} weighing each posting list by its length, so every subtree knows how many
+ * records it holds. Positional lookups and range counts walk the tree once, in O(log n), and stay valid as records
+ * are added and removed; nothing is copied out of the map between edits.
+ *
+ * @param <K> the type of keys maintained by this index; must extend {@link Comparable}.
+ */
+public class PostingIndex<K extends Comparable<K>> {
+
+    private final WeightedTreeMap<K, Postings> map;
+    private int size;
+
+    /**
+     * A sorted list of record ids sharing one key.
+     */
+    public static class Postings {
+        private int[] ids;
+        private int count;
+
+        Postings() {
+            ids = new int[1];
+        }
+
+        Postings(int[] ids, int count) {
+            this.ids = ids;
+            this.count = count;
+        }
+
+        /**
+         * Retrieves the number of ids in the list.
+         *
+         * @return the number of ids.
+         */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Retrieves the id at the specified position.
+         *
+         * @param index the zero-based position, in ascending id order.
+         * @return the id at that position.
+         * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}.
+         */
+        public int get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + count);
+            }
+            return ids[index];
+        }
+
+        /**
+         * Adds an id, keeping the list sorted. Appending ids in ascending order costs amortized O(1).
+         *
+         * @return {@code true} if the id was added; {@code false} if it was already present.
+         */
+        boolean add(int id) {
+            int index = count == 0 || ids[count - 1] < id ? count : Arrays.binarySearch(ids, 0, count, id);
+            if (index >= 0 && index < count) {
+                return false;
+            }
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, count - index);
+            ids[index] = id;
+            count++;
+            return true;
+        }
+
+        /**
+         * Removes an id, keeping the list sorted.
+         *
+         * @return {@code true} if the id was removed; {@code false} if it was not present.
+         */
+        boolean remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, count, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, count - index - 1);
+            count--;
+            return true;
+        }
+    }
+
+    /**
+     * Constructs an empty index backed by a {@link TreeMap}.
+     */
+    public PostingIndex() {
+        this(new TreeMap<>());
+    }
+
+    /**
+     * Constructs an index that keeps its posting lists in the specified, empty map. The map's weigher is replaced
+     * by the length of each posting list.
+     *
+     * @param map the map to store posting lists in.
+     */
+    public PostingIndex(WeightedTreeMap<K, Postings> map) {
+        this.map = map;
+        map.weighBy(Postings::size);
+    }
+
+    /**
+     * Builds an index over a column of keys, where the id of each record is its position in the array.
+     * The records are sorted once and grouped by key; the backing {@link TreeMap} is then bulk-loaded.
+     *
+     * @param keys the key of each record; must not contain {@code null}.
+     * @param <K> the type of keys maintained by the index.
+     * @return a new index holding every record.
+     * @throws IllegalArgumentException if the array or any key is {@code null}.
+     */
+    public static <K extends Comparable<K>> PostingIndex<K> build(K[] keys) {
+        return build(keys, null, null);
+    }
+
+    /**
+     * Builds an index over a column of keys into the specified map, where the id of each record is its position in
+     * the array. The records are sorted once and grouped by key; each distinct key is then put into the map once.
+     *
+     * @param keys the key of each record; must not contain {@code null}.
+     * @param map an empty map to store posting lists in, such as an {@link IntTreeMap} for {@code int} keys.
+     * @param <K> the type of keys maintained by the index.
+     * @return a new index holding every record.
+     * @throws IllegalArgumentException if the array, the map or any key is {@code null}, or the map is not empty.
+     */
+    public static <K extends Comparable<K>> PostingIndex<K> build(K[] keys, WeightedTreeMap<K, Postings> map) {
+        if (map == null) {
+            throw new IllegalArgumentException("Map cannot be null.");
+        }
+        return build(keys, null, map);
+    }
+
+    /**
+     * Builds an index over a column of keys, where the id of each record is its position in the array.
+     * If the (key, id) order of the records is already known, for example from {@link #toIdArray()} on an earlier
+     * index over the same records, passing it skips the sort and the index is built in linear time.
+     *
+     * @param keys the key of each record; must not contain {@code null}.
+     * @param order every record id once, sorted by (key, id); or {@code null} to sort the records here.
+     * @param map an empty map to store posting lists in; or {@code null} to bulk-load a {@link TreeMap}.
+     * @param <K> the type of keys maintained by the index.
+     * @return a new index holding every record.
+     * @throws IllegalArgumentException if the array or any key is {@code null}, the order does not match the keys,
+     *                                  or the map is not empty.
+     */
+    public static <K extends Comparable<K>> PostingIndex<K> build(K[] keys, int[] order,
+                                                                  WeightedTreeMap<K, Postings> map) {
+        if (map != null && map.size() != 0) {
+            throw new IllegalArgumentException("Map must be empty.");
+        }
+        Groups<K> groups = group(keys, order);
+        if (map == null) {
+            // The totals are computed in one pass when the index sets its weigher.
+            map = TreeMap.fromArrays(groups.keys(), groups.lists());
+        } else {
+            map.weighBy(Postings::size);
+            for (int i = 0; i < groups.keys().length; i++) {
+                map.put(groups.keys()[i], groups.lists()[i]);
+            }
+        }
+        PostingIndex<K> index = new PostingIndex<>(map);
+        index.size = keys.length;
+        return index;
+    }
+
+    /**
+     * Distinct keys in ascending order, with the posting list of each.
+     */
+    private record Groups<K>(K[] keys, Postings[] lists) {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K extends Comparable<K>> Groups<K> group(K[] keys, int[] sortedOrder) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Keys cannot be null.");
+        }
+        for (K key : keys) {
+            if (key == null) {
+                throw new IllegalArgumentException("Key cannot be null.");
+            }
+        }
+        int[] order = sortedOrder != null ? checkOrder(keys, sortedOrder) : sortedOrder(keys);
+
+        K[] distinct = (K[]) new Comparable[keys.length];
+        Postings[] lists = new Postings[keys.length];
+        int keyCount = 0;
+        int start = 0;
+        while (start < order.length) {
+            int end = start + 1;
+            while (end < order.length && keys[order[end]].compareTo(keys[order[start]]) == 0) {
+                end++;
+            }
+            int[] ids = new int[end - start];
+            for (int i = start; i < end; i++) {
+                ids[i - start] = order[i];
+            }
+            distinct[keyCount] = keys[order[start]];
+            lists[keyCount] = new Postings(ids, ids.length);
+            keyCount++;
+            start = end;
+        }
+        return new Groups<>(Arrays.copyOf(distinct, keyCount), Arrays.copyOf(lists, keyCount));
+    }
+
+    private static <K extends Comparable<K>> int[] sortedOrder(K[] keys) {
+        Integer[] boxed = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            boxed[i] = i;
+        }
+        // Stable sort, so records with equal keys stay in ascending id order.
+        Arrays.sort(boxed, (a, b) -> keys[a].compareTo(keys[b]));
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    /**
+     * Verifies in linear time that a caller-supplied order lists every record once, sorted by (key, id).
+     */
+    private static <K extends Comparable<K>> int[] checkOrder(K[] keys, int[] order) {
+        if (order.length != keys.length) {
+            throw new IllegalArgumentException("Order must list every record exactly once.");
+        }
+        boolean[] seen = new boolean[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            int id = order[i];
+            if (id < 0 || id >= keys.length || seen[id]) {
+                throw new IllegalArgumentException("Order must list every record exactly once.");
+            }
+            seen[id] = true;
+            if (i > 0) {
+                int cmp = keys[order[i - 1]].compareTo(keys[id]);
+                if (cmp > 0 || (cmp == 0 && order[i - 1] > id)) {
+                    throw new IllegalArgumentException("Order must be sorted by key, then id.");
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Retrieves the number of (key, id) pairs in the index.
+     *
+     * @return the number of indexed records.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of distinct keys in the index.
+     *
+     * @return the number of distinct keys.
+     */
+    public int keyCount() {
+        return map.size();
+    }
+
+    /**
+     * Starts recording lookup and insert metrics for the index's map, if it is a {@link TreeMap}; see
+     * {@link TreeMap#instrument(String)}. Maps of other types are left as they are.
+     *
+     * @param name the name of the index, such as {@code authors}.
+     */
+    public void instrument(String name) {
+        if (map instanceof TreeMap<K, Postings> tree) {
+            tree.instrument(name);
+        }
+    }
+
+    /**
+     * Adds a record id under the specified key.
+     *
+     * @param key the key of the record.
+     * @param id the id of the record.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    public void add(K key, int id) {
+        Postings postings = map.get(key);
+        if (postings == null) {
+            postings = new Postings();
+            postings.add(id);
+            map.put(key, postings);
+            size++;
+        } else if (postings.add(id)) {
+            map.reweigh(key);
+            size++;
+        }
+    }
+
+    /**
+     * Removes a record id from under the specified key. A key left without records is removed from the index.
+     *
+     * @param key the key the record was indexed under.
+     * @param id the id of the record.
+     * @return {@code true} if the record was removed; {@code false} if it was not indexed under that key.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    public boolean remove(K key, int id) {
+        Postings postings = map.get(key);
+        if (postings == null || !postings.remove(id)) {
+            return false;
+        }
+        if (postings.size() == 0) {
+            map.remove(key);
+        } else {
+            map.reweigh(key);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Retrieves the ids of all records with the specified key.
+     *
+     * @param key the key of interest.
+     * @return the posting list for the key, or {@code null} if no record has that key.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    public Postings get(K key) {
+        return map.get(key);
+    }
+
+    /**
+     * Retrieves the id of the record at the specified position in (key, id) order.
+     *
+     * @param position the zero-based position.
+     * @return the id of the record at that position.
+     * @throws IndexOutOfBoundsException if the position is negative or not less than {@link #size()}.
+     */
+    public int select(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Index " + position + " out of bounds for size " + size);
+        }
+        K key = map.selectWeighted(position);
+        return map.get(key).get(position - map.weightBefore(key));
+    }
+
+    /**
+     * Counts the records whose key lies in the specified range, without visiting them.
+     *
+     * @param from the lower bound, or {@code null} for no lower bound.
+     * @param fromInclusive {@code true} if records with a key equal to {@code from} are counted.
+     * @param to the upper bound, or {@code null} for no upper bound.
+     * @param toInclusive {@code true} if records with a key equal to {@code to} are counted.
+     * @return the number of records in the range.
+     */
+    public int rangeSize(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        int[] bounds = rangeBounds(from, fromInclusive, to, toInclusive);
+        return bounds[1] - bounds[0];
+    }
+
+    /**
+     * Retrieves the ids of the records whose key lies in the specified range.
+     *
+     * @param from the lower bound, or {@code null} for no lower bound.
+     * @param fromInclusive {@code true} if records with a key equal to {@code from} are included.
+     * @param to the upper bound, or {@code null} for no upper bound.
+     * @param toInclusive {@code true} if records with a key equal to {@code to} are included.
+     * @return a new array of the ids, in (key, id) order.
+     */
+    public int[] rangeIds(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        int[] bounds = rangeBounds(from, fromInclusive, to, toInclusive);
+        int[] ids = new int[bounds[1] - bounds[0]];
+        int count = 0;
+        while (count < ids.length) {
+            // Both bounds fall between posting lists, so each step copies one whole list.
+            Postings postings = map.get(map.selectWeighted(bounds[0] + count));
+            System.arraycopy(postings.ids, 0, ids, count, postings.count);
+            count += postings.count;
+        }
+        return ids;
+    }
+
+    /**
+     * Retrieves the ids of the records whose key satisfies a predicate. Each distinct key is tested once.
+     *
+     * @param keyFilter the test for each key.
+     * @return a new array of the ids, in (key, id) order.
+     */
+    public int[] matchingIds(Predicate<? super K> keyFilter) {
+        int[] ids = new int[size];
+        int[] count = new int[1];
+        map.forEach((key, postings) -> {
+            if (keyFilter.test(key)) {
+                System.arraycopy(postings.ids, 0, ids, count[0], postings.count);
+                count[0] += postings.count;
+            }
+        });
+        return count[0] == ids.length ? ids : Arrays.copyOf(ids, count[0]);
+    }
+
+    /**
+     * Finds the position of the first record in the range and of the first record past it.
+     */
+    private int[] rangeBounds(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        int start = from == null ? 0 : map.weightBefore(from) + (fromInclusive ? 0 : countOf(from));
+        int end = to == null ? size : map.weightBefore(to) + (toInclusive ? countOf(to) : 0);
+        return new int[]{start, Math.max(start, end)};
+    }
+
+    private int countOf(K key) {
+        Postings postings = map.get(key);
+        return postings == null ? 0 : postings.count;
+    }
+
+    /**
+     * Retrieves every record id in (key, id) order.
+     *
+     * @return a new array of {@link #size()} ids.
+     */
+    public int[] toIdArray() {
+        int[] ids = new int[size];
+        PrimitiveIterator.OfInt iterator = iterator();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = iterator.nextInt();
+        }
+        return ids;
+    }
+
+    /**
+     * Retrieves an iterator over all record ids in (key, id) order.
+     *
+     * @return an iterator over the indexed ids.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int position;
+            private Postings postings;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public int nextInt() {
+                if (position >= size) {
+                    throw new NoSuchElementException();
+                }
+                if (postings == null || index == postings.count) {
+                    postings = map.get(map.selectWeighted(position));
+                    index = 0;
+                }
+                position++;
+                return postings.ids[index++];
+            }
+        };
+    }
+}
@@ -0,0 +1,179 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+public class PostingIndexTest {
+
+    @Test
+    public void testBuildKeepsDuplicateKeys() {
+        PostingIndex<Integer> index = PostingIndex.build(new Integer[]{2008, 1997, 2008, 1997, 2005});
+        assertEquals(5, index.size());
+        assertEquals(3, index.keyCount());
+        assertEquals(2, index.get(2008).size());
+        assertEquals(0, index.get(2008).get(0));
+        assertEquals(2, index.get(2008).get(1));
+        assertNull(index.get(2000));
+    }
+
+    @Test
+    public void testSelectInKeyThenIdOrder() {
+        PostingIndex<Integer> index = PostingIndex.build(new Integer[]{2008, 1997, 2008, 1997, 2005});
+        int[] expected = {1, 3, 4, 0, 2};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], index.select(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> index.select(5));
+    }
+
+    @Test
+    public void testIteratorMatchesSelect() {
+        PostingIndex<String> index = PostingIndex.build(new String[]{"b", "a", "c", "a", "b", "a"});
+        PrimitiveIterator.OfInt iterator = index.iterator();
+        for (int i = 0; i < index.size(); i++) {
+            assertTrue(iterator.hasNext());
+            assertEquals(index.select(i), iterator.nextInt());
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testAddKeepsPostingsSorted() {
+        PostingIndex<String> index = new PostingIndex<>();
+        index.add("x", 5);
+        index.add("x", 1);
+        index.add("y", 3);
+        index.add("x", 3);
+        index.add("x", 3);
+        assertEquals(4, index.size());
+        assertEquals(2, index.keyCount());
+        assertEquals(1, index.select(0));
+        assertEquals(3, index.select(1));
+        assertEquals(5, index.select(2));
+        assertEquals(3, index.select(3));
+    }
+
+    @Test
+    public void testBuildNullKey() {
+        assertThrows(IllegalArgumentException.class, () -> PostingIndex.build(new String[]{"a", null}));
+    }
+
+    @Test
+    public void testBuildIntoPrimitiveMap() {
+        PostingIndex<Integer> index = PostingIndex.build(new Integer[]{2008, 1997, 2008}, new IntTreeMap<>());
+        assertEquals(3, index.size());
+        assertEquals(2, index.keyCount());
+        assertEquals(1, index.select(0));
+        assertEquals(0, index.select(1));
+        assertEquals(2, index.select(2));
+
+        IntTreeMap<PostingIndex.Postings> used = new IntTreeMap<>();
+        used.put(1, null);
+        assertThrows(IllegalArgumentException.class, () -> PostingIndex.build(new Integer[]{1}, used));
+        IllegalArgumentException noMap = assertThrows(IllegalArgumentException.class,
+                () -> PostingIndex.build(new Integer[]{1}, null));
+        assertEquals("Map cannot be null.", noMap.getMessage());
+    }
+
+    @Test
+    public void testBuildFromKnownOrder() {
+        Integer[] keys = {2008, 1997, 2008, 1997, 2005};
+        PostingIndex<Integer> sorted = PostingIndex.build(keys);
+        int[] order = sorted.toIdArray();
+        assertArrayEquals(new int[]{1, 3, 4, 0, 2}, order);
+
+        PostingIndex<Integer> rebuilt = PostingIndex.build(keys, order, new IntTreeMap<>());
+        assertArrayEquals(order, rebuilt.toIdArray());
+        assertEquals(3, rebuilt.keyCount());
+        assertThrows(IllegalArgumentException.class,
+                () -> PostingIndex.build(keys, new int[]{0, 1, 2, 3, 4}, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> PostingIndex.build(keys, new int[]{1, 3, 4, 0}, null));
+    }
+
+    @Test
+    public void testRangeAndMatchingIds() {
+        PostingIndex<Integer> index = PostingIndex.build(new Integer[]{2008, 1997, 2008, 1997, 2005},
+                new IntTreeMap<>());
+        assertArrayEquals(new int[]{1, 3, 4}, index.rangeIds(1990, true, 2005, true));
+        assertArrayEquals(new int[]{1, 3}, index.rangeIds(1990, true, 2005, false));
+        assertArrayEquals(new int[]{4, 0, 2}, index.rangeIds(1997, false, null, true));
+        assertEquals(5, index.rangeSize(null, true, null, true));
+        assertEquals(0, index.rangeSize(2006, true, 2000, true));
+        assertArrayEquals(new int[]{0, 2}, index.matchingIds(year -> year > 2006));
+
+        PostingIndex<String> names = new PostingIndex<>();
+        names.add("b", 0);
+        assertEquals(1, names.rangeSize("a", true, "c", true));
+        names.add("a", 1);
+        assertArrayEquals(new int[]{1, 0}, names.rangeIds("a", true, "c", true));
+    }
+
+    @Test
+    public void testRemoveDropsEmptyKeys() {
+        PostingIndex<Integer> index = PostingIndex.build(new Integer[]{7, 3, 7, 5}, new IntTreeMap<>());
+        assertTrue(index.remove(7, 0));
+        assertFalse(index.remove(7, 0));
+        assertFalse(index.remove(4, 1));
+        assertArrayEquals(new int[]{1, 3, 2}, index.toIdArray());
+        assertTrue(index.remove(3, 1));
+        assertEquals(2, index.size());
+        assertEquals(2, index.keyCount());
+        assertNull(index.get(3));
+        assertArrayEquals(new int[]{3, 2}, index.rangeIds(null, false, null, false));
+        index.add(3, 0);
+        assertArrayEquals(new int[]{0, 3, 2}, index.toIdArray());
+    }
+
+    /**
+     * An {@link IntTreeMap} that fails the test if anything copies it out in full.
+     */
+    private static class NoCopyMap extends IntTreeMap<PostingIndex.Postings> {
+        @Override
+        public PostingIndex.Postings[] toValueArray(PostingIndex.Postings[] array) {
+            return fail("Postings were copied out of the map.");
+        }
+
+        @Override
+        public Integer[] toKeyArray(Integer[] array) {
+            return fail("Keys were copied out of the map.");
+        }
+    }
+
+    @Test
+    public void testEditsThenLookupsWithoutCopying() {
+        Integer[] years = {2008, 1997, 2008, 1997, 2005};
+        PostingIndex<Integer> index = PostingIndex.build(years, new NoCopyMap());
+        java.util.TreeSet<Long> expected = new java.util.TreeSet<>();
+        for (int id = 0; id < years.length; id++) {
+            expected.add((long) years[id] << 32 | id);
+        }
+        Random random = new Random(6);
+        for (int i = 0; i < 2_000; i++) {
+            int year = 1990 + random.nextInt(20);
+            int id = random.nextInt(100);
+            if (random.nextBoolean()) {
+                index.add(year, id);
+                expected.add((long) year << 32 | id);
+            } else {
+                assertEquals(expected.remove((long) year << 32 | id), index.remove(year, id));
+            }
+            assertEquals(expected.size(), index.size());
+            if (!expected.isEmpty()) {
+                int position = random.nextInt(expected.size());
+                long record = expected.stream().skip(position).findFirst().orElseThrow();
+                assertEquals((int) record, index.select(position));
+            }
+            int from = 1990 + random.nextInt(20);
+            int to = 1990 + random.nextInt(20);
+            int[] range = from > to ? new int[0]
+                    : expected.subSet((long) from << 32, (long) to << 32).stream().mapToInt(Long::intValue).toArray();
+            assertEquals(range.length, index.rangeSize(from, true, to, false));
+            assertArrayEquals(range, index.rangeIds(from, true, to, false));
+        }
+        assertArrayEquals(expected.stream().mapToInt(Long::intValue).toArray(), index.toIdArray());
+        assertArrayEquals(expected.stream().filter(r -> r >> 32 > 2000).mapToInt(Long::intValue).toArray(),
+                index.matchingIds(year -> year > 2000));
+    }
+}
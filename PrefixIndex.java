@@ -0,0 +1,356 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * A type-ahead index that finds records by any prefix of their terms, best scoring first.
+ * <p>
+ * Terms are case-folded and stored once each, sorted, in a single {@code char[]} pool. This is a flattened trie: the
+ * terms below any trie node form a contiguous range of the sorted terms, so a prefix query only narrows a range with
+ * binary searches on one character position at a time. A {@link Search} keeps the range of every prefix typed so
+ * far, so each keystroke narrows the previous range instead of starting over, and deleting a character costs
+ * nothing.
+ * <p>
+ * Each term owns a posting list of record ids sorted best score first. A max-segment tree over the terms' best
+ * scores finds the top results of a range by expanding only the most promising subtrees, so a query visits
+ * O(k log n) nodes however many terms match.
+ */
+public class PrefixIndex {
+
+    private final char[] chars;
+    private final int[] termStarts;
+    private final int[] postingStarts;
+    private final int[] ids;
+    private final double[] scores;
+    private final int termCount;
+
+    // Segment tree over term indexes: leaves at [leaves, 2 * leaves), each node holding the best term of its range.
+    private final int leaves;
+    private final int[] best;
+
+    /**
+     * Builds an index over the specified terms.
+     *
+     * @param terms the terms; the same term may appear for several records, and a record may have several terms.
+     * @param termIds the record id carrying each term, in parallel with {@code terms}.
+     * @param scores the score of each record, indexed by id; higher scores are returned first.
+     * @throws IllegalArgumentException if an array or term is {@code null} or the arrays differ in length.
+     */
+    public PrefixIndex(String[] terms, int[] termIds, double[] scores) {
+        if (terms == null || termIds == null || scores == null) {
+            throw new IllegalArgumentException("Array cannot be null.");
+        }
+        if (terms.length != termIds.length) {
+            throw new IllegalArgumentException("Terms and ids must have the same length.");
+        }
+        this.scores = scores;
+
+        // Number the distinct folded terms, then sort just those; most terms repeat (authors especially).
+        HashMap<String, Integer> numbers = new HashMap<>();
+        int[] numberOf = new int[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i] == null) {
+                throw new IllegalArgumentException("Key cannot be null.");
+            }
+            String folded = fold(terms[i].strip());
+            Integer number = numbers.putIfAbsent(folded, numbers.size());
+            numberOf[i] = number != null ? number : numbers.size() - 1;
+        }
+        termCount = numbers.size();
+        String[] sorted = numbers.keySet().toArray(new String[0]);
+        Arrays.parallelSort(sorted);
+        int[] termOf = new int[termCount];
+        int charCount = 0;
+        for (int t = 0; t < termCount; t++) {
+            termOf[numbers.get(sorted[t])] = t;
+            charCount += sorted[t].length();
+        }
+        chars = new char[charCount];
+        termStarts = new int[termCount + 1];
+        for (int t = 0; t < termCount; t++) {
+            sorted[t].getChars(0, sorted[t].length(), chars, termStarts[t]);
+            termStarts[t + 1] = termStarts[t] + sorted[t].length();
+        }
+
+        // Bucket the record ids by term, then order each bucket best score first.
+        postingStarts = new int[termCount + 1];
+        for (int number : numberOf) {
+            postingStarts[termOf[number] + 1]++;
+        }
+        for (int t = 0; t < termCount; t++) {
+            postingStarts[t + 1] += postingStarts[t];
+        }
+        ids = new int[terms.length];
+        int[] next = Arrays.copyOf(postingStarts, termCount);
+        for (int i = 0; i < terms.length; i++) {
+            ids[next[termOf[numberOf[i]]]++] = termIds[i];
+        }
+        for (int t = 0; t < termCount; t++) {
+            sortPostings(postingStarts[t], postingStarts[t + 1]);
+        }
+
+        int n = 1;
+        while (n < termCount) {
+            n *= 2;
+        }
+        leaves = n;
+        best = new int[2 * n];
+        Arrays.fill(best, -1);
+        for (int t = 0; t < termCount; t++) {
+            best[n + t] = t;
+        }
+        for (int node = n - 1; node >= 1; node--) {
+            best[node] = better(best[2 * node], best[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Builds an index over the titles, original titles and individual authors of the books, scored by average
+     * rating. Authors are split at commas, so each co-author can be found by name.
+     *
+     * @param books the books, indexed by id.
+     * @return the index.
+     */
+    public static PrefixIndex build(Book[] books) {
+        List<String> terms = new ArrayList<>();
+        List<Integer> termIds = new ArrayList<>();
+        double[] scores = new double[books.length];
+        for (int id = 0; id < books.length; id++) {
+            Book book = books[id];
+            scores[id] = book.averageRating();
+            terms.add(book.title());
+            termIds.add(id);
+            if (!book.originalTitle().equals(book.title())) {
+                terms.add(book.originalTitle());
+                termIds.add(id);
+            }
+            for (String author : book.authors().split(",")) {
+                if (!author.isBlank()) {
+                    terms.add(author);
+                    termIds.add(id);
+                }
+            }
+        }
+        return new PrefixIndex(terms.toArray(new String[0]), termIds.stream().mapToInt(Integer::intValue).toArray(),
+                scores);
+    }
+
+    /**
+     * Retrieves the number of distinct terms in the index.
+     *
+     * @return the number of terms.
+     */
+    public int termCount() {
+        return termCount;
+    }
+
+    /**
+     * Finds the best scoring records with a term starting with the specified prefix.
+     *
+     * @param prefix the prefix, in any case.
+     * @param k the maximum number of records to return.
+     * @return the ids of up to {@code k} distinct matching records, best score first.
+     */
+    public int[] search(String prefix, int k) {
+        Search search = newSearch();
+        search.update(prefix);
+        return search.top(k);
+    }
+
+    /**
+     * Starts an incremental search, such as one following a search box as the user types.
+     *
+     * @return a search matching every term.
+     */
+    public Search newSearch() {
+        return new Search();
+    }
+
+    /**
+     * An incremental prefix search. It remembers the range of matching terms for every prefix of the current text.
+     */
+    public class Search {
+        private String text = "";
+        private int[] lows = new int[16];
+        private int[] highs = new int[16];
+
+        Search() {
+            lows[0] = 0;
+            highs[0] = termCount;
+        }
+
+        /**
+         * Changes the search text. Ranges for the prefix shared with the previous text are reused, so typing one more
+         * character costs one narrowing step.
+         *
+         * @param newText the new search text, in any case; leading blanks are ignored.
+         */
+        public void update(String newText) {
+            String folded = fold(newText.stripLeading());
+            int common = 0;
+            int limit = Math.min(text.length(), folded.length());
+            while (common < limit && text.charAt(common) == folded.charAt(common)) {
+                common++;
+            }
+            if (folded.length() >= lows.length) {
+                lows = Arrays.copyOf(lows, folded.length() * 2);
+                highs = Arrays.copyOf(highs, folded.length() * 2);
+            }
+            for (int depth = common; depth < folded.length(); depth++) {
+                char c = folded.charAt(depth);
+                lows[depth + 1] = lowerBound(lows[depth], highs[depth], depth, c);
+                highs[depth + 1] = lowerBound(lows[depth + 1], highs[depth], depth, (char) (c + 1));
+                if (c == Character.MAX_VALUE) {
+                    highs[depth + 1] = highs[depth];
+                }
+            }
+            text = folded;
+        }
+
+        /**
+         * Retrieves the number of distinct terms starting with the current text.
+         *
+         * @return the number of matching terms.
+         */
+        public int matchCount() {
+            return highs[text.length()] - lows[text.length()];
+        }
+
+        /**
+         * Retrieves the best scoring records matching the current text.
+         *
+         * @param k the maximum number of records to return.
+         * @return the ids of up to {@code k} distinct matching records, best score first.
+         */
+        public int[] top(int k) {
+            return PrefixIndex.this.top(lows[text.length()], highs[text.length()], k);
+        }
+    }
+
+    /**
+     * Finds the first term in {@code [low, high)} whose character at {@code depth} is at least {@code c}. All terms
+     * in the range share their first {@code depth} characters, so the range is sorted by that character, with terms
+     * that end at {@code depth} first.
+     */
+    private int lowerBound(int low, int high, int depth, char c) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int start = termStarts[mid] + depth;
+            if (start < termStarts[mid + 1] && chars[start] >= c) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A pending result: either a segment tree node, standing for every term below it, or the next unreturned
+     * posting of a single term. The score is the best any result it stands for can have.
+     */
+    private record Candidate(double score, int node, int term, int posting) {
+    }
+
+    private int[] top(int low, int high, int k) {
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score).reversed()
+                .thenComparingInt(Candidate::term));
+        // Seed the queue with the canonical segment tree nodes covering [low, high).
+        for (int l = low + leaves, h = high + leaves; l < h; l >>= 1, h >>= 1) {
+            if ((l & 1) == 1) {
+                offer(queue, l++);
+            }
+            if ((h & 1) == 1) {
+                offer(queue, --h);
+            }
+        }
+        int[] result = new int[Math.min(k, postingStarts[high] - postingStarts[low])];
+        int count = 0;
+        while (count < result.length && !queue.isEmpty()) {
+            Candidate candidate = queue.poll();
+            if (candidate.node() >= leaves) {
+                int term = candidate.node() - leaves;
+                queue.add(new Candidate(candidate.score(), 0, term, postingStarts[term]));
+            } else if (candidate.node() > 0) {
+                offer(queue, 2 * candidate.node());
+                offer(queue, 2 * candidate.node() + 1);
+            } else {
+                // A record with several matching terms is returned once, for its best term.
+                int id = ids[candidate.posting()];
+                if (!contains(result, count, id)) {
+                    result[count++] = id;
+                }
+                int next = candidate.posting() + 1;
+                if (next < postingStarts[candidate.term() + 1]) {
+                    queue.add(new Candidate(scores[ids[next]], 0, candidate.term(), next));
+                }
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Sorts the ids in {@code [from, to)} by descending score, then ascending id. Most posting lists are short and
+     * get an insertion sort; long ones, such as a prolific author's, a general sort.
+     */
+    private void sortPostings(int from, int to) {
+        if (to - from > 32) {
+            Integer[] sorted = new Integer[to - from];
+            for (int i = from; i < to; i++) {
+                sorted[i - from] = ids[i];
+            }
+            Arrays.sort(sorted, (a, b) -> {
+                int cmp = Double.compare(scores[b], scores[a]);
+                return cmp != 0 ? cmp : Integer.compare(a, b);
+            });
+            for (int i = from; i < to; i++) {
+                ids[i] = sorted[i - from];
+            }
+            return;
+        }
+        for (int i = from + 1; i < to; i++) {
+            int id = ids[i];
+            int j = i - 1;
+            while (j >= from && (scores[ids[j]] < scores[id] || scores[ids[j]] == scores[id] && ids[j] > id)) {
+                ids[j + 1] = ids[j];
+                j--;
+            }
+            ids[j + 1] = id;
+        }
+    }
+
+    private void offer(PriorityQueue<Candidate> queue, int node) {
+        int term = best[node];
+        if (term >= 0) {
+            queue.add(new Candidate(termScore(term), node, term, 0));
+        }
+    }
+
+    private static boolean contains(int[] array, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (array[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double termScore(int term) {
+        return scores[ids[postingStarts[term]]];
+    }
+
+    private int better(int a, int b) {
+        if (a < 0 || b < 0) {
+            return Math.max(a, b);
+        }
+        return termScore(b) > termScore(a) ? b : a;
+    }
+
+    private static String fold(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+public class PrefixIndexTest {
+
+    private static final Book[] BOOKS = {
+            new Book("1", "J.K. Rowling, Mary GrandPre", 1997, "Harry Potter and the Philosopher's Stone",
+                    "Harry Potter and the Sorcerer's Stone", 4.44),
+            new Book("2", "Harper Lee", 1960, "To Kill a Mockingbird", "To Kill a Mockingbird", 4.25),
+            new Book("3", "J.K. Rowling", 1998, "Harry Potter and the Chamber of Secrets",
+                    "Harry Potter and the Chamber of Secrets", 4.37),
+            new Book("4", "Thomas Harris", 1988, "The Silence of the Lambs", "The Silence of the Lambs", 4.15),
+            new Book("5", "F. Scott Fitzgerald", 1925, "The Great Gatsby", "The Great Gatsby", 3.89),
+    };
+
+    @Test
+    public void testPrefixMatchesTitlesAndAuthorsBestFirst() {
+        PrefixIndex index = PrefixIndex.build(BOOKS);
+        assertArrayEquals(new int[]{0, 2, 1}, index.search("HAR", 10));
+        assertArrayEquals(new int[]{0, 2}, index.search("harry potter and the", 10));
+        assertArrayEquals(new int[]{0}, index.search("harry potter and the p", 10));
+        assertArrayEquals(new int[]{0}, index.search("mary", 10));
+        assertArrayEquals(new int[]{3, 4}, index.search("the ", 10));
+        assertArrayEquals(new int[0], index.search("zebra", 10));
+        assertArrayEquals(new int[]{0, 2}, index.search("", 2));
+    }
+
+    @Test
+    public void testIncrementalSearchMatchesFreshSearch() {
+        Random random = new Random(16);
+        String[] terms = new String[2000];
+        int[] ids = new int[terms.length];
+        double[] scores = new double[500];
+        for (int i = 0; i < scores.length; i++) {
+            // Distinct scores, so the expected order has no ties.
+            scores[i] = random.nextDouble();
+        }
+        for (int i = 0; i < terms.length; i++) {
+            StringBuilder term = new StringBuilder();
+            for (int j = random.nextInt(6); j >= 0; j--) {
+                term.append((char) ('a' + random.nextInt(3)));
+            }
+            terms[i] = term.toString();
+            ids[i] = random.nextInt(scores.length);
+        }
+        PrefixIndex index = new PrefixIndex(terms, ids, scores);
+        PrefixIndex.Search search = index.newSearch();
+        String text = "";
+        for (int step = 0; step < 500; step++) {
+            if (!text.isEmpty() && random.nextInt(3) == 0) {
+                text = text.substring(0, random.nextInt(text.length()));
+            } else {
+                text += (char) ('a' + random.nextInt(3));
+            }
+            search.update(text);
+            assertArrayEquals(bruteForce(terms, ids, scores, text, 5), search.top(5), text);
+        }
+    }
+
+    private static int[] bruteForce(String[] terms, int[] ids, double[] scores, String prefix, int k) {
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i].toLowerCase(Locale.ROOT).startsWith(prefix) && !matches.contains(ids[i])) {
+                matches.add(ids[i]);
+            }
+        }
+        return matches.stream().sorted(Comparator.comparingDouble((Integer id) -> -scores[id]))
+                .limit(k).mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    public void testLongPostingListOrderedByScore() {
+        String[] terms = new String[100];
+        int[] ids = new int[terms.length];
+        double[] scores = new double[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = "Untitled";
+            ids[i] = i;
+            scores[i] = i % 10;
+        }
+        PrefixIndex index = new PrefixIndex(terms, ids, scores);
+        assertEquals(1, index.termCount());
+        assertArrayEquals(new int[]{9, 19, 29}, index.search("unt", 3));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new PrefixIndex(null, new int[0], new double[0]));
+        assertThrows(IllegalArgumentException.class, () -> new PrefixIndex(new String[1], new int[1], new double[1]));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PrefixIndex(new String[]{"a"}, new int[0], new double[1]));
+    }
+}
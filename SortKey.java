@@ -0,0 +1,87 @@
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * A string paired with its collation key, so that maps keyed by it sort text the way readers expect in a locale:
+ * accented letters next to their base letters ("&Eacute;mile" before "Zadie") and case as a tie-breaker rather than
+ * uppercase before all lowercase.
+ * <p>
+ * The key is computed once, when the sort key is created, as the bytes of a {@link java.text.CollationKey}.
+ * Comparing two sort keys is then an unsigned byte comparison, with no per-character collation work on each tree
+ * descent. Strings the collator cannot tell apart are ordered by {@link String#compareTo(String)}, so two sort keys
+ * are equal only if their strings are.
+ */
+public final class SortKey implements Comparable<SortKey> {
+
+    private final String text;
+    private final byte[] key;
+
+    private SortKey(String text, byte[] key) {
+        this.text = text;
+        this.key = key;
+    }
+
+    /**
+     * Creates the sort key of a string.
+     *
+     * @param text the string.
+     * @param collator the collator that orders strings; used only during this call.
+     * @return the sort key.
+     * @throws IllegalArgumentException if the string or collator is {@code null}.
+     */
+    public static SortKey of(String text, Collator collator) {
+        if (text == null || collator == null) {
+            throw new IllegalArgumentException("Text and collator cannot be null.");
+        }
+        return new SortKey(text, collator.getCollationKey(text).toByteArray());
+    }
+
+    /**
+     * Retrieves a function that creates sort keys for the specified locale. Collators are not thread-safe, so each
+     * thread that calls the function gets its own.
+     *
+     * @param locale the locale whose ordering to use.
+     * @return the function.
+     */
+    public static Function<String, SortKey> forLocale(Locale locale) {
+        ThreadLocal<Collator> collators = ThreadLocal.withInitial(() -> Collator.getInstance(locale));
+        return text -> of(text, collators.get());
+    }
+
+    /**
+     * Retrieves the string.
+     *
+     * @return the string the key was created from.
+     */
+    public String text() {
+        return text;
+    }
+
+    @Override
+    public int compareTo(SortKey other) {
+        int cmp = Arrays.compareUnsigned(key, other.key);
+        return cmp != 0 ? cmp : text.compareTo(other.text);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SortKey other && text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
+
+    /**
+     * Retrieves the string, so a sort key prints as the text it stands for.
+     *
+     * @return the string.
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Function;
+
+public class SortKeyTest {
+
+    @Test
+    public void testOrdersLikeReaders() {
+        Function<String, SortKey> sortKey = SortKey.forLocale(Locale.ENGLISH);
+        String[] names = {"Zadie Smith", "\u00c9mile Zola", "apple", "Banana", "Emily Bront\u00eb",
+                "emily bront\u00eb"};
+        SortKey[] keys = Arrays.stream(names).map(sortKey).toArray(SortKey[]::new);
+        Arrays.sort(keys);
+        assertArrayEquals(new String[]{"apple", "Banana", "\u00c9mile Zola", "emily bront\u00eb", "Emily Bront\u00eb",
+                "Zadie Smith"}, Arrays.stream(keys).map(SortKey::text).toArray(String[]::new));
+        // By character code, both accented and lowercase names would come after "Zadie Smith".
+        assertTrue("\u00c9mile Zola".compareTo("Zadie Smith") > 0);
+    }
+
+    @Test
+    public void testMatchesCollationKeysAndStringEquality() {
+        Collator collator = Collator.getInstance(Locale.FRENCH);
+        Random random = new Random(29);
+        String alphabet = "aAeE\u00e9\u00c9\u00e8zZ -'";
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(6); j >= 0; j--) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            strings.add(text.toString());
+        }
+        for (String a : strings) {
+            SortKey keyA = SortKey.of(a, collator);
+            for (String b : strings) {
+                SortKey keyB = SortKey.of(b, collator);
+                // Compared with the collation keys rather than Collator.compare, which in the JDK's French rules
+                // can disagree with its own keys on strings differing only in accents and ignorable punctuation.
+                int expected = collator.getCollationKey(a).compareTo(collator.getCollationKey(b));
+                int actual = keyA.compareTo(keyB);
+                if (expected != 0) {
+                    assertEquals(Integer.signum(expected), Integer.signum(actual), a + " vs " + b);
+                }
+                assertEquals(a.equals(b), actual == 0, a + " vs " + b);
+                assertEquals(a.equals(b), keyA.equals(keyB));
+            }
+        }
+        assertEquals("\u00e9t\u00e9", SortKey.of("\u00e9t\u00e9", collator).toString());
+        assertThrows(IllegalArgumentException.class, () -> SortKey.of(null, collator));
+    }
+
+    @Test
+    public void testPostingIndexInLocaleOrder() {
+        Function<String, SortKey> sortKey = SortKey.forLocale(Locale.ENGLISH);
+        String[] authors = {"Zadie Smith", "\u00c9mile Zola", "albert camus", "Zadie Smith"};
+        PostingIndex<SortKey> index = PostingIndex.build(Arrays.stream(authors).map(sortKey).toArray(SortKey[]::new));
+        assertArrayEquals(new int[]{2, 1, 0, 3}, index.toIdArray());
+        assertEquals(2, index.get(sortKey.apply("Zadie Smith")).size());
+        assertArrayEquals(new int[]{1}, index.matchingIds(key -> key.text().startsWith("\u00c9")));
+    }
+}
@@ -1,7 +1,24 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
 /**
- * A simple implementation of a binary search tree-type map.
+ * A self-balancing (AVL) binary search tree-type map.
  * This class provides methods to insert, retrieve, and manage key/value pairs in a sorted order based on the keys.
  * The keys in the map must implement the Comparable interface to ensure they can be compared and ordered.
+ * The heights of the two subtrees of any node differ by at most one, so the tree height stays O(log n) even when
+ * keys are inserted in sorted order. Every node also records the size of its subtree, which lets the map find the
+ * i-th key ({@link #select(int)}) or the position of a key ({@link #rank(Comparable)}) in O(log n). Once a weigher
+ * is set, each node also records the total weight of its subtree's values; see {@link WeightedTreeMap}.
  *
  * @param <K> the type of keys maintained by this map; must extend {@link Comparable}.
  * @param <V> the type of values maintained by this map.
@@ -9,32 +26,106 @@
  * @author Vivek Vemulakonda
  * @version 1.0
  */
-public class TreeMap<K extends Comparable<K>, V> implements TreeMapInterface<K, V> {
+public class TreeMap<K extends Comparable<K>, V> implements WeightedTreeMap<K, V> {
 
     private int size;
     private TmNode root;
+    private int modCount;
+    // Null until weighBy() is called; subtree totals are only kept while it is set.
+    private ToIntFunction<? super V> weigher;
+    // Set by instrument(); null keeps lookups and inserts free of timing code.
+    private Instruments instruments;
+    // The sum of the depths of all nodes, the root counting as 1; only kept up to date while instrumented.
+    private long depthSum;
+
+    /**
+     * The metrics recorded for an instrumented map.
+     */
+    private static final class Instruments {
+        final Metrics.Histogram getNanos;
+        final Metrics.Histogram getDepth;
+        final Metrics.Counter getMisses;
+        final Metrics.Histogram putNanos;
+        // Copied from the tree after every change, so the gauges can be read from the metrics thread.
+        volatile int size;
+        volatile int height;
+        volatile double averageDepth;
+
+        Instruments(Metrics.Group group) {
+            getNanos = group.histogram("get.nanos");
+            getDepth = group.histogram("get.depth");
+            getMisses = group.counter("get.misses");
+            putNanos = group.histogram("put.nanos");
+        }
+    }
 
     /**
      * A node in the binary search tree.
-     * Contains a key-value pair and references to left and right child nodes.
+     * Contains a key-value pair, references to its parent and child nodes, and the height and size of its subtree.
+     * The parent reference lets lookups, inserts and in-order walks run as plain loops.
+     * Nodes are handed out directly as the entries of range views, so iterating a range allocates nothing per step.
      */
-    private class TmNode {
+    private class TmNode implements Map.Entry<K, V> {
         K key;
         V value;
         TmNode left;
         TmNode right;
+        TmNode parent;
+        int height;
+        int count;
+        int total;
 
         /**
          * Constructs a new node with the specified key and value.
          *
          * @param key the key of the node.
          * @param value the value associated with the key.
+         * @param parent the parent of the node, or {@code null} for the root.
          */
-        TmNode(K key, V value) {
+        TmNode(K key, V value, TmNode parent) {
             this.key = key;
             this.value = value;
             this.left = null;
             this.right = null;
+            this.parent = parent;
+            this.height = 1;
+            this.count = 1;
+            this.total = weigher != null ? weigher.applyAsInt(value) : 0;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry)) {
+                return false;
+            }
+            return key.equals(entry.getKey()) && Objects.equals(value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
         }
     }
 
@@ -46,6 +137,129 @@ public class TreeMap<K extends Comparable<K>, V> implements TreeMapInterface<K,
         size = 0;
     }
 
+    /**
+     * Builds a perfectly balanced TreeMap from parallel key and value arrays.
+     * The input is sorted once if it is not already in key order; the tree itself is then built in linear time.
+     * When a key appears more than once, the value that appears last wins, just as with repeated calls to
+     * {@link #put(Comparable, Object)}. The arrays are not modified.
+     *
+     * @param keys the keys to load; must not contain {@code null}.
+     * @param values the values to load; {@code values[i]} is associated with {@code keys[i]}.
+     * @param <K> the type of keys maintained by the map.
+     * @param <V> the type of values maintained by the map.
+     * @return a new map holding the specified pairs.
+     * @throws IllegalArgumentException if either array or any key is {@code null}, or the arrays differ in length.
+     */
+    public static <K extends Comparable<K>, V> TreeMap<K, V> fromArrays(K[] keys, V[] values) {
+        if (keys == null || values == null) {
+            throw new IllegalArgumentException("Arrays cannot be null.");
+        }
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Key and value arrays must have the same length.");
+        }
+        boolean sorted = true;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                throw new IllegalArgumentException("Key cannot be null.");
+            }
+            if (sorted && i > 0 && keys[i - 1].compareTo(keys[i]) > 0) {
+                sorted = false;
+            }
+        }
+        if (!sorted) {
+            List<Map.Entry<K, V>> entries = new ArrayList<>(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(keys[i], values[i]));
+            }
+            return fromEntries(entries);
+        }
+        TreeMap<K, V> map = new TreeMap<>();
+        map.load(keys.clone(), values.clone(), keys.length);
+        return map;
+    }
+
+    /**
+     * Builds a perfectly balanced TreeMap from a collection of entries.
+     * The entries are sorted once by key; the tree itself is then built in linear time.
+     * When a key appears more than once, the entry that comes last in iteration order wins, just as with repeated
+     * calls to {@link #put(Comparable, Object)}.
+     *
+     * @param entries the key/value pairs to load; no key may be {@code null}.
+     * @param <K> the type of keys maintained by the map.
+     * @param <V> the type of values maintained by the map.
+     * @return a new map holding the specified pairs.
+     * @throws IllegalArgumentException if the collection or any key is {@code null}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <K extends Comparable<K>, V> TreeMap<K, V> fromEntries(
+            Collection<? extends Map.Entry<K, V>> entries) {
+        if (entries == null) {
+            throw new IllegalArgumentException("Entries cannot be null.");
+        }
+        Map.Entry<K, V>[] sorted = entries.toArray(new Map.Entry[0]);
+        for (Map.Entry<K, V> entry : sorted) {
+            if (entry.getKey() == null) {
+                throw new IllegalArgumentException("Key cannot be null.");
+            }
+        }
+        // Arrays.sort on objects is stable, so equal keys keep their input order and the last one can win.
+        Arrays.sort(sorted, (a, b) -> a.getKey().compareTo(b.getKey()));
+        K[] keys = (K[]) new Comparable[sorted.length];
+        V[] values = (V[]) new Object[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            keys[i] = sorted[i].getKey();
+            values[i] = sorted[i].getValue();
+        }
+        TreeMap<K, V> map = new TreeMap<>();
+        map.load(keys, values, keys.length);
+        return map;
+    }
+
+    /**
+     * Replaces the contents of this map with sorted pairs, keeping only the last value for each run of equal keys.
+     * The arrays are compacted in place.
+     *
+     * @param keys keys in non-decreasing order.
+     * @param values values matching the keys.
+     * @param count the number of pairs to load.
+     */
+    private void load(K[] keys, V[] values, int count) {
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i + 1 < count && keys[i].compareTo(keys[i + 1]) == 0) {
+                continue;
+            }
+            keys[distinct] = keys[i];
+            values[distinct] = values[i];
+            distinct++;
+        }
+        root = build(keys, values, 0, distinct, null);
+        size = distinct;
+        modCount++;
+        if (instruments != null) {
+            depthSum = depthSum(root, 1);
+        }
+        publishShape();
+    }
+
+    /**
+     * Builds a balanced subtree from the sorted, distinct pairs in the range {@code [from, to)}.
+     * Recursion depth is the height of the resulting tree, which is about log2(n).
+     *
+     * @return the root of the subtree, or {@code null} if the range is empty.
+     */
+    private TmNode build(K[] keys, V[] values, int from, int to, TmNode parent) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        TmNode node = new TmNode(keys[mid], values[mid], parent);
+        node.left = build(keys, values, from, mid, node);
+        node.right = build(keys, values, mid + 1, to, node);
+        update(node);
+        return node;
+    }
+
     /**
      * Retrieves the number of key/value pair elements managed by the map.
      *
@@ -63,6 +277,9 @@ public class TreeMap<K extends Comparable<K>, V> implements TreeMapInterface<K,
     public void clear() {
         root = null;
         size = 0;
+        depthSum = 0;
+        modCount++;
+        publishShape();
     }
 
     /**
@@ -77,22 +294,79 @@ public class TreeMap<K extends Comparable<K>, V> implements TreeMapInterface<K,
         if (key == null) {
             throw new IllegalArgumentException("Key cannot be null.");
         }
-        TmNode node = get(root, key);
+        TmNode node = instruments == null ? getNode(key) : recordedGetNode(key);
         return node != null ? node.value : null;
     }
 
-    private TmNode get(TmNode node, K key) {
+    /**
+     * Starts recording metrics for this map in the {@link Metrics} group {@code TreeMap.<name>}: latency histograms
+     * for lookups and inserts, the number of nodes each lookup visits, lookup misses, and gauges for the size, height
+     * and average node depth. The gauges read values the map publishes after each change, never the tree itself, so
+     * they are safe to read from another thread while the map is being modified. The depth of every node is summed
+     * once here and then kept up to date by each insert, removal and rotation.
+     *
+     * @param name the name of the map, such as {@code isbn}.
+     */
+    public void instrument(String name) {
+        Metrics.Group group = Metrics.group("TreeMap." + name);
+        Instruments recorded = new Instruments(group);
+        depthSum = depthSum(root, 1);
+        instruments = recorded;
+        publishShape();
+        group.gauge("size", () -> recorded.size);
+        group.gauge("height", () -> recorded.height);
+        group.gauge("averageDepth", () -> recorded.averageDepth);
+    }
+
+    /**
+     * Copies the size, height and average depth to the gauges, if the map is instrumented. The height is kept in the
+     * root and the depth sum is kept up to date, so this costs O(1).
+     */
+    private void publishShape() {
+        if (instruments != null) {
+            instruments.size = size;
+            instruments.height = height(root);
+            instruments.averageDepth = size == 0 ? 0 : (double) depthSum / size;
+        }
+    }
+
+    private long depthSum(TmNode node, int depth) {
+        return node == null ? 0 : depth + depthSum(node.left, depth + 1) + depthSum(node.right, depth + 1);
+    }
+
+    private TmNode recordedGetNode(K key) {
+        long start = System.nanoTime();
+        int depth = 0;
+        TmNode node = root;
+        while (node != null) {
+            depth++;
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) {
+                break;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        instruments.getNanos.record(System.nanoTime() - start);
+        instruments.getDepth.record(depth);
         if (node == null) {
-            return null;
+            instruments.getMisses.increment();
         }
-        int cmp = key.compareTo(node.key);
-        if (cmp < 0) {
-            return get(node.left, key);
-        } else if (cmp > 0) {
-            return get(node.right, key);
-        } else {
-            return node;
+        return node;
+    }
+
+    private TmNode getNode(K key) {
+        TmNode node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
         }
+        return null;
     }
 
     /**
@@ -107,34 +381,724 @@ public class TreeMap<K extends Comparable<K>, V> implements TreeMapInterface<K,
         if (key == null) {
             throw new IllegalArgumentException("Key cannot be null.");
         }
-        root = put(root, key, value);
+        if (instruments == null) {
+            insert(key, value);
+            return;
+        }
+        long start = System.nanoTime();
+        insert(key, value);
+        instruments.putNanos.record(System.nanoTime() - start);
+        publishShape();
     }
 
-    private TmNode put(TmNode node, K key, V value) {
-        if (node == null) {
+    private void insert(K key, V value) {
+        if (root == null) {
+            root = new TmNode(key, value, null);
             size++;
-            return new TmNode(key, value);
+            depthSum = 1;
+            modCount++;
+            return;
         }
-        int cmp = key.compareTo(node.key);
+        TmNode node = root;
+        TmNode parent;
+        int cmp;
+        int depth = 1;
+        do {
+            parent = node;
+            depth++;
+            cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                node.value = value;
+                if (weigher != null) {
+                    reweighPath(node);
+                }
+                return;
+            }
+        } while (node != null);
+        TmNode added = new TmNode(key, value, parent);
         if (cmp < 0) {
-            node.left = put(node.left, key, value);
-        } else if (cmp > 0) {
-            node.right = put(node.right, key, value);
+            parent.left = added;
+        } else {
+            parent.right = added;
+        }
+        size++;
+        depthSum += depth;
+        modCount++;
+        for (TmNode ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.count++;
+            ancestor.total += added.total;
+        }
+        retrace(parent);
+    }
+
+    /**
+     * Removes the key/value pair with the specified key from the tree map, if it is present, and rebalances.
+     *
+     * @param key the key of the pair to remove.
+     * @return the value that was associated with the key, or {@code null} if the key was not found.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        TmNode node = getNode(key);
+        if (node == null) {
+            return null;
+        }
+        V removed = node.value;
+        if (node.left != null && node.right != null) {
+            // The successor has no left child, so it is unlinked instead once its pair has moved up.
+            TmNode next = first(node.right);
+            node.key = next.key;
+            node.value = next.value;
+            node = next;
+        }
+        TmNode parent = node.parent;
+        TmNode child = node.left != null ? node.left : node.right;
+        if (instruments != null) {
+            // The node goes and its one subtree moves up a level.
+            depthSum -= depth(node) + count(child);
+        }
+        replaceChild(node, child);
+        size--;
+        modCount++;
+        for (TmNode ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.count--;
+        }
+        // The node that took the successor's pair, if any, is on this path too.
+        if (weigher != null) {
+            reweighPath(parent);
+        }
+        retrace(parent);
+        publishShape();
+        return removed;
+    }
+
+    /**
+     * Walks from the specified node towards the root, updating heights and rebalancing, until a subtree is found
+     * whose height did not change. Nodes above that point keep their shape; callers adjust their subtree sizes.
+     *
+     * @param node the lowest node whose subtree changed.
+     */
+    private void retrace(TmNode node) {
+        while (node != null) {
+            int oldHeight = node.height;
+            node = balance(node);
+            if (node.height == oldHeight) {
+                return;
+            }
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Retrieves the height of the tree; an empty tree has height 0.
+     *
+     * @return the number of nodes on the longest root-to-leaf path.
+     */
+    int height() {
+        return height(root);
+    }
+
+    private int height(TmNode node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Retrieves the depth of a node, the root counting as 1, by walking up to the root.
+     */
+    private int depth(TmNode node) {
+        int depth = 0;
+        for (; node != null; node = node.parent) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private int count(TmNode node) {
+        return node == null ? 0 : node.count;
+    }
+
+    private int total(TmNode node) {
+        return node == null ? 0 : node.total;
+    }
+
+    /**
+     * Recomputes the height, subtree size and, if the map is weighted, subtree total of a node from its children.
+     */
+    private void update(TmNode node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.count = 1 + count(node.left) + count(node.right);
+        if (weigher != null) {
+            node.total = weigher.applyAsInt(node.value) + total(node.left) + total(node.right);
+        }
+    }
+
+    /**
+     * Recomputes the subtree totals of a node and of every node above it.
+     */
+    private void reweighPath(TmNode node) {
+        for (; node != null; node = node.parent) {
+            node.total = weigher.applyAsInt(node.value) + total(node.left) + total(node.right);
+        }
+    }
+
+    /**
+     * Recomputes the subtree totals below and including a node, children first. Recursion depth is the tree height.
+     */
+    private void reweighAll(TmNode node) {
+        if (node != null) {
+            reweighAll(node.left);
+            reweighAll(node.right);
+            node.total = weigher.applyAsInt(node.value) + total(node.left) + total(node.right);
+        }
+    }
+
+    /**
+     * Restores the AVL property at the specified node after one of its subtrees changed height by one.
+     *
+     * @param node the root of the subtree to rebalance.
+     * @return the new root of the subtree, already linked into the node's former parent.
+     */
+    private TmNode balance(TmNode node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        } else if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private TmNode rotateLeft(TmNode node) {
+        TmNode pivot = node.right;
+        // The node's left subtree moves down a level and the pivot's right subtree up; the two nodes swap levels.
+        depthSum += count(node.left) - count(pivot.right);
+        node.right = pivot.left;
+        if (pivot.left != null) {
+            pivot.left.parent = node;
+        }
+        replaceChild(node, pivot);
+        pivot.left = node;
+        node.parent = pivot;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private TmNode rotateRight(TmNode node) {
+        TmNode pivot = node.left;
+        depthSum += count(node.right) - count(pivot.left);
+        node.left = pivot.right;
+        if (pivot.right != null) {
+            pivot.right.parent = node;
+        }
+        replaceChild(node, pivot);
+        pivot.right = node;
+        node.parent = pivot;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    /**
+     * Links the replacement node into the position currently held by the specified node.
+     *
+     * @param node the node being replaced.
+     * @param replacement the node taking its place; may be {@code null}.
+     */
+    private void replaceChild(TmNode node, TmNode replacement) {
+        TmNode parent = node.parent;
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == node) {
+            parent.left = replacement;
         } else {
-            node.value = value;
+            parent.right = replacement;
+        }
+        if (replacement != null) {
+            replacement.parent = parent;
+        }
+    }
+
+    private TmNode first(TmNode node) {
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
         }
         return node;
     }
 
+    private TmNode last(TmNode node) {
+        if (node != null) {
+            while (node.right != null) {
+                node = node.right;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Retrieves the node that follows the specified node in key order.
+     *
+     * @param node a node in the tree.
+     * @return the in-order successor, or {@code null} if the node holds the largest key.
+     */
+    private TmNode successor(TmNode node) {
+        if (node.right != null) {
+            return first(node.right);
+        }
+        TmNode parent = node.parent;
+        while (parent != null && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    /**
+     * Retrieves the smallest key in the map.
+     *
+     * @return the smallest key, or {@code null} if the map is empty.
+     */
+    public K firstKey() {
+        TmNode node = first(root);
+        return node != null ? node.key : null;
+    }
+
+    /**
+     * Retrieves the largest key in the map.
+     *
+     * @return the largest key, or {@code null} if the map is empty.
+     */
+    public K lastKey() {
+        TmNode node = last(root);
+        return node != null ? node.key : null;
+    }
+
+    /**
+     * Retrieves the largest key less than or equal to the specified key.
+     *
+     * @param key the key to search for.
+     * @return the matching key, or {@code null} if there is none.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    public K floorKey(K key) {
+        return keyOf(floorNode(key, true));
+    }
+
+    /**
+     * Retrieves the largest key strictly less than the specified key.
+     *
+     * @param key the key to search for.
+     * @return the matching key, or {@code null} if there is none.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    public K lowerKey(K key) {
+        return keyOf(floorNode(key, false));
+    }
+
+    /**
+     * Retrieves the smallest key greater than or equal to the specified key.
+     *
+     * @param key the key to search for.
+     * @return the matching key, or {@code null} if there is none.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    public K ceilingKey(K key) {
+        return keyOf(ceilingNode(key, true));
+    }
+
+    /**
+     * Retrieves the smallest key strictly greater than the specified key.
+     *
+     * @param key the key to search for.
+     * @return the matching key, or {@code null} if there is none.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    public K higherKey(K key) {
+        return keyOf(ceilingNode(key, false));
+    }
+
+    /**
+     * Retrieves a view of the entries whose keys lie between the two specified keys, in key order.
+     * The view is backed by the map and walks the tree lazily: starting an iteration costs O(log n), and each
+     * further entry costs amortized O(1). Iterators fail fast if the map is structurally modified.
+     *
+     * @param fromKey the low endpoint of the range.
+     * @param fromInclusive {@code true} if the low endpoint is part of the range.
+     * @param toKey the high endpoint of the range.
+     * @param toInclusive {@code true} if the high endpoint is part of the range.
+     * @return a lazily iterated view of the range.
+     * @throws IllegalArgumentException if either key is {@code null}.
+     */
+    public Iterable<Map.Entry<K, V>> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (fromKey == null || toKey == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        return new RangeView(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    /**
+     * Retrieves a view of the entries whose keys are less than (or equal to, if {@code inclusive}) the specified key.
+     *
+     * @param toKey the high endpoint of the range.
+     * @param inclusive {@code true} if the high endpoint is part of the range.
+     * @return a lazily iterated view of the range.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     * @see #subMap(Comparable, boolean, Comparable, boolean)
+     */
+    public Iterable<Map.Entry<K, V>> headMap(K toKey, boolean inclusive) {
+        if (toKey == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        return new RangeView(null, false, toKey, inclusive);
+    }
+
+    /**
+     * Retrieves a view of the entries whose keys are greater than (or equal to, if {@code inclusive}) the specified
+     * key.
+     *
+     * @param fromKey the low endpoint of the range.
+     * @param inclusive {@code true} if the low endpoint is part of the range.
+     * @return a lazily iterated view of the range.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     * @see #subMap(Comparable, boolean, Comparable, boolean)
+     */
+    public Iterable<Map.Entry<K, V>> tailMap(K fromKey, boolean inclusive) {
+        if (fromKey == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        return new RangeView(fromKey, inclusive, null, false);
+    }
+
+    /**
+     * Retrieves the key at the specified position in key order.
+     *
+     * @param index the zero-based position of the key.
+     * @return the key with exactly {@code index} smaller keys in the map.
+     * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}.
+     */
+    public K select(int index) {
+        return selectNode(index).key;
+    }
+
+    /**
+     * Retrieves the value whose key is at the specified position in key order.
+     *
+     * @param index the zero-based position of the key.
+     * @return the value associated with the key that has exactly {@code index} smaller keys in the map.
+     * @throws IndexOutOfBoundsException if the index is negative or not less than {@link #size()}.
+     */
+    public V selectValue(int index) {
+        return selectNode(index).value;
+    }
+
+    /**
+     * Retrieves the number of keys in the map that are strictly less than the specified key.
+     * If the key is present, this is its zero-based position in key order.
+     *
+     * @param key the key to rank; need not be present in the map.
+     * @return the number of smaller keys.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     */
+    public int rank(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        int rank = 0;
+        TmNode node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += count(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + count(node.left);
+            }
+        }
+        return rank;
+    }
+
+    private TmNode selectNode(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        TmNode node = root;
+        while (true) {
+            int leftCount = count(node.left);
+            if (index < leftCount) {
+                node = node.left;
+            } else if (index > leftCount) {
+                index -= leftCount + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Sets the function that weighs values and recomputes every subtree total, in time linear in the size of the map.
+     *
+     * @param weigher the weight of a value; must not be negative.
+     * @throws IllegalArgumentException if the weigher is {@code null}.
+     */
+    @Override
+    public void weighBy(ToIntFunction<? super V> weigher) {
+        if (weigher == null) {
+            throw new IllegalArgumentException("Weigher cannot be null.");
+        }
+        this.weigher = weigher;
+        reweighAll(root);
+    }
+
+    /**
+     * Retrieves the total weight of all values in the map.
+     *
+     * @return the sum of the weights.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    @Override
+    public int totalWeight() {
+        checkWeighed();
+        return total(root);
+    }
+
+    /**
+     * Brings the subtree totals up to date after the weight of a key's value changed in place. Costs O(log n).
+     *
+     * @param key the key whose value changed; nothing happens if it is not in the map.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    @Override
+    public void reweigh(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        checkWeighed();
+        reweighPath(getNode(key));
+    }
+
+    /**
+     * Retrieves the key whose value covers the specified position when every value is repeated as many times as it
+     * weighs, in key order.
+     *
+     * @param position the zero-based position.
+     * @return the key covering the position.
+     * @throws IndexOutOfBoundsException if the position is negative or not less than {@link #totalWeight()}.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    @Override
+    public K selectWeighted(int position) {
+        int total = totalWeight();
+        if (position < 0 || position >= total) {
+            throw new IndexOutOfBoundsException("Index " + position + " out of bounds for size " + total);
+        }
+        TmNode node = root;
+        while (true) {
+            int leftTotal = total(node.left);
+            if (position < leftTotal) {
+                node = node.left;
+                continue;
+            }
+            position -= leftTotal;
+            int weight = node.total - leftTotal - total(node.right);
+            if (position < weight) {
+                return node.key;
+            }
+            position -= weight;
+            node = node.right;
+        }
+    }
+
+    /**
+     * Retrieves the total weight of the values whose keys are strictly less than the specified key: the first
+     * position the key would cover.
+     *
+     * @param key the key to look up; need not be present.
+     * @return the weight of the smaller keys.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    @Override
+    public int weightBefore(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        checkWeighed();
+        int before = 0;
+        TmNode node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                before += node.total - total(node.right);
+                node = node.right;
+            } else {
+                return before + total(node.left);
+            }
+        }
+        return before;
+    }
+
+    private void checkWeighed() {
+        if (weigher == null) {
+            throw new IllegalStateException("Map has no weigher.");
+        }
+    }
+
+    private K keyOf(TmNode node) {
+        return node != null ? node.key : null;
+    }
+
+    /**
+     * Finds the node with the smallest key above the specified key, or equal to it if {@code inclusive}.
+     */
+    private TmNode ceilingNode(K key, boolean inclusive) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        TmNode node = root;
+        TmNode best = null;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0 && inclusive) {
+                return node;
+            } else if (cmp < 0) {
+                best = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the node with the largest key below the specified key, or equal to it if {@code inclusive}.
+     */
+    private TmNode floorNode(K key, boolean inclusive) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        TmNode node = root;
+        TmNode best = null;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0 && inclusive) {
+                return node;
+            } else if (cmp > 0) {
+                best = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A live view of the entries in a key range. A {@code null} bound means the range is open on that side.
+     */
+    private class RangeView implements Iterable<Map.Entry<K, V>> {
+        private final K fromKey;
+        private final boolean fromInclusive;
+        private final K toKey;
+        private final boolean toInclusive;
+
+        RangeView(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            this.fromKey = fromKey;
+            this.fromInclusive = fromInclusive;
+            this.toKey = toKey;
+            this.toInclusive = toInclusive;
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            TmNode start = fromKey == null ? first(root) : ceilingNode(fromKey, fromInclusive);
+            return new RangeIterator(start, toKey, toInclusive);
+        }
+    }
+
+    /**
+     * Walks nodes in key order from a starting node until the high bound is passed.
+     */
+    private class RangeIterator implements Iterator<Map.Entry<K, V>> {
+        private final K toKey;
+        private final boolean toInclusive;
+        private TmNode next;
+        private int expectedModCount;
+
+        RangeIterator(TmNode start, K toKey, boolean toInclusive) {
+            this.toKey = toKey;
+            this.toInclusive = toInclusive;
+            this.next = inRange(start) ? start : null;
+            this.expectedModCount = modCount;
+        }
+
+        private boolean inRange(TmNode node) {
+            if (node == null) {
+                return false;
+            }
+            if (toKey == null) {
+                return true;
+            }
+            int cmp = node.key.compareTo(toKey);
+            return cmp < 0 || (cmp == 0 && toInclusive);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            TmNode node = next;
+            TmNode following = successor(node);
+            next = inRange(following) ? following : null;
+            return node;
+        }
+    }
+
     /**
      * Checks if the tree contains the specified key.
      *
      * @param key the key to search for.
      * @return {@code true} if the key is in the tree map; {@code false} otherwise.
+     * @throws IllegalArgumentException if the key is {@code null}.
      */
     @Override
     public boolean containsKey(K key) {
-        return get(root, key) != null;
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null.");
+        }
+        return (instruments == null ? getNode(key) : recordedGetNode(key)) != null;
     }
 
     /**
@@ -155,21 +1119,16 @@ public class TreeMap<K extends Comparable<K>, V> implements TreeMapInterface<K,
             array = (K[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(),
                     size);
         }
-        fillKeys(root, array, 0);
+        int index = 0;
+        for (TmNode node = first(root); node != null; node = successor(node)) {
+            array[index++] = node.key;
+        }
         if (array.length > size) {
             array[size] = null;
         }
         return array;
     }
 
-    private int fillKeys(TmNode node, K[] array, int index) {
-        if (node == null) return index;
-        index = fillKeys(node.left, array, index);
-        array[index++] = node.key;
-        index = fillKeys(node.right, array, index);
-        return index;
-    }
-
     /**
      * Retrieves an array of value data from the map, in key order.
      *
@@ -188,18 +1147,29 @@ public class TreeMap<K extends Comparable<K>, V> implements TreeMapInterface<K,
             array = (V[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(),
                     size);
         }
-        fillValues(root, array, 0);
+        int index = 0;
+        for (TmNode node = first(root); node != null; node = successor(node)) {
+            array[index++] = node.value;
+        }
         if (array.length > size) {
             array[size] = null;
         }
         return array;
     }
 
-    private int fillValues(TmNode node, V[] array, int index) {
-        if (node == null) return index;
-        index = fillValues(node.left, array, index);
-        array[index++] = node.value;
-        index = fillValues(node.right, array, index);
-        return index;
+    /**
+     * Performs an action for each key/value pair in the map, in key order.
+     *
+     * @param action the action to perform on each key and its value.
+     * @throws IllegalArgumentException if the action is {@code null}.
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null.");
+        }
+        for (TmNode node = first(root); node != null; node = successor(node)) {
+            action.accept(node.key, node.value);
+        }
     }
 }
@@ -1,3 +1,5 @@
+import java.util.function.BiConsumer;
+
 /**
  * Interface to convey required methods and signatures for the TreeMap class.
  * @param <K>       the data type for keys in the map.
@@ -32,6 +34,13 @@ public interface TreeMapInterface<K, V> {
      */
     public void put(K key, V value);
 
+    /**
+     * Removes the key/value pair with the specified key from the tree map, if it is present.
+     * @param key       the key of the pair to remove.
+     * @return          the value that was associated with the key, or null if the key was not found.
+     */
+    public V remove(K key);
+
     /**
      * Checks the tree to see if it contains the specified key.
      * @param key       the key to search for.
@@ -57,4 +66,10 @@ public interface TreeMapInterface<K, V> {
      */
     public V[] toValueArray(V[] array);
 
+    /**
+     * Performs an action for each key/value pair in the map, in key order
+     * @param action    the action to perform on each key and its value.  This parameter must not be null.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action);
+
 }
@@ -2,6 +2,12 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
 public class TreeMapTest {
     private TreeMap<Integer, String> treeMap;
 
@@ -82,6 +88,17 @@ public class TreeMapTest {
         assertArrayEquals(new String[]{"One", "Two", null, null, null}, values);
     }
 
+    @Test
+    public void testForEachInKeyOrder() {
+        treeMap.put(2, "Two");
+        treeMap.put(3, "Three");
+        treeMap.put(1, "One");
+        StringBuilder visited = new StringBuilder();
+        treeMap.forEach((key, value) -> visited.append(key).append('=').append(value).append(' '));
+        assertEquals("1=One 2=Two 3=Three ", visited.toString());
+        assertThrows(IllegalArgumentException.class, () -> treeMap.forEach(null));
+    }
+
     @Test
     public void testPutDuplicateKey() {
         treeMap.put(1, "One");
@@ -96,4 +113,323 @@ public class TreeMapTest {
         });
         assertEquals("Key cannot be null.", thrown.getMessage());
     }
+
+    @Test
+    public void testHeightBoundedOnSequentialInserts() {
+        int count = 10_000_000;
+        for (int i = 0; i < count; i++) {
+            treeMap.put(i, null);
+        }
+        assertEquals(count, treeMap.size());
+        // An AVL tree with n nodes is never taller than 1.44 * log2(n + 2).
+        double bound = 1.44 * Math.log(count + 2) / Math.log(2);
+        assertTrue(treeMap.height() <= bound, "height " + treeMap.height() + " exceeds " + bound);
+        assertTrue(treeMap.containsKey(0));
+        assertTrue(treeMap.containsKey(count - 1));
+    }
+
+    @Test
+    public void testSequentialInsertsStayOrdered() {
+        for (int i = 1000; i > 0; i--) {
+            treeMap.put(i, String.valueOf(i));
+        }
+        Integer[] keys = treeMap.toKeyArray(new Integer[0]);
+        assertEquals(1000, keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i + 1, keys[i]);
+        }
+        assertEquals("500", treeMap.get(500));
+    }
+
+    @Test
+    public void testRandomInsertsMatchJavaTreeMap() {
+        java.util.TreeMap<Integer, String> expected = new java.util.TreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(20_000);
+            treeMap.put(key, "v" + i);
+            expected.put(key, "v" + i);
+        }
+        assertEquals(expected.size(), treeMap.size());
+        assertArrayEquals(expected.keySet().toArray(new Integer[0]), treeMap.toKeyArray(new Integer[0]));
+        assertArrayEquals(expected.values().toArray(new String[0]), treeMap.toValueArray(new String[0]));
+        for (int key = -1; key <= 20_000; key++) {
+            assertEquals(expected.get(key), treeMap.get(key));
+        }
+    }
+
+    @Test
+    public void testContainsNullKey() {
+        assertThrows(IllegalArgumentException.class, () -> treeMap.containsKey(null));
+    }
+
+    @Test
+    public void testFromArraysSortedInput() {
+        int count = 1000;
+        Integer[] keys = new Integer[count];
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = i;
+            values[i] = String.valueOf(i);
+        }
+        TreeMap<Integer, String> loaded = TreeMap.fromArrays(keys, values);
+        assertEquals(count, loaded.size());
+        assertArrayEquals(keys, loaded.toKeyArray(new Integer[0]));
+        assertArrayEquals(values, loaded.toValueArray(new String[0]));
+        // 1000 keys fit in a perfect tree of height ceil(log2(1001)).
+        assertEquals(10, loaded.height());
+    }
+
+    @Test
+    public void testFromArraysUnsortedDuplicatesLastWins() {
+        Integer[] keys = {3, 1, 2, 1, 3};
+        String[] values = {"c", "a", "b", "A", "C"};
+        TreeMap<Integer, String> loaded = TreeMap.fromArrays(keys, values);
+        assertEquals(3, loaded.size());
+        assertArrayEquals(new Integer[]{1, 2, 3}, loaded.toKeyArray(new Integer[0]));
+        assertArrayEquals(new String[]{"A", "b", "C"}, loaded.toValueArray(new String[0]));
+        assertArrayEquals(new Integer[]{3, 1, 2, 1, 3}, keys);
+    }
+
+    @Test
+    public void testFromEntriesMatchesPut() {
+        Random random = new Random(7);
+        List<Map.Entry<Integer, String>> entries = new java.util.ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(2000);
+            entries.add(Map.entry(key, "v" + i));
+            treeMap.put(key, "v" + i);
+        }
+        TreeMap<Integer, String> loaded = TreeMap.fromEntries(entries);
+        assertEquals(treeMap.size(), loaded.size());
+        assertArrayEquals(treeMap.toKeyArray(new Integer[0]), loaded.toKeyArray(new Integer[0]));
+        assertArrayEquals(treeMap.toValueArray(new String[0]), loaded.toValueArray(new String[0]));
+        loaded.put(5000, "new");
+        assertEquals("new", loaded.get(5000));
+    }
+
+    @Test
+    public void testFromArraysRejectsMismatchedLengths() {
+        assertThrows(IllegalArgumentException.class,
+                () -> TreeMap.fromArrays(new Integer[]{1, 2}, new String[]{"One"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> TreeMap.fromArrays(new Integer[]{1, null}, new String[]{"One", "Two"}));
+    }
+
+    @Test
+    public void testNavigationKeys() {
+        for (int i = 10; i <= 50; i += 10) {
+            treeMap.put(i, String.valueOf(i));
+        }
+        assertEquals(10, treeMap.firstKey());
+        assertEquals(50, treeMap.lastKey());
+        assertEquals(30, treeMap.floorKey(30));
+        assertEquals(30, treeMap.floorKey(35));
+        assertNull(treeMap.floorKey(5));
+        assertEquals(20, treeMap.lowerKey(30));
+        assertNull(treeMap.lowerKey(10));
+        assertEquals(30, treeMap.ceilingKey(30));
+        assertEquals(40, treeMap.ceilingKey(35));
+        assertNull(treeMap.ceilingKey(55));
+        assertEquals(40, treeMap.higherKey(30));
+        assertNull(treeMap.higherKey(50));
+    }
+
+    @Test
+    public void testNavigationOnEmptyMap() {
+        assertNull(treeMap.firstKey());
+        assertNull(treeMap.lastKey());
+        assertNull(treeMap.floorKey(1));
+        assertNull(treeMap.ceilingKey(1));
+        assertFalse(treeMap.subMap(0, true, 10, true).iterator().hasNext());
+    }
+
+    @Test
+    public void testRangeViews() {
+        for (int i = 1; i <= 100; i++) {
+            treeMap.put(i, String.valueOf(i));
+        }
+        assertEquals(List.of(10, 11, 12), keysOf(treeMap.subMap(10, true, 12, true)));
+        assertEquals(List.of(11), keysOf(treeMap.subMap(10, false, 12, false)));
+        assertEquals(List.of(), keysOf(treeMap.subMap(12, true, 10, true)));
+        assertEquals(List.of(1, 2), keysOf(treeMap.headMap(3, false)));
+        assertEquals(List.of(99, 100), keysOf(treeMap.tailMap(99, true)));
+        assertEquals(List.of(100), keysOf(treeMap.tailMap(99, false)));
+        assertEquals(List.of(100), keysOf(treeMap.subMap(99, false, 500, true)));
+
+        Iterator<Map.Entry<Integer, String>> iterator = treeMap.tailMap(50, true).iterator();
+        assertEquals("50", iterator.next().getValue());
+        treeMap.put(1000, "1000");
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    private static List<Integer> keysOf(Iterable<Map.Entry<Integer, String>> range) {
+        List<Integer> keys = new java.util.ArrayList<>();
+        for (Map.Entry<Integer, String> entry : range) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+
+    @Test
+    public void testSelectAndRank() {
+        Random random = new Random(11);
+        for (int i = 0; i < 10_000; i++) {
+            int key = random.nextInt(5000) * 2;
+            treeMap.put(key, "v" + key);
+        }
+        Integer[] keys = treeMap.toKeyArray(new Integer[0]);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i], treeMap.select(i));
+            assertEquals("v" + keys[i], treeMap.selectValue(i));
+            assertEquals(i, treeMap.rank(keys[i]));
+            assertEquals(i + 1, treeMap.rank(keys[i] + 1));
+        }
+        assertEquals(0, treeMap.rank(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> treeMap.select(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> treeMap.select(keys.length));
+    }
+
+    @Test
+    public void testSelectAfterBulkLoad() {
+        Integer[] keys = {5, 3, 9, 1, 7};
+        String[] values = {"e", "c", "i", "a", "g"};
+        TreeMap<Integer, String> loaded = TreeMap.fromArrays(keys, values);
+        assertEquals(1, loaded.select(0));
+        assertEquals("i", loaded.selectValue(4));
+        assertEquals(2, loaded.rank(5));
+        loaded.put(4, "d");
+        assertEquals(4, loaded.select(2));
+        assertEquals(3, loaded.rank(5));
+    }
+
+    @Test
+    public void testInstrumentRecordsLookups() {
+        for (int i = 1; i <= 7; i++) {
+            treeMap.put(i, "v" + i);
+        }
+        treeMap.instrument("TreeMapTest");
+        treeMap.put(8, "v8");
+        assertEquals("v4", treeMap.get(4));
+        assertNull(treeMap.get(42));
+        assertTrue(treeMap.containsKey(1));
+
+        Map<String, Number> values = Metrics.group("TreeMap.TreeMapTest").values();
+        assertEquals(3L, values.get("get.nanos.count"));
+        assertEquals(1L, values.get("get.misses"));
+        assertEquals(1L, values.get("put.nanos.count"));
+        assertEquals(8.0, values.get("size"));
+        assertEquals(4.0, values.get("height"));
+        // Depths 1, 2, 2, 3, 3, 3, 3 and 4 for the new key.
+        assertEquals(21.0 / 8, values.get("averageDepth"));
+        assertEquals(4L, values.get("get.depth.max"));
+
+        treeMap.remove(8);
+        treeMap.remove(7);
+        values = Metrics.group("TreeMap.TreeMapTest").values();
+        assertEquals(6.0, values.get("size"));
+        assertEquals(3.0, values.get("height"));
+        assertEquals(14.0 / 6, values.get("averageDepth"));
+        treeMap.clear();
+        assertEquals(0.0, Metrics.group("TreeMap.TreeMapTest").values().get("size"));
+        assertEquals(0.0, Metrics.group("TreeMap.TreeMapTest").values().get("averageDepth"));
+    }
+
+    @Test
+    public void testAverageDepthFollowsRotations() {
+        Random random = new Random(17);
+        for (int i = 0; i < 500; i++) {
+            treeMap.put(random.nextInt(2_000), "v");
+        }
+        treeMap.instrument("TreeMapTest.depth");
+        for (int i = 0; i < 5_000; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextBoolean()) {
+                treeMap.remove(key);
+            } else {
+                treeMap.put(key, "v");
+            }
+        }
+        // Looking every key up once makes the mean lookup depth the average node depth.
+        for (Integer key : treeMap.toKeyArray(new Integer[0])) {
+            treeMap.get(key);
+        }
+        Map<String, Number> values = Metrics.group("TreeMap.TreeMapTest.depth").values();
+        assertEquals(values.get("get.depth.mean").doubleValue(), values.get("averageDepth").doubleValue(), 1e-9);
+    }
+
+    @Test
+    public void testRemoveMatchesJavaTreeMap() {
+        java.util.TreeMap<Integer, String> expected = new java.util.TreeMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), treeMap.remove(key));
+            } else {
+                treeMap.put(key, "v" + i);
+                expected.put(key, "v" + i);
+            }
+        }
+        assertEquals(expected.size(), treeMap.size());
+        assertArrayEquals(expected.keySet().toArray(new Integer[0]), treeMap.toKeyArray(new Integer[0]));
+        assertArrayEquals(expected.values().toArray(new String[0]), treeMap.toValueArray(new String[0]));
+        for (int i = 0; i < treeMap.size(); i++) {
+            assertEquals(i, treeMap.rank(treeMap.select(i)));
+        }
+        assertTrue(treeMap.height() <= 1.44 * Math.log(treeMap.size() + 2) / Math.log(2), "height " + treeMap.height());
+        assertNull(treeMap.remove(-1));
+        assertThrows(IllegalArgumentException.class, () -> treeMap.remove(null));
+    }
+
+    @Test
+    public void testRemoveDuringIterationFailsFast() {
+        treeMap.put(1, "One");
+        treeMap.put(2, "Two");
+        Iterator<Map.Entry<Integer, String>> iterator = treeMap.tailMap(1, true).iterator();
+        iterator.next();
+        treeMap.remove(2);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+        treeMap.remove(1);
+        assertEquals(0, treeMap.size());
+        assertNull(treeMap.firstKey());
+    }
+
+    @Test
+    public void testWeightedPositionsMatchNaiveSums() {
+        TreeMap<Integer, StringBuilder> weighted = new TreeMap<>();
+        java.util.TreeMap<Integer, StringBuilder> expected = new java.util.TreeMap<>();
+        assertThrows(IllegalStateException.class, weighted::totalWeight);
+        weighted.put(0, new StringBuilder("ab"));
+        expected.put(0, weighted.get(0));
+        weighted.weighBy(StringBuilder::length);
+        Random random = new Random(21);
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(500);
+            int op = random.nextInt(4);
+            if (op == 0) {
+                weighted.remove(key);
+                expected.remove(key);
+            } else if (op == 1 && expected.containsKey(key)) {
+                expected.get(key).append("x");
+                weighted.reweigh(key);
+            } else {
+                StringBuilder value = new StringBuilder("y".repeat(random.nextInt(4)));
+                weighted.put(key, value);
+                expected.put(key, value);
+            }
+        }
+        int position = 0;
+        for (Map.Entry<Integer, StringBuilder> entry : expected.entrySet()) {
+            int key = entry.getKey();
+            assertEquals(position, weighted.weightBefore(key));
+            for (int i = 0; i < entry.getValue().length(); i++) {
+                assertEquals(key, weighted.selectWeighted(position++));
+            }
+        }
+        assertEquals(position, weighted.totalWeight());
+        assertEquals(position, weighted.weightBefore(1_000));
+        assertThrows(IndexOutOfBoundsException.class, () -> weighted.selectWeighted(weighted.totalWeight()));
+        assertThrows(IndexOutOfBoundsException.class, () -> weighted.selectWeighted(-1));
+    }
 }
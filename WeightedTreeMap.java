@@ -0,0 +1,63 @@
+import java.util.function.ToIntFunction;
+
+/**
+ * A sorted map that also keeps, for every subtree, the total weight of its values, where a function gives the weight
+ * of each value, such as the number of ids in a posting list. Picture the values laid out in key order, each repeated
+ * as many times as it weighs: a position in that sequence can then be resolved to its key, and a key to its first
+ * position, by a single walk from the root, the way order statistics work on a tree that counts its nodes.
+ * <p>
+ * A value's weight may change while the value is in the map, for instance when an id is added to a posting list, as
+ * long as {@link #reweigh(Object)} is called for its key afterwards.
+ *
+ * @param <K> the type of keys maintained by the map.
+ * @param <V> the type of values maintained by the map.
+ */
+public interface WeightedTreeMap<K, V> extends TreeMapInterface<K, V> {
+
+    /**
+     * Sets the function that weighs values and recomputes every subtree total, in time linear in the size of the map.
+     *
+     * @param weigher the weight of a value; must not be negative.
+     * @throws IllegalArgumentException if the weigher is {@code null}.
+     */
+    void weighBy(ToIntFunction<? super V> weigher);
+
+    /**
+     * Retrieves the total weight of all values in the map.
+     *
+     * @return the sum of the weights.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    int totalWeight();
+
+    /**
+     * Brings the subtree totals up to date after the weight of a key's value changed in place. Costs O(log n).
+     *
+     * @param key the key whose value changed; nothing happens if it is not in the map.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    void reweigh(K key);
+
+    /**
+     * Retrieves the key whose value covers the specified position when every value is repeated as many times as it
+     * weighs, in key order.
+     *
+     * @param position the zero-based position.
+     * @return the key covering the position.
+     * @throws IndexOutOfBoundsException if the position is negative or not less than {@link #totalWeight()}.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    K selectWeighted(int position);
+
+    /**
+     * Retrieves the total weight of the values whose keys are strictly less than the specified key: the first
+     * position the key would cover.
+     *
+     * @param key the key to look up; need not be present.
+     * @return the weight of the smaller keys.
+     * @throws IllegalArgumentException if the key is {@code null}.
+     * @throws IllegalStateException if no weigher has been set.
+     */
+    int weightBefore(K key);
+}